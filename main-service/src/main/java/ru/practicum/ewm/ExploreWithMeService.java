@@ -1,10 +1,20 @@
 package ru.practicum.ewm;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import ru.practicum.client.HitBatcher;
+import ru.practicum.client.HitSpool;
 import ru.practicum.client.StatsClient;
+import ru.practicum.client.StatsTcpTransport;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 
 @SpringBootApplication
 public class ExploreWithMeService {
@@ -13,7 +23,47 @@ public class ExploreWithMeService {
     }
 
     @Bean
-    public StatsClient getStatsClient(@Value("${stats-server.url}") String url) {
-        return new StatsClient(url);
+    @ConditionalOnProperty(name = "stats-server.tcp.port")
+    public StatsTcpTransport getStatsTcpTransport(@Value("${stats-server.tcp.host}") String host,
+                                                  @Value("${stats-server.tcp.port}") int port) {
+        return new StatsTcpTransport(host, port);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "stats-server.spool.path")
+    public HitSpool getHitSpool(@Value("${stats-server.spool.path}") Path path,
+                                @Value("${stats-server.spool.capacity-mb:64}") long capacityMb,
+                                @Value("${stats-server.spool.send-timeout-ms:300}") long sendTimeoutMs,
+                                @Value("${stats-server.spool.batch-size:500}") int batchSize,
+                                MeterRegistry meterRegistry) {
+        return new HitSpool(path, capacityMb * 1024 * 1024, Duration.ofMillis(sendTimeoutMs), batchSize, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "stats-server.batch.enabled", havingValue = "true", matchIfMissing = true)
+    public HitBatcher getHitBatcher(@Value("${stats-server.batch.capacity:10000}") int capacity,
+                                    @Value("${stats-server.batch.size:200}") int batchSize,
+                                    @Value("${stats-server.batch.linger-ms:100}") long lingerMs,
+                                    @Value("${stats-server.batch.max-attempts:6}") int maxAttempts,
+                                    @Value("${stats-server.batch.retry-backoff-ms:200}") long retryBackoffMs,
+                                    MeterRegistry meterRegistry) {
+        return new HitBatcher(capacity, batchSize, Duration.ofMillis(lingerMs), maxAttempts,
+                Duration.ofMillis(retryBackoffMs), meterRegistry);
+    }
+
+    @Bean
+    public StatsClient getStatsClient(@Value("${stats-server.url}") String url,
+                                      @Value("${stats-server.nodes:}") List<String> nodes,
+                                      @Value("${stats-server.previous-nodes:}") List<String> previousNodes,
+                                      ObjectProvider<StatsTcpTransport> tcpTransport,
+                                      ObjectProvider<HitSpool> spool,
+                                      ObjectProvider<HitBatcher> batcher) {
+        return StatsClient.builder()
+                .hosts(nodes.isEmpty() ? List.of(url) : nodes)
+                .previousHosts(previousNodes)
+                .tcpTransport(tcpTransport.getIfAvailable())
+                .spool(spool.getIfAvailable())
+                .batcher(batcher.getIfAvailable())
+                .build();
     }
 }
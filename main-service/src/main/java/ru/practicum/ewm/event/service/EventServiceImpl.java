@@ -24,6 +24,7 @@ import ru.practicum.ewm.request.mapper.RequestMapper;
 import ru.practicum.ewm.request.model.Request;
 import ru.practicum.ewm.request.model.RequestStatus;
 import ru.practicum.ewm.request.repository.RequestRepository;
+import ru.practicum.ewm.statistic.EventViews;
 import ru.practicum.ewm.statistic.StatisticService;
 import ru.practicum.ewm.user.model.User;
 import ru.practicum.ewm.user.repository.UserRepository;
@@ -63,7 +64,7 @@ public class EventServiceImpl implements EventService {
         List<Event> events = eventRepository.getEventsWithUsersStatesCategoriesDateTime(
                 users, states1, categories, start, end, page);
 
-        Map<Long, Long> views = statisticService.getStatsEvents(events);
+        EventViews views = statisticService.getStatsEvents(events);
 
         List<EventDto> result = events.stream()
                 .map(EventMapper::toEventDto)
@@ -124,9 +125,9 @@ public class EventServiceImpl implements EventService {
         Event event = getEventById(id);
         checkEventStatePublished(event);
         statisticService.addView(request);
-        Map<Long, Long> views = statisticService.getStatsEvents(List.of(event));
+        EventViews views = statisticService.getStatsEvents(List.of(event));
         EventDto eventDto = EventMapper.toEventDto(event);
-        eventDto.setViews(views.getOrDefault(event.getId(), 0L));
+        eventDto.setViews(views.get(event.getId()));
         setComfirmedRequests(List.of(eventDto));
         return eventDto;
     }
@@ -155,7 +156,7 @@ public class EventServiceImpl implements EventService {
                         events = eventRepository.getAvailableEventsWithFiltersDateSorted(
                                 text, EventState.PUBLISHED, categories, paid, rangeStart, rangeEnd, page);
                         statisticService.addView(request);
-                        Map<Long, Long> view = statisticService.getStatsEvents(events);
+                        EventViews view = statisticService.getStatsEvents(events);
                         List<EventDto> result = events.stream()
                                 .map(EventMapper::toEventDto)
                                 .peek(e -> e.setViews(view.get(e.getId())))
@@ -167,7 +168,7 @@ public class EventServiceImpl implements EventService {
                         events = eventRepository.getAvailableEventsWithFilters(
                                 text, EventState.PUBLISHED, categories, paid, rangeStart, rangeEnd, page);
                         statisticService.addView(request);
-                        Map<Long, Long> view1 = statisticService.getStatsEvents(events);
+                        EventViews view1 = statisticService.getStatsEvents(events);
                         List<EventDto> result1 = events.stream()
                                 .map(EventMapper::toEventDto)
                                 .peek(e -> e.setViews(view1.get(e.getId())))
@@ -187,7 +188,7 @@ public class EventServiceImpl implements EventService {
                         events = eventRepository.getAllEventsWithFiltersDateSorted(
                                 text, EventState.PUBLISHED, categories, paid, rangeStart, rangeEnd, page);
                         statisticService.addView(request);
-                        Map<Long, Long> view = statisticService.getStatsEvents(events);
+                        EventViews view = statisticService.getStatsEvents(events);
                         List<EventDto> result = events.stream()
                                 .map(EventMapper::toEventDto)
                                 .peek(e -> e.setViews(view.get(e.getId())))
@@ -199,7 +200,7 @@ public class EventServiceImpl implements EventService {
                         events = eventRepository.getAllEventsWithFilters(
                                 text, EventState.PUBLISHED, categories, paid, rangeStart, rangeEnd, page);
                         statisticService.addView(request);
-                        Map<Long, Long> view1 = statisticService.getStatsEvents(events);
+                        EventViews view1 = statisticService.getStatsEvents(events);
                         List<EventDto> result1 = events.stream()
                                 .map(EventMapper::toEventDto)
                                 .peek(e -> e.setViews(view1.get(e.getId())))
@@ -211,7 +212,7 @@ public class EventServiceImpl implements EventService {
             }
         }
         statisticService.addView(request);
-        Map<Long, Long> view = statisticService.getStatsEvents(events);
+        EventViews view = statisticService.getStatsEvents(events);
         List<EventDto> result = events.stream()
                 .map(EventMapper::toEventDto)
                 .peek(e -> e.setViews(view.get(e.getId())))
@@ -224,10 +225,10 @@ public class EventServiceImpl implements EventService {
     public List<EventShortDto> getEventUser(Long userId, Pageable page) {
         checkUserExists(userId);
         List<Event> events = eventRepository.findAllByInitiatorId(userId, page);
-        Map<Long, Long> views = statisticService.getStatsEvents(events);
+        EventViews views = statisticService.getStatsEvents(events);
         return events.stream()
                 .map(EventMapper::toEventShortDto)
-                .peek(e -> e.setViews(views.getOrDefault(e.getId(), 0L)))
+                .peek(e -> e.setViews(views.get(e.getId())))
                 .collect(toList());
     }
 
@@ -240,9 +241,9 @@ public class EventServiceImpl implements EventService {
         Event event = EventMapper.toEvent(newEventDto, category, user);
         eventRepository.save(event);
 
-        Map<Long, Long> views = statisticService.getStatsEvents(List.of(event));
+        EventViews views = statisticService.getStatsEvents(List.of(event));
         EventDto eventDto = EventMapper.toEventDto(event);
-        eventDto.setViews(views.getOrDefault(event.getId(), 0L));
+        eventDto.setViews(views.get(event.getId()));
         setComfirmedRequests(List.of(eventDto));
         return eventDto;
     }
@@ -251,9 +252,9 @@ public class EventServiceImpl implements EventService {
     public EventDto getFullEventUser(Long userId, Long eventId) {
         checkUserExists(userId);
         Event event = getEventById(eventId);
-        Map<Long, Long> views = statisticService.getStatsEvents(List.of(event));
+        EventViews views = statisticService.getStatsEvents(List.of(event));
         EventDto eventDto = EventMapper.toEventDto(event);
-        eventDto.setViews(views.getOrDefault(event.getId(), 0L));
+        eventDto.setViews(views.get(event.getId()));
         setComfirmedRequests(List.of(eventDto));
         return eventDto;
     }
@@ -305,9 +306,9 @@ public class EventServiceImpl implements EventService {
         if (updateEventDto.getStateAction() != null) {
             fillEventState(event, updateEventDto.getStateAction());
         }
-        Map<Long, Long> views = statisticService.getStatsEvents(List.of(event));
+        EventViews views = statisticService.getStatsEvents(List.of(event));
         EventDto eventDto = EventMapper.toEventDto(eventRepository.save(event));
-        eventDto.setViews(views.getOrDefault(event.getId(), 0L));
+        eventDto.setViews(views.get(event.getId()));
         setComfirmedRequests(List.of(eventDto));
         return eventDto;
     }
@@ -0,0 +1,45 @@
+package ru.practicum.ewm.statistic;
+
+import java.util.Arrays;
+
+/**
+ * Views per event id in a primitive open-addressing table; ids without views read as zero.
+ */
+public class EventViews {
+    private static final long FREE = Long.MIN_VALUE;
+    private static final EventViews EMPTY = new EventViews(new long[0], new long[0]);
+
+    private final long[] keys;
+    private final long[] values;
+    private final int mask;
+
+    public EventViews(long[] ids, long[] views) {
+        int capacity = Integer.highestOneBit(Math.max(4, ids.length * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, FREE);
+        for (int i = 0; i < ids.length; i++) {
+            int slot = slot(ids[i]);
+            keys[slot] = ids[i];
+            values[slot] += views[i];
+        }
+    }
+
+    public static EventViews empty() {
+        return EMPTY;
+    }
+
+    public long get(long id) {
+        int slot = slot(id);
+        return keys[slot] == FREE ? 0 : values[slot];
+    }
+
+    private int slot(long id) {
+        int slot = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (keys[slot] != FREE && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -4,10 +4,9 @@ import ru.practicum.ewm.event.model.Event;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.List;
-import java.util.Map;
 
 public interface StatisticService {
     void addView(HttpServletRequest request);
 
-    Map<Long, Long> getStatsEvents(List<Event> events);
+    EventViews getStatsEvents(List<Event> events);
 }
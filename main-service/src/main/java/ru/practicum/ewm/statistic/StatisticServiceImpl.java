@@ -5,28 +5,31 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.practicum.client.StatsClient;
 import ru.practicum.dto.EndpointHitDto;
-import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.dto.EntityViewsDto;
 import ru.practicum.ewm.event.model.Event;
 
 import javax.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.time.ZoneOffset;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 public class StatisticServiceImpl implements StatisticService {
+    private static final String EVENTS = "events";
+
     private final StatsClient statsClient;
     private final String appName;
+    private final boolean approximateViews;
 
     @Autowired
     public StatisticServiceImpl(@Value("${stats-server.url}") String url,
                                 @Value("${application.name}") String appName,
+                                @Value("${stats-server.views.approximate:false}") boolean approximateViews,
                                 StatsClient statsClient) {
         this.statsClient = statsClient;
         this.appName = appName;
+        this.approximateViews = approximateViews;
     }
 
 
@@ -41,29 +44,24 @@ public class StatisticServiceImpl implements StatisticService {
     }
 
     @Override
-    public Map<Long, Long> getStatsEvents(List<Event> events) {
+    public EventViews getStatsEvents(List<Event> events) {
         if (events == null || events.isEmpty()) {
-            return null;
+            return EventViews.empty();
         }
-        List<Long> ids = events.stream()
-                .map(Event::getId)
-                .collect(Collectors.toList());
-
-        events.stream().sorted(Comparator.comparing(Event::getCreatedOn)).collect(Collectors.toList());
-
-        LocalDateTime start = events.get(0).getCreatedOn();
-        LocalDateTime end = LocalDateTime.now();
-        String eventsUri = "/events/";
-        List<String> uris = ids.stream()
-                .map(id -> eventsUri + id)
+        List<Event> published = events.stream()
+                .filter(event -> event.getPublishedOn() != null)
                 .collect(Collectors.toList());
-        List<ViewStatsDto> views = statsClient.getStats(start, end, uris, true);
-
-        Map<Long, Long> viewsMap = new HashMap<>();
-        for (ViewStatsDto view : views) {
-            String uri = view.getUri();
-            viewsMap.put(Long.parseLong(uri.substring(eventsUri.length())), view.getHits());
+        if (published.isEmpty()) {
+            return EventViews.empty();
+        }
+        long[] ids = new long[published.size()];
+        long[] since = new long[published.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = published.get(i).getId();
+            since[i] = published.get(i).getPublishedOn().toEpochSecond(ZoneOffset.UTC);
         }
-        return viewsMap;
+        EntityViewsDto views = statsClient.getEntityViews(EVENTS, ids, since, LocalDateTime.now(), true,
+                approximateViews);
+        return new EventViews(views.getIds(), views.getViews());
     }
 }
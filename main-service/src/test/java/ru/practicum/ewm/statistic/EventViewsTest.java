@@ -0,0 +1,43 @@
+package ru.practicum.ewm.statistic;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventViewsTest {
+    @Test
+    void idsWithoutViewsReadAsZero() {
+        EventViews views = new EventViews(new long[]{1, 2}, new long[]{10, 20});
+
+        assertThat(views.get(1)).isEqualTo(10);
+        assertThat(views.get(2)).isEqualTo(20);
+        assertThat(views.get(3)).isZero();
+        assertThat(EventViews.empty().get(1)).isZero();
+    }
+
+    @Test
+    void repeatedIdsAreSummed() {
+        EventViews views = new EventViews(new long[]{7, 8, 7}, new long[]{1, 2, 3});
+
+        assertThat(views.get(7)).isEqualTo(4);
+        assertThat(views.get(8)).isEqualTo(2);
+    }
+
+    @Test
+    void findsEveryIdOfFullTable() {
+        int count = 10_000;
+        long[] ids = new long[count];
+        long[] counts = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = (long) i << 20;
+            counts[i] = i + 1;
+        }
+
+        EventViews views = new EventViews(ids, counts);
+
+        for (int i = 0; i < count; i++) {
+            assertThat(views.get(ids[i])).isEqualTo(i + 1);
+        }
+        assertThat(views.get(1)).isZero();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.practicum.ewm.statistic;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.practicum.client.StatsClient;
+import ru.practicum.dto.EntityViewsDto;
+import ru.practicum.ewm.event.model.Event;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class StatisticServiceImplTest {
+    private static final LocalDateTime PUBLISHED = LocalDateTime.of(2024, 1, 1, 10, 15);
+
+    private final StatsClient statsClient = mock(StatsClient.class);
+    private final StatisticService service = new StatisticServiceImpl("http://localhost:9090", "ewm-main-service",
+            false, statsClient);
+
+    @Test
+    void countsEveryPublishedEventFromItsPublicationTime() {
+        when(statsClient.getEntityViews(eq("events"), any(), any(), any(), anyBoolean(), anyBoolean()))
+                .thenReturn(new EntityViewsDto(new long[]{1}, new long[]{5}));
+
+        EventViews views = service.getStatsEvents(List.of(event(1L, PUBLISHED), event(2L, null),
+                event(3L, PUBLISHED.plusDays(1))));
+
+        ArgumentCaptor<long[]> ids = ArgumentCaptor.forClass(long[].class);
+        ArgumentCaptor<long[]> since = ArgumentCaptor.forClass(long[].class);
+        verify(statsClient).getEntityViews(eq("events"), ids.capture(), since.capture(), any(), eq(true), eq(false));
+        assertThat(ids.getValue()).containsExactly(1, 3);
+        assertThat(since.getValue()).containsExactly(PUBLISHED.toEpochSecond(ZoneOffset.UTC),
+                PUBLISHED.plusDays(1).toEpochSecond(ZoneOffset.UTC));
+        assertThat(views.get(1)).isEqualTo(5);
+        assertThat(views.get(3)).isZero();
+    }
+
+    @Test
+    void skipsStatsServerWithoutPublishedEvents() {
+        assertThat(service.getStatsEvents(List.of(event(2L, null))).get(2)).isZero();
+        assertThat(service.getStatsEvents(List.of()).get(2)).isZero();
+
+        verifyNoInteractions(statsClient);
+    }
+
+    private static Event event(long id, LocalDateTime publishedOn) {
+        return Event.builder()
+                .id(id)
+                .publishedOn(publishedOn)
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package ru.practicum.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring with virtual nodes. Adding or removing one of N nodes only moves the keys of the arcs that
+ * node owns, roughly 1/N of all keys.
+ */
+public class ConsistentHashRing<T> {
+    private final NavigableMap<Long, T> ring = new TreeMap<>();
+    private final int virtualNodes;
+
+    public ConsistentHashRing(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public void add(String name, T node) {
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(hash(name + '#' + i), node);
+        }
+    }
+
+    public void remove(String name) {
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.remove(hash(name + '#' + i));
+        }
+    }
+
+    public T owner(String key) {
+        Map.Entry<Long, T> entry = ring.ceilingEntry(hash(key));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
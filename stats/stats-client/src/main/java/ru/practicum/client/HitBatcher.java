@@ -0,0 +1,192 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded in-process queue of hits that are sent in the background, so recording a hit never waits for the
+ * server. A batch is sent as soon as it is full or the oldest hit in it has waited for the linger time. A batch that
+ * fails is sent again with exponential backoff while new hits keep queueing behind it, and is counted as failed
+ * after {@code maxAttempts} attempts. Every batch gets an id that its retries keep, and when only some nodes failed
+ * just their hits are sent again. When the queue is full new hits are dropped and counted.
+ */
+@Slf4j
+public class HitBatcher implements AutoCloseable {
+    private static final long IDLE_POLL_MS = 1000;
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+    private static final long MAX_RETRY_MILLIS = 30_000;
+
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final CountDownLatch stopping = new CountDownLatch(1);
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+    private final Counter droppedCounter;
+
+    private volatile boolean running;
+    private Thread sender;
+
+    public HitBatcher(int capacity, int batchSize, Duration linger, int maxAttempts, Duration retryBackoff,
+                      MeterRegistry meterRegistry) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Недопустимые размеры очереди статистики: " + capacity + ", "
+                    + batchSize);
+        }
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Недопустимое число попыток отправки статистики: " + maxAttempts);
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.lingerNanos = linger.toNanos();
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMillis = retryBackoff.toMillis();
+        this.sentCounter = meterRegistry.counter("stats.client.queue.sent");
+        this.retriedCounter = meterRegistry.counter("stats.client.queue.retried");
+        this.failedCounter = meterRegistry.counter("stats.client.queue.failed");
+        this.droppedCounter = meterRegistry.counter("stats.client.queue.dropped");
+        Gauge.builder("stats.client.queue.depth", queue, BlockingQueue::size)
+                .description("Hits waiting to be sent")
+                .register(meterRegistry);
+    }
+
+    public void offer(EndpointHitDto hit) {
+        if (!queue.offer(hit)) {
+            droppedCounter.increment();
+        }
+    }
+
+    /**
+     * Starts sending batches with their ids through {@code delivery}; a batch it throws on is retried, or only the
+     * hits of an {@link UndeliveredHitsException}.
+     */
+    public synchronized void start(BiConsumer<String, List<EndpointHitDto>> delivery) {
+        if (running) {
+            return;
+        }
+        running = true;
+        sender = new Thread(() -> run(delivery), "stats-hit-batcher");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    private void run(BiConsumer<String, List<EndpointHitDto>> delivery) {
+        boolean interrupted = false;
+        while (running && !interrupted) {
+            try {
+                List<EndpointHitDto> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    deliver(delivery, batch);
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        List<EndpointHitDto> rest = new ArrayList<>();
+        while (queue.drainTo(rest, batchSize) > 0) {
+            deliver(delivery, rest);
+            rest = new ArrayList<>();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<EndpointHitDto> nextBatch() throws InterruptedException {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        EndpointHitDto first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            EndpointHitDto next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    /**
+     * Once the batcher is stopping, the backoff is cut short and a failing batch gets one last attempt, so closing
+     * never waits for the whole retry schedule.
+     */
+    private void deliver(BiConsumer<String, List<EndpointHitDto>> delivery, List<EndpointHitDto> hits) {
+        String batchId = UUID.randomUUID().toString();
+        List<EndpointHitDto> batch = hits;
+        for (int attempt = 1; ; attempt++) {
+            boolean lastAttempt = !running;
+            try {
+                delivery.accept(batchId, batch);
+                sentCounter.increment(batch.size());
+                return;
+            } catch (RuntimeException e) {
+                if (e instanceof UndeliveredHitsException) {
+                    List<EndpointHitDto> undelivered = ((UndeliveredHitsException) e).getHits();
+                    sentCounter.increment(batch.size() - undelivered.size());
+                    batch = undelivered;
+                }
+                if (attempt >= maxAttempts || lastAttempt) {
+                    failedCounter.increment(batch.size());
+                    log.warn("Не удалось отправить {} хитов на сервер статистики за {} попыток: {}", batch.size(),
+                            attempt, e.getMessage());
+                    return;
+                }
+                retriedCounter.increment(batch.size());
+                long delay = Math.min(MAX_RETRY_MILLIS, retryBackoffMillis << Math.min(attempt - 1, 30));
+                log.debug("Повторная отправка {} хитов через {} мс: {}", batch.size(), delay, e.getMessage());
+                try {
+                    stopping.await(delay, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException interrupted) {
+                    failedCounter.increment(batch.size());
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the sender after it has sent the hits still in the queue, waiting for it at most {@code timeout}.
+     */
+    public void close(Duration timeout) throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = sender;
+        }
+        stopping.countDown();
+        if (thread != null) {
+            thread.join(timeout.toMillis());
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        close(CLOSE_TIMEOUT);
+    }
+}
@@ -0,0 +1,275 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Durable FIFO of hits that could not be delivered, kept in a fixed-size memory-mapped ring file. Records are
+ * length-prefixed; a record that does not fit before the end of the ring is preceded by a wrap marker and written
+ * from the start. When the ring is full new hits are dropped and counted, so disk usage never grows past the file
+ * size. A background thread replays the backlog in batches and backs off while the server stays unavailable.
+ */
+@Slf4j
+public class HitSpool implements AutoCloseable {
+    private static final int MAGIC = 0x53504F4C;
+    private static final int HEADER_SIZE = 64;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int HEAD_OFFSET = 16;
+    private static final int TAIL_OFFSET = 24;
+    private static final int COUNT_OFFSET = 32;
+    private static final int WRAP = -1;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final long MIN_RETRY_MS = 200;
+    private static final long MAX_RETRY_MS = 30_000;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+    private final Duration sendTimeout;
+    private final int batchSize;
+    private final Counter spooledCounter;
+    private final Counter replayedCounter;
+    private final Counter droppedCounter;
+
+    private long head;
+    private long tail;
+    private long count;
+    private volatile boolean running;
+    private Thread drainer;
+
+    public HitSpool(Path path, long capacity, Duration sendTimeout, int batchSize, MeterRegistry meterRegistry) {
+        if (capacity <= 0 || capacity > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("Недопустимый размер очереди статистики: " + capacity);
+        }
+        this.sendTimeout = sendTimeout;
+        this.batchSize = batchSize;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть файл очереди статистики " + path, e);
+        }
+        if (buffer.getInt(0) == MAGIC && buffer.getLong(CAPACITY_OFFSET) == capacity) {
+            head = buffer.getLong(HEAD_OFFSET);
+            tail = buffer.getLong(TAIL_OFFSET);
+            count = buffer.getLong(COUNT_OFFSET);
+            log.info("Очередь статистики {} открыта, неотправленных хитов: {}", path, count);
+        } else {
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(CAPACITY_OFFSET, capacity);
+            writeHeader();
+        }
+        this.capacity = capacity;
+        this.spooledCounter = meterRegistry.counter("stats.client.spool.spooled");
+        this.replayedCounter = meterRegistry.counter("stats.client.spool.replayed");
+        this.droppedCounter = meterRegistry.counter("stats.client.spool.dropped");
+        Gauge.builder("stats.client.spool.backlog", this, HitSpool::size)
+                .description("Hits waiting in the spool")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.spool.backlog.bytes", this, HitSpool::usedBytes)
+                .register(meterRegistry);
+    }
+
+    public Duration getSendTimeout() {
+        return sendTimeout;
+    }
+
+    public synchronized long size() {
+        return count;
+    }
+
+    public synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    public synchronized void append(List<EndpointHitDto> hits) {
+        for (EndpointHitDto hit : hits) {
+            if (write(encode(hit))) {
+                spooledCounter.increment();
+            } else {
+                droppedCounter.increment();
+            }
+        }
+        writeHeader();
+    }
+
+    /**
+     * Starts replaying the backlog through {@code sender}, which must throw if the batch was not delivered.
+     */
+    public synchronized void start(Consumer<List<EndpointHitDto>> sender) {
+        if (running) {
+            return;
+        }
+        running = true;
+        drainer = new Thread(() -> drain(sender), "stats-spool-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    private void drain(Consumer<List<EndpointHitDto>> sender) {
+        long retryMs = MIN_RETRY_MS;
+        while (running) {
+            List<EndpointHitDto> batch = new ArrayList<>();
+            long next = peek(batch);
+            if (batch.isEmpty()) {
+                retryMs = MIN_RETRY_MS;
+                sleep(MIN_RETRY_MS);
+                continue;
+            }
+            try {
+                sender.accept(batch);
+                commit(next, batch.size());
+                replayedCounter.increment(batch.size());
+                retryMs = MIN_RETRY_MS;
+            } catch (RuntimeException e) {
+                log.debug("Сервер статистики недоступен, повтор через {} мс: {}", retryMs, e.getMessage());
+                sleep(retryMs);
+                retryMs = Math.min(retryMs * 2, MAX_RETRY_MS);
+            }
+        }
+    }
+
+    private synchronized long peek(List<EndpointHitDto> batch) {
+        buffer.force();
+        long position = head;
+        for (long i = 0; i < count && batch.size() < batchSize; i++) {
+            position = skipWrap(position);
+            int offset = HEADER_SIZE + (int) (position % capacity);
+            int length = buffer.getInt(offset);
+            batch.add(decode(offset + Integer.BYTES, length));
+            position += Integer.BYTES + length;
+        }
+        return position;
+    }
+
+    private synchronized void commit(long next, int size) {
+        head = next;
+        count -= size;
+        writeHeader();
+    }
+
+    private boolean write(byte[] record) {
+        int needed = Integer.BYTES + record.length;
+        long contiguous = capacity - tail % capacity;
+        long required = needed > contiguous ? contiguous + needed : needed;
+        if (tail - head + required > capacity) {
+            return false;
+        }
+        if (needed > contiguous) {
+            if (contiguous >= Integer.BYTES) {
+                buffer.putInt(HEADER_SIZE + (int) (tail % capacity), WRAP);
+            }
+            tail += contiguous;
+        }
+        int offset = HEADER_SIZE + (int) (tail % capacity);
+        buffer.putInt(offset, record.length);
+        for (int i = 0; i < record.length; i++) {
+            buffer.put(offset + Integer.BYTES + i, record[i]);
+        }
+        tail += needed;
+        count++;
+        return true;
+    }
+
+    private long skipWrap(long position) {
+        long contiguous = capacity - position % capacity;
+        if (contiguous < Integer.BYTES || buffer.getInt(HEADER_SIZE + (int) (position % capacity)) == WRAP) {
+            return position + contiguous;
+        }
+        return position;
+    }
+
+    private long usedBytes() {
+        synchronized (this) {
+            return tail - head;
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putLong(HEAD_OFFSET, head);
+        buffer.putLong(TAIL_OFFSET, tail);
+        buffer.putLong(COUNT_OFFSET, count);
+    }
+
+    private static byte[] encode(EndpointHitDto hit) {
+        byte[] app = bytes(hit.getApp());
+        byte[] uri = bytes(hit.getUri());
+        byte[] ip = bytes(hit.getIp());
+        ByteBuffer record = ByteBuffer.allocate(Long.BYTES + 3 * Short.BYTES + app.length + uri.length + ip.length);
+        record.putLong(hit.getTimestamp() == null ? NO_TIMESTAMP : hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+        record.putShort((short) app.length).put(app);
+        record.putShort((short) uri.length).put(uri);
+        record.putShort((short) ip.length).put(ip);
+        return record.array();
+    }
+
+    private EndpointHitDto decode(int offset, int length) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset).limit(offset + length);
+        long epochSecond = record.getLong();
+        return EndpointHitDto.builder()
+                .timestamp(epochSecond == NO_TIMESTAMP ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC))
+                .app(string(record))
+                .uri(string(record))
+                .ip(string(record))
+                .build();
+    }
+
+    private static byte[] bytes(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Слишком длинное значение хита: " + bytes.length + " байт");
+        }
+        return bytes;
+    }
+
+    private static String string(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void sleep(long ms) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (drainer != null) {
+            drainer.interrupt();
+        }
+        synchronized (this) {
+            buffer.force();
+        }
+        channel.close();
+    }
+}
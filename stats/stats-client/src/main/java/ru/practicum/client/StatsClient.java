@@ -1,31 +1,120 @@
 package ru.practicum.client;
 
+import lombok.Builder;
+import lombok.Singular;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.EntityViewsDto;
+import ru.practicum.dto.EntityViewsRequestDto;
+import ru.practicum.dto.StatsSinceRequestDto;
+import ru.practicum.dto.UriSinceDto;
 import ru.practicum.dto.ViewStatsDto;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
 
+/**
+ * Client of one or several stats-server nodes. With several nodes every uri is owned by one node on a
+ * consistent-hash ring: hits go to the owner, queries for given uris only ask their owners, and queries over all
+ * uris ask every node and merge the per-node results, which are already sorted by hits.
+ * <p>
+ * While the cluster is rebalanced the nodes of the previous ring are given as well. Hits only go to the current
+ * owner, but the hits a uri received before the change stay on its previous owner, so queries ask both owners and
+ * sum their answers. Unique counts of such uris are an upper bound, as a visitor seen by both owners counts twice.
+ */
 @Service
 @Component
 public class StatsClient {
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    private final WebClient webClient;
+    private static final int VIRTUAL_NODES = 160;
+    private static final Duration SEND_TIMEOUT = Duration.ofSeconds(10);
+    private static final String BATCH_ID_HEADER = "X-Batch-Id";
+    private static final Comparator<ViewStatsDto> BY_HITS_DESC =
+            Comparator.comparing(ViewStatsDto::getHits, Comparator.reverseOrder());
+
+    private final List<WebClient> nodes = new ArrayList<>();
+    private final ConsistentHashRing<WebClient> ring = new ConsistentHashRing<>(VIRTUAL_NODES);
+    private final ConsistentHashRing<WebClient> previousRing;
+    private final StatsTcpTransport tcpTransport;
+    private final HitSpool spool;
+    private final HitBatcher batcher;
 
     @Autowired
     public StatsClient(String host) {
-        this.webClient = WebClient.create(host);
+        this(List.of(host), List.of(), null, null, null);
+    }
+
+    /**
+     * With a spool, hits are sent over HTTP in the background and never block the caller: a hit that fails or
+     * times out, or arrives while older hits are still spooled, is appended to the spool and replayed later.
+     * With a batcher, hits are only queued by the caller and sent in micro-batches by the batcher thread.
+     * A TCP transport talks to a single server, so it cannot be combined with several nodes or a spool.
+     */
+    @Builder
+    private StatsClient(@Singular List<String> hosts, @Singular List<String> previousHosts,
+                        StatsTcpTransport tcpTransport, HitSpool spool, HitBatcher batcher) {
+        if (hosts.isEmpty()) {
+            throw new IllegalArgumentException("Не задан ни один узел сервера статистики");
+        }
+        if (tcpTransport != null && (hosts.size() > 1 || spool != null)) {
+            throw new IllegalArgumentException("TCP-транспорт нельзя использовать с несколькими узлами или спулом");
+        }
+        Map<String, WebClient> clients = new LinkedHashMap<>();
+        for (String host : hosts) {
+            ring.add(host, clients.computeIfAbsent(host, WebClient::create));
+        }
+        if (previousHosts.isEmpty() || previousHosts.equals(hosts)) {
+            previousRing = null;
+        } else {
+            previousRing = new ConsistentHashRing<>(VIRTUAL_NODES);
+            for (String host : previousHosts) {
+                previousRing.add(host, clients.computeIfAbsent(host, WebClient::create));
+            }
+        }
+        nodes.addAll(clients.values());
+        this.spool = spool;
+        this.tcpTransport = tcpTransport;
+        if (spool != null) {
+            spool.start(hits -> post(hits, newBatchId(), SEND_TIMEOUT).block());
+        }
+        this.batcher = batcher;
+        if (batcher != null) {
+            batcher.start(this::deliver);
+        }
     }
 
     public EndpointHitDto create(EndpointHitDto endpointHitDto) {
-        return webClient
+        if (batcher != null) {
+            batcher.offer(endpointHitDto);
+            return endpointHitDto;
+        }
+        if (tcpTransport != null) {
+            tcpTransport.send(List.of(endpointHitDto));
+            return endpointHitDto;
+        }
+        if (spool != null) {
+            send(List.of(endpointHitDto));
+            return endpointHitDto;
+        }
+        return ring.owner(endpointHitDto.getUri())
                 .post()
                 .uri("/hit")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -35,19 +124,297 @@ public class StatsClient {
                 .block();
     }
 
+    public void createAll(List<EndpointHitDto> endpointHitDtos) {
+        if (batcher != null) {
+            endpointHitDtos.forEach(batcher::offer);
+            return;
+        }
+        deliver(newBatchId(), endpointHitDtos);
+    }
+
+    /**
+     * A batch sent again keeps its {@code batchId}, so nodes that already stored their part skip it.
+     */
+    private void deliver(String batchId, List<EndpointHitDto> endpointHitDtos) {
+        if (tcpTransport != null) {
+            tcpTransport.send(endpointHitDtos);
+            return;
+        }
+        if (spool != null) {
+            send(endpointHitDtos);
+            return;
+        }
+        post(endpointHitDtos, batchId, SEND_TIMEOUT).block();
+    }
+
+    private void send(List<EndpointHitDto> endpointHitDtos) {
+        if (!spool.isEmpty()) {
+            spool.append(endpointHitDtos);
+            return;
+        }
+        post(endpointHitDtos, newBatchId(), spool.getSendTimeout())
+                .subscribe(null, error -> spool.append(error instanceof UndeliveredHitsException
+                        ? ((UndeliveredHitsException) error).getHits()
+                        : endpointHitDtos));
+    }
+
+    /**
+     * Sends every node its part of the hits, marked with the batch id and the node, and fails with
+     * {@link UndeliveredHitsException} holding only the parts of the nodes that failed or did not answer in time.
+     */
+    private Mono<Void> post(List<EndpointHitDto> endpointHitDtos, String batchId, Duration timeout) {
+        Map<WebClient, List<EndpointHitDto>> byNode = new LinkedHashMap<>();
+        for (EndpointHitDto endpointHitDto : endpointHitDtos) {
+            byNode.computeIfAbsent(ring.owner(endpointHitDto.getUri()), node -> new ArrayList<>()).add(endpointHitDto);
+        }
+        return Flux.fromIterable(byNode.entrySet())
+                .flatMap(entry -> entry.getKey()
+                        .post()
+                        .uri("/hits")
+                        .header(BATCH_ID_HEADER, batchId + "-" + nodes.indexOf(entry.getKey()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(BodyInserters.fromValue(entry.getValue()))
+                        .retrieve()
+                        .toBodilessEntity()
+                        .timeout(timeout)
+                        .then(Mono.<UndeliveredHitsException>empty())
+                        .onErrorResume(error -> Mono.just(new UndeliveredHitsException(entry.getValue(), error))))
+                .collectList()
+                .flatMap(failures -> failures.isEmpty() ? Mono.empty() : Mono.error(undelivered(failures)));
+    }
+
+    private static UndeliveredHitsException undelivered(List<UndeliveredHitsException> failures) {
+        if (failures.size() == 1) {
+            return failures.get(0);
+        }
+        List<EndpointHitDto> hits = new ArrayList<>();
+        failures.forEach(failure -> hits.addAll(failure.getHits()));
+        UndeliveredHitsException undelivered = new UndeliveredHitsException(hits, failures.get(0).getCause());
+        failures.stream().skip(1).forEach(failure -> undelivered.addSuppressed(failure.getCause()));
+        return undelivered;
+    }
+
+    private static String newBatchId() {
+        return UUID.randomUUID().toString();
+    }
+
     public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
-        return webClient
-                .get()
-                .uri(uriBuilder -> uriBuilder
-                        .path("/stats")
-                        .queryParam("start", start.format(TIME_FORMATTER))
-                        .queryParam("end", end.format(TIME_FORMATTER))
-                        .queryParam("uris", uris)
-                        .queryParam("unique", unique)
-                        .build())
+        return getStats(start, end, uris, unique, false);
+    }
+
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                                       boolean approximate) {
+        List<List<ViewStatsDto>> parts = Flux.fromIterable(route(uris).entrySet())
+                .flatMap(entry -> entry.getKey()
+                        .get()
+                        .uri(uriBuilder -> statsUri(uriBuilder.path("/stats"), start, end, entry.getValue(), unique)
+                                .queryParam("approximate", approximate)
+                                .build())
+                        .retrieve()
+                        .bodyToFlux(ViewStatsDto.class)
+                        .collectList())
+                .collectList()
+                .block();
+        return merge(parts, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Hits of every uri counted from its own {@code since}, answered in one request per owning node.
+     */
+    public List<ViewStatsDto> getStatsSince(List<UriSinceDto> uris, LocalDateTime end, Boolean unique,
+                                            boolean approximate) {
+        Map<WebClient, List<UriSinceDto>> byNode = new LinkedHashMap<>();
+        for (UriSinceDto uri : uris) {
+            for (WebClient owner : owners(uri.getUri())) {
+                byNode.computeIfAbsent(owner, node -> new ArrayList<>()).add(uri);
+            }
+        }
+        List<List<ViewStatsDto>> parts = Flux.fromIterable(byNode.entrySet())
+                .flatMap(entry -> entry.getKey()
+                        .post()
+                        .uri("/stats/since")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(BodyInserters.fromValue(new StatsSinceRequestDto(entry.getValue(), end,
+                                Boolean.TRUE.equals(unique), approximate)))
+                        .retrieve()
+                        .bodyToFlux(ViewStatsDto.class)
+                        .collectList())
+                .collectList()
+                .block();
+        return merge(parts, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Views of entities of {@code type}, such as {@code events}, counted for {@code ids[i]} from {@code since[i]}
+     * in epoch seconds UTC. The answer holds parallel id and view arrays; ids without views are left out.
+     */
+    public EntityViewsDto getEntityViews(String type, long[] ids, long[] since, LocalDateTime end, boolean unique,
+                                         boolean approximate) {
+        if (nodes.size() == 1) {
+            return postEntityViews(nodes.get(0), type, new EntityViewsRequestDto(ids, since, null, end, unique,
+                    approximate)).block();
+        }
+        Map<WebClient, List<Integer>> byNode = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            for (WebClient owner : owners("/" + type + "/" + ids[i])) {
+                byNode.computeIfAbsent(owner, node -> new ArrayList<>()).add(i);
+            }
+        }
+        List<EntityViewsDto> parts = Flux.fromIterable(byNode.entrySet())
+                .flatMap(entry -> postEntityViews(entry.getKey(), type, new EntityViewsRequestDto(
+                        select(ids, entry.getValue()), since == null ? null : select(since, entry.getValue()), null,
+                        end, unique, approximate)))
+                .collectList()
+                .block();
+        Map<Long, Long> views = new LinkedHashMap<>();
+        for (EntityViewsDto part : parts) {
+            for (int i = 0; i < part.getIds().length; i++) {
+                views.merge(part.getIds()[i], part.getViews()[i], Long::sum);
+            }
+        }
+        return new EntityViewsDto(views.keySet().stream().mapToLong(Long::longValue).toArray(),
+                views.values().stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private static long[] select(long[] values, List<Integer> indexes) {
+        return indexes.stream().mapToLong(i -> values[i]).toArray();
+    }
+
+    private static Mono<EntityViewsDto> postEntityViews(WebClient node, String type, EntityViewsRequestDto request) {
+        return node.post()
+                .uri("/stats/{type}/views", type)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(request))
                 .retrieve()
-                .bodyToFlux(ViewStatsDto.class)
+                .bodyToMono(EntityViewsDto.class);
+    }
+
+    public List<ViewStatsDto> getTop(LocalDateTime start, LocalDateTime end, String app, int limit) {
+        List<List<ViewStatsDto>> parts = Flux.fromIterable(nodes)
+                .flatMap(node -> node
+                        .get()
+                        .uri(uriBuilder -> uriBuilder
+                                .path("/stats/top")
+                                .queryParam("start", start.format(TIME_FORMATTER))
+                                .queryParam("end", end.format(TIME_FORMATTER))
+                                .queryParamIfPresent("app", Optional.ofNullable(app))
+                                .queryParam("limit", limit)
+                                .build())
+                        .retrieve()
+                        .bodyToFlux(ViewStatsDto.class)
+                        .collectList())
                 .collectList()
                 .block();
+        return merge(parts, limit);
+    }
+
+    public Flux<ViewStatsDto> streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        List<Flux<ViewStatsDto>> streams = new ArrayList<>();
+        route(uris).forEach((node, nodeUris) -> streams.add(node
+                .get()
+                .uri(uriBuilder -> statsUri(uriBuilder.path("/stats/stream"), start, end, nodeUris, unique).build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(ViewStatsDto.class)));
+        if (streams.size() == 1) {
+            return streams.get(0);
+        }
+        if (previousRing != null) {
+            return Flux.fromIterable(streams)
+                    .flatMap(Flux::collectList)
+                    .collectList()
+                    .flatMapIterable(parts -> merge(parts, Integer.MAX_VALUE));
+        }
+        return mergeByHits(streams);
+    }
+
+    /**
+     * Merges the sorted streams pairwise, halving the list each time, so no generic array has to be built.
+     */
+    private static Flux<ViewStatsDto> mergeByHits(List<Flux<ViewStatsDto>> streams) {
+        if (streams.size() == 1) {
+            return streams.get(0);
+        }
+        int half = streams.size() / 2;
+        return Flux.mergeComparing(BY_HITS_DESC, mergeByHits(streams.subList(0, half)),
+                mergeByHits(streams.subList(half, streams.size())));
+    }
+
+    private static UriBuilder statsUri(UriBuilder uriBuilder, LocalDateTime start, LocalDateTime end, List<String> uris,
+                                       Boolean unique) {
+        uriBuilder.queryParam("start", start.format(TIME_FORMATTER))
+                .queryParam("end", end.format(TIME_FORMATTER))
+                .queryParam("unique", unique);
+        return uris == null ? uriBuilder : uriBuilder.queryParam("uris", uris);
+    }
+
+    /**
+     * Nodes to ask and the uris each of them owns; {@code null} uris mean every node and all uris.
+     */
+    private Map<WebClient, List<String>> route(List<String> uris) {
+        Map<WebClient, List<String>> routes = new LinkedHashMap<>();
+        if (uris == null) {
+            nodes.forEach(node -> routes.put(node, null));
+        } else {
+            for (String uri : uris) {
+                for (WebClient owner : owners(uri)) {
+                    routes.computeIfAbsent(owner, node -> new ArrayList<>()).add(uri);
+                }
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * Nodes that may hold hits of {@code key}: its owner, and its previous owner while the ring is rebalanced.
+     */
+    private List<WebClient> owners(String key) {
+        WebClient owner = ring.owner(key);
+        if (previousRing == null) {
+            return List.of(owner);
+        }
+        WebClient previousOwner = previousRing.owner(key);
+        return previousOwner == owner ? List.of(owner) : List.of(owner, previousOwner);
+    }
+
+    /**
+     * K-way merge of per-node lists sorted by hits. A uri lives on one node only, except while the ring is rebalanced
+     * and both its previous and its current owner were asked; then its hits are summed and the result is sorted
+     * again.
+     */
+    private static List<ViewStatsDto> merge(List<List<ViewStatsDto>> parts, int limit) {
+        if (parts.size() == 1) {
+            List<ViewStatsDto> part = parts.get(0);
+            return part.size() > limit ? part.subList(0, limit) : part;
+        }
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator.comparing(
+                (int[] head) -> parts.get(head[0]).get(head[1]), BY_HITS_DESC));
+        for (int i = 0; i < parts.size(); i++) {
+            if (!parts.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        Map<List<String>, ViewStatsDto> seen = new HashMap<>();
+        List<ViewStatsDto> result = new ArrayList<>();
+        boolean resort = false;
+        while (!heads.isEmpty() && result.size() < limit) {
+            int[] head = heads.poll();
+            List<ViewStatsDto> part = parts.get(head[0]);
+            ViewStatsDto viewStats = part.get(head[1]);
+            ViewStatsDto previous = seen.putIfAbsent(List.of(viewStats.getApp(), viewStats.getUri()), viewStats);
+            if (previous == null) {
+                result.add(viewStats);
+            } else {
+                previous.setHits(previous.getHits() + viewStats.getHits());
+                resort = true;
+            }
+            if (++head[1] < part.size()) {
+                heads.add(head);
+            }
+        }
+        if (resort) {
+            result.sort(BY_HITS_DESC);
+        }
+        return result;
     }
 }
@@ -0,0 +1,348 @@
+package ru.practicum.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.HitWireFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends hits to the stats-server TCP ingest listener over one persistent connection using {@link HitWireFormat}.
+ * Frames stay in flight until the server answers them; NACKed frames and frames in flight on a connection that was
+ * lost are sent again with exponential backoff, and dropped after {@link #MAX_ATTEMPTS} attempts.
+ */
+@Slf4j
+public class StatsTcpTransport implements AutoCloseable {
+    private static final int MAX_STRINGS = 1 << 20;
+    private static final int MAX_HIT_BYTES = 32 + 3 * HitWireFormat.MAX_TEXT_BYTES;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long FIRST_RETRY_MILLIS = 200;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+
+    private final String host;
+    private final int port;
+    private final int maxFrameLength;
+    private final EventLoopGroup group = new NioEventLoopGroup(1);
+    private final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stats-tcp-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Bootstrap bootstrap;
+    private final AtomicLong acknowledged = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private Connection connection;
+
+    public StatsTcpTransport(String host, int port) {
+        this(host, port, HitWireFormat.MAX_FRAME_LENGTH);
+    }
+
+    public StatsTcpTransport(String host, int port, int maxFrameLength) {
+        this.host = host;
+        this.port = port;
+        this.maxFrameLength = maxFrameLength;
+        this.bootstrap = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true);
+    }
+
+    public void send(List<EndpointHitDto> hits) {
+        send(hits, 1);
+    }
+
+    public long getAcknowledged() {
+        return acknowledged.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private synchronized void send(List<EndpointHitDto> hits, int attempt) {
+        List<EndpointHitDto> sendable = new ArrayList<>(hits.size());
+        for (EndpointHitDto hit : hits) {
+            if (fits(hit.getApp()) && fits(hit.getUri()) && fits(hit.getIp())) {
+                sendable.add(hit);
+            }
+        }
+        if (sendable.size() < hits.size()) {
+            rejected.addAndGet(hits.size() - sendable.size());
+            log.warn("Skipped {} hits with a missing or oversized app, uri or ip", hits.size() - sendable.size());
+        }
+        Connection conn = connect();
+        List<EndpointHitDto> frameHits = new ArrayList<>();
+        ByteBuf body = conn.channel.alloc().buffer();
+        ChannelFuture write = null;
+        for (EndpointHitDto hit : sendable) {
+            if (body.readableBytes() + MAX_HIT_BYTES > maxFrameLength - 16) {
+                write = writeHits(conn, frameHits, body, attempt);
+                frameHits = new ArrayList<>();
+                body = conn.channel.alloc().buffer();
+            }
+            conn.encode(body, hit);
+            frameHits.add(hit);
+        }
+        if (frameHits.isEmpty()) {
+            body.release();
+        } else {
+            write = writeHits(conn, frameHits, body, attempt);
+        }
+        if (write != null && !conn.channel.isWritable()) {
+            write.syncUninterruptibly();
+        }
+    }
+
+    private static boolean fits(String value) {
+        return value != null && (value.length() * 3 <= HitWireFormat.MAX_TEXT_BYTES
+                || value.getBytes(StandardCharsets.UTF_8).length <= HitWireFormat.MAX_TEXT_BYTES);
+    }
+
+    private ChannelFuture writeHits(Connection conn, List<EndpointHitDto> hits, ByteBuf body, int attempt) {
+        ByteBuf header = conn.channel.alloc().buffer(6);
+        header.writeByte(HitWireFormat.FRAME_HITS);
+        HitWireFormat.writeVarint(header, hits.size());
+        conn.inFlight.add(new Frame(hits, attempt));
+        ChannelFuture write = conn.channel.writeAndFlush(conn.channel.alloc().compositeBuffer(2)
+                .addComponents(true, header, body));
+        if (conn.closed) {
+            conn.retryInFlight();
+        }
+        return write;
+    }
+
+    private void retry(Frame frame) {
+        if (frame.attempt >= MAX_ATTEMPTS) {
+            dropped.addAndGet(frame.hits.size());
+            log.warn("Dropped {} hits after {} attempts to send them to the stats server", frame.hits.size(),
+                    frame.attempt);
+            return;
+        }
+        long delay = Math.min(MAX_RETRY_MILLIS, FIRST_RETRY_MILLIS << (frame.attempt - 1));
+        try {
+            retries.schedule(() -> {
+                try {
+                    send(frame.hits, frame.attempt + 1);
+                } catch (RuntimeException e) {
+                    log.warn("Stats TCP resend failed: {}", e.getMessage());
+                    retry(new Frame(frame.hits, frame.attempt + 1));
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            dropped.addAndGet(frame.hits.size());
+        }
+    }
+
+    private Connection connect() {
+        if (connection != null && !connection.closed && connection.strings.size() < MAX_STRINGS) {
+            return connection;
+        }
+        if (connection != null) {
+            connection.channel.close();
+        }
+        Connection conn = new Connection();
+        conn.channel = bootstrap.clone()
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline()
+                                .addLast(new LengthFieldBasedFrameDecoder(maxFrameLength, 0,
+                                        HitWireFormat.LENGTH_FIELD_BYTES, 0, HitWireFormat.LENGTH_FIELD_BYTES))
+                                .addLast(new LengthFieldPrepender(HitWireFormat.LENGTH_FIELD_BYTES))
+                                .addLast(new AckHandler(conn));
+                    }
+                })
+                .connect(host, port).syncUninterruptibly().channel();
+        connection = conn;
+        return conn;
+    }
+
+    @Override
+    public void close() {
+        retries.shutdownNow();
+        synchronized (this) {
+            if (connection != null) {
+                connection.channel.close().syncUninterruptibly();
+            }
+        }
+        group.shutdownGracefully().syncUninterruptibly();
+    }
+
+    private static final class Frame {
+        private final List<EndpointHitDto> hits;
+        private final int attempt;
+
+        private Frame(List<EndpointHitDto> hits, int attempt) {
+            this.hits = hits;
+            this.attempt = attempt;
+        }
+    }
+
+    /**
+     * State of one connection: the interned strings, the last epoch second sent and the frames not answered yet,
+     * which the server answers in the order they were sent.
+     */
+    private final class Connection {
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Queue<Frame> inFlight = new ConcurrentLinkedQueue<>();
+        private Channel channel;
+        private long lastEpochSecond;
+        private volatile boolean closed;
+
+        private void encode(ByteBuf frame, EndpointHitDto hit) {
+            HitWireFormat.writeVarint(frame, intern(hit.getApp()));
+            HitWireFormat.writeVarint(frame, intern(hit.getUri()));
+            writeIp(frame, hit.getIp());
+            LocalDateTime timestamp = hit.getTimestamp() == null ? LocalDateTime.now() : hit.getTimestamp();
+            long epochSecond = timestamp.toEpochSecond(ZoneOffset.UTC);
+            HitWireFormat.writeVarint(frame, HitWireFormat.zigzag(epochSecond - lastEpochSecond));
+            lastEpochSecond = epochSecond;
+        }
+
+        private int intern(String value) {
+            Integer id = strings.get(value);
+            if (id != null) {
+                return id;
+            }
+            id = strings.size();
+            strings.put(value, id);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ByteBuf frame = channel.alloc().buffer(bytes.length + 10);
+            frame.writeByte(HitWireFormat.FRAME_STRING);
+            HitWireFormat.writeVarint(frame, id);
+            HitWireFormat.writeVarint(frame, bytes.length);
+            frame.writeBytes(bytes);
+            channel.write(frame);
+            return id;
+        }
+
+        private void answered(boolean stored) {
+            Frame frame = inFlight.poll();
+            if (frame != null && !stored) {
+                retry(frame);
+            }
+        }
+
+        /**
+         * Every frame is taken by exactly one caller, so frames queued while the connection was closing are
+         * retried once, either here or by the sender that saw the closed flag.
+         */
+        private void retryInFlight() {
+            for (Frame frame = inFlight.poll(); frame != null; frame = inFlight.poll()) {
+                retry(frame);
+            }
+        }
+    }
+
+    private static void writeIp(ByteBuf frame, String ip) {
+        int[] octets = parseIpv4(ip);
+        if (octets != null) {
+            frame.writeByte(HitWireFormat.IP_V4);
+            for (int octet : octets) {
+                frame.writeByte(octet);
+            }
+            return;
+        }
+        byte[] bytes = ip.getBytes(StandardCharsets.UTF_8);
+        frame.writeByte(HitWireFormat.IP_TEXT);
+        HitWireFormat.writeVarint(frame, bytes.length);
+        frame.writeBytes(bytes);
+    }
+
+    private static int[] parseIpv4(String ip) {
+        int[] octets = new int[4];
+        int index = 0;
+        int value = -1;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255 || (value == 0 && i + 1 < ip.length() && ip.charAt(i + 1) != '.')) {
+                    return null;
+                }
+            } else if (c == '.' && value >= 0 && index < 3) {
+                octets[index++] = value;
+                value = -1;
+            } else {
+                return null;
+            }
+        }
+        if (index != 3 || value < 0) {
+            return null;
+        }
+        octets[3] = value;
+        return octets;
+    }
+
+    private class AckHandler extends SimpleChannelInboundHandler<ByteBuf> {
+        private final Connection conn;
+
+        AckHandler(Connection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+            byte type = frame.readByte();
+            long count = HitWireFormat.readVarint(frame);
+            if (type == HitWireFormat.FRAME_ACK) {
+                acknowledged.addAndGet(count);
+                long invalid = frame.isReadable() ? HitWireFormat.readVarint(frame) : 0;
+                if (invalid > 0) {
+                    rejected.addAndGet(invalid);
+                    log.warn("Stats server rejected {} invalid hits", invalid);
+                }
+                conn.answered(true);
+            } else {
+                log.warn("Stats server could not store {} hits, they will be sent again", count);
+                conn.answered(false);
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            conn.closed = true;
+            conn.retryInFlight();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.warn("Stats TCP connection failed: {}", cause.getMessage());
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.client;
+
+import ru.practicum.dto.EndpointHitDto;
+
+import java.util.List;
+
+/**
+ * Some nodes did not take their part of a batch; holds only the hits of those nodes, so just they are sent again.
+ */
+public class UndeliveredHitsException extends RuntimeException {
+    private final List<EndpointHitDto> hits;
+
+    public UndeliveredHitsException(List<EndpointHitDto> hits, Throwable cause) {
+        super("Не доставлено хитов: " + hits.size() + ": " + cause.getMessage(), cause);
+        this.hits = List.copyOf(hits);
+    }
+
+    public List<EndpointHitDto> getHits() {
+        return hits;
+    }
+}
@@ -0,0 +1,65 @@
+package ru.practicum.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsistentHashRingTest {
+    private static final int KEYS = 20_000;
+
+    @Test
+    void spreadsKeysEvenly() {
+        ConsistentHashRing<String> ring = ring("a", "b", "c", "d");
+
+        Map<String, Integer> owned = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            owned.merge(ring.owner("/events/" + i), 1, Integer::sum);
+        }
+
+        assertThat(owned).hasSize(4);
+        assertThat(owned.values())
+                .allSatisfy(count -> assertThat(count).isBetween(KEYS / 4 * 7 / 10, KEYS / 4 * 13 / 10));
+    }
+
+    @Test
+    void addingNodeOnlyMovesKeysToIt() {
+        ConsistentHashRing<String> before = ring("a", "b", "c");
+        ConsistentHashRing<String> after = ring("a", "b", "c", "d");
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "/events/" + i;
+            if (!before.owner(key).equals(after.owner(key))) {
+                assertThat(after.owner(key)).isEqualTo("d");
+                moved++;
+            }
+        }
+
+        assertThat(moved).isBetween(KEYS / 4 * 7 / 10, KEYS / 4 * 13 / 10);
+    }
+
+    @Test
+    void removingNodeRestoresPreviousOwners() {
+        ConsistentHashRing<String> ring = ring("a", "b", "c");
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            owners.put("/events/" + i, ring.owner("/events/" + i));
+        }
+
+        ring.add("d", "d");
+        ring.remove("d");
+
+        owners.forEach((key, owner) -> assertThat(ring.owner(key)).isEqualTo(owner));
+    }
+
+    private static ConsistentHashRing<String> ring(String... names) {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(160);
+        for (String name : names) {
+            ring.add(name, name);
+        }
+        return ring;
+    }
+}
@@ -0,0 +1,134 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitBatcherTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HitBatcher batcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    @Test
+    void failedBatchIsSentAgain() throws InterruptedException {
+        batcher = new HitBatcher(100, 10, Duration.ofMillis(10), 5, Duration.ofMillis(10), meterRegistry);
+        AtomicInteger attempts = new AtomicInteger();
+        List<EndpointHitDto> delivered = new CopyOnWriteArrayList<>();
+        CountDownLatch sent = new CountDownLatch(1);
+        batcher.start((batchId, batch) -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("server is down");
+            }
+            delivered.addAll(batch);
+            sent.countDown();
+        });
+
+        batcher.offer(hit("/events/1"));
+        batcher.offer(hit("/events/2"));
+
+        assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+        batcher.close();
+        assertThat(delivered).extracting(EndpointHitDto::getUri).containsExactly("/events/1", "/events/2");
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.counter("stats.client.queue.sent").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("stats.client.queue.retried").count()).isEqualTo(4);
+        assertThat(meterRegistry.counter("stats.client.queue.failed").count()).isZero();
+    }
+
+    @Test
+    void onlyUndeliveredHitsAreSentAgainUnderSameBatchId() throws InterruptedException {
+        batcher = new HitBatcher(100, 10, Duration.ofMillis(10), 5, Duration.ofMillis(10), meterRegistry);
+        List<String> batchIds = new CopyOnWriteArrayList<>();
+        List<List<String>> attempts = new CopyOnWriteArrayList<>();
+        CountDownLatch sent = new CountDownLatch(1);
+        batcher.start((batchId, batch) -> {
+            batchIds.add(batchId);
+            attempts.add(batch.stream().map(EndpointHitDto::getUri).collect(Collectors.toList()));
+            if (attempts.size() == 1) {
+                throw new UndeliveredHitsException(batch.subList(1, 2), new IllegalStateException("node is down"));
+            }
+            sent.countDown();
+        });
+
+        batcher.offer(hit("/events/1"));
+        batcher.offer(hit("/events/2"));
+
+        assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+        batcher.close();
+        assertThat(attempts).containsExactly(List.of("/events/1", "/events/2"), List.of("/events/2"));
+        assertThat(batchIds).hasSize(2).containsOnly(batchIds.get(0));
+        assertThat(meterRegistry.counter("stats.client.queue.sent").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("stats.client.queue.retried").count()).isEqualTo(1);
+    }
+
+    @Test
+    void batchIsCountedAsFailedAfterLastAttempt() throws InterruptedException {
+        batcher = new HitBatcher(100, 10, Duration.ofMillis(10), 3, Duration.ofMillis(10), meterRegistry);
+        AtomicInteger attempts = new AtomicInteger();
+        batcher.start((batchId, batch) -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("server is down");
+        });
+
+        batcher.offer(hit("/events/1"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.counter("stats.client.queue.failed").count() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(meterRegistry.counter("stats.client.queue.failed").count()).isEqualTo(1);
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void closeCutsBackoffShortWithOneLastAttempt() throws InterruptedException {
+        batcher = new HitBatcher(100, 10, Duration.ofMillis(10), 10, Duration.ofMinutes(1), meterRegistry);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch failed = new CountDownLatch(1);
+        List<EndpointHitDto> delivered = new CopyOnWriteArrayList<>();
+        batcher.start((batchId, batch) -> {
+            if (attempts.incrementAndGet() == 1) {
+                failed.countDown();
+                throw new IllegalStateException("server is down");
+            }
+            delivered.addAll(batch);
+        });
+
+        batcher.offer(hit("/events/1"));
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long started = System.nanoTime();
+        batcher.close(Duration.ofSeconds(5));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(5));
+        assertThat(delivered).extracting(EndpointHitDto::getUri).containsExactly("/events/1");
+        assertThat(attempts).hasValue(2);
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        return EndpointHitDto.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(LocalDateTime.of(2024, 1, 1, 10, 15))
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class HitSpoolTest {
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 1, 1, 10, 15);
+    // every hit built by hit() takes 51 bytes, so the tail left after two of them is too short for a third
+    private static final long TWO_RECORDS = 2 * 51 + 18;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<EndpointHitDto> delivered = new CopyOnWriteArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    private HitSpool spool;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    @Test
+    void backlogSurvivesReopening() throws Exception {
+        HitSpool first = open(TWO_RECORDS, 10);
+        first.append(List.of(hit("/events/1"), hit("/events/2")));
+        first.close();
+
+        spool = open(TWO_RECORDS, 10);
+        assertThat(spool.size()).isEqualTo(2);
+        spool.start(delivered::addAll);
+        awaitEmpty();
+
+        assertThat(delivered).extracting(EndpointHitDto::getApp, EndpointHitDto::getUri, EndpointHitDto::getIp,
+                        EndpointHitDto::getTimestamp)
+                .containsExactly(tuple("ewm-main-service", "/events/1", "10.0.0.1", TIMESTAMP),
+                        tuple("ewm-main-service", "/events/2", "10.0.0.1", TIMESTAMP));
+    }
+
+    @Test
+    void fullSpoolDropsNewHits() {
+        spool = open(TWO_RECORDS, 10);
+
+        spool.append(List.of(hit("/events/1"), hit("/events/2"), hit("/events/3")));
+
+        assertThat(spool.size()).isEqualTo(2);
+        assertThat(meterRegistry.counter("stats.client.spool.spooled").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("stats.client.spool.dropped").count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsAfterWrapAreReplayedInOrder() throws Exception {
+        spool = open(TWO_RECORDS, 1);
+        spool.append(List.of(hit("/events/1"), hit("/events/2")));
+        spool.start(delivered::addAll);
+        awaitEmpty();
+
+        spool.append(List.of(hit("/events/3"), hit("/events/4")));
+        awaitEmpty();
+
+        assertThat(delivered).extracting(EndpointHitDto::getUri)
+                .containsExactly("/events/1", "/events/2", "/events/3", "/events/4");
+        assertThat(meterRegistry.counter("stats.client.spool.dropped").count()).isZero();
+    }
+
+    @Test
+    void failedBatchStaysInSpool() throws Exception {
+        spool = open(TWO_RECORDS, 10);
+        spool.append(List.of(hit("/events/1")));
+        spool.start(batch -> {
+            throw new IllegalStateException("server is down");
+        });
+
+        TimeUnit.MILLISECONDS.sleep(300);
+
+        assertThat(spool.size()).isEqualTo(1);
+        assertThat(meterRegistry.counter("stats.client.spool.replayed").count()).isZero();
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThatThrownBy(() -> open(0, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private HitSpool open(long capacity, int batchSize) {
+        return new HitSpool(dir.resolve("spool.dat"), capacity, Duration.ofSeconds(1), batchSize, meterRegistry);
+    }
+
+    private void awaitEmpty() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!spool.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(spool.isEmpty()).isTrue();
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        return EndpointHitDto.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(TIMESTAMP)
+                .build();
+    }
+}
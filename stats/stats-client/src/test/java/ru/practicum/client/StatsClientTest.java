@@ -0,0 +1,186 @@
+package ru.practicum.client;
+
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatsClientTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 2, 0, 0);
+
+    private final List<DisposableServer> servers = new ArrayList<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final List<String> batchIds = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        servers.forEach(DisposableServer::disposeNow);
+    }
+
+    @Test
+    void asksPreviousOwnerAndSumsHitsWhileRebalancing() {
+        String oldNode = node("old", 3);
+        String newNode = node("new", 2);
+        String uri = uriMovedFrom(List.of(oldNode), List.of(oldNode, newNode));
+
+        StatsClient client = StatsClient.builder()
+                .host(oldNode)
+                .host(newNode)
+                .previousHost(oldNode)
+                .build();
+        List<ViewStatsDto> stats = client.getStats(START, END, List.of(uri), false);
+
+        assertThat(stats).hasSize(1);
+        assertThat(stats.get(0).getHits()).isEqualTo(5);
+        assertThat(requests.get("old")).hasValue(1);
+        assertThat(requests.get("new")).hasValue(1);
+    }
+
+    @Test
+    void asksOnlyTheOwnerWithoutPreviousNodes() {
+        String oldNode = node("old", 3);
+        String newNode = node("new", 2);
+        String uri = uriMovedFrom(List.of(oldNode), List.of(oldNode, newNode));
+
+        StatsClient client = StatsClient.builder().host(oldNode).host(newNode).build();
+        List<ViewStatsDto> stats = client.getStats(START, END, List.of(uri), false);
+
+        assertThat(stats).extracting(ViewStatsDto::getHits).containsExactly(2L);
+        assertThat(requests.get("old")).isNull();
+    }
+
+    @Test
+    void rejectsTcpTransportItCannotUse() {
+        StatsTcpTransport tcpTransport = new StatsTcpTransport("localhost", 9191);
+        try {
+            assertThatThrownBy(() -> StatsClient.builder().host("http://a").host("http://b")
+                    .tcpTransport(tcpTransport).build()).isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            tcpTransport.close();
+        }
+    }
+
+    @Test
+    void onlyHitsOfFailedNodeAreUndelivered() {
+        String up = hitsNode(201);
+        String down = hitsNode(503);
+        ConsistentHashRing<String> ring = ring(List.of(up, down));
+        String upUri = uriOwnedBy(ring, up);
+        String downUri = uriOwnedBy(ring, down);
+
+        StatsClient client = StatsClient.builder().host(up).host(down).build();
+
+        assertThatThrownBy(() -> client.createAll(List.of(hit(upUri), hit(downUri))))
+                .isInstanceOfSatisfying(UndeliveredHitsException.class, e -> assertThat(e.getHits())
+                        .extracting(EndpointHitDto::getUri).containsExactly(downUri));
+        assertThat(batchIds).hasSize(2).doesNotHaveDuplicates().allMatch(id -> id != null && !id.isEmpty());
+    }
+
+    @Test
+    void streamsOfAllNodesAreMergedByHits() {
+        StatsClient client = StatsClient.builder()
+                .host(streamNode(9, 4))
+                .host(streamNode(7, 1))
+                .host(streamNode(8, 5, 2))
+                .build();
+
+        assertThat(client.streamStats(START, END, null, false).collectList().block())
+                .extracting(ViewStatsDto::getHits)
+                .containsExactly(9L, 8L, 7L, 5L, 4L, 2L, 1L);
+    }
+
+    private String streamNode(long... hits) {
+        StringBuilder body = new StringBuilder();
+        for (long count : hits) {
+            body.append("{\"app\":\"ewm-main-service\",\"uri\":\"/events/").append(count).append("\",\"hits\":")
+                    .append(count).append("}\n");
+        }
+        DisposableServer server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.get("/stats/stream", (request, response) ->
+                        response.header("Content-Type", "application/x-ndjson")
+                                .sendString(Mono.just(body.toString()))))
+                .bindNow();
+        servers.add(server);
+        return "http://localhost:" + server.port();
+    }
+
+    private String hitsNode(int status) {
+        DisposableServer server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.post("/hits", (request, response) -> {
+                    batchIds.add(request.requestHeaders().get("X-Batch-Id"));
+                    return request.receive().then(response.status(status).send());
+                }))
+                .bindNow();
+        servers.add(server);
+        return "http://localhost:" + server.port();
+    }
+
+    private static String uriOwnedBy(ConsistentHashRing<String> ring, String host) {
+        for (int i = 0; ; i++) {
+            String uri = "/events/" + i;
+            if (ring.owner(uri).equals(host)) {
+                return uri;
+            }
+        }
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        return EndpointHitDto.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(START)
+                .build();
+    }
+
+    private String node(String name, long hits) {
+        DisposableServer server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.get("/stats", (request, response) -> {
+                    requests.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
+                    String uri = new QueryStringDecoder(request.uri()).parameters()
+                            .get("uris").get(0);
+                    return response.header("Content-Type", "application/json")
+                            .sendString(Mono.just("[{\"app\":\"ewm-main-service\",\"uri\":\"" + uri + "\",\"hits\":" +
+                                    hits + "}]"));
+                }))
+                .bindNow();
+        servers.add(server);
+        return "http://localhost:" + server.port();
+    }
+
+    private static String uriMovedFrom(List<String> before, List<String> after) {
+        ConsistentHashRing<String> previous = ring(before);
+        ConsistentHashRing<String> current = ring(after);
+        for (int i = 0; ; i++) {
+            String uri = "/events/" + i;
+            if (!previous.owner(uri).equals(current.owner(uri))) {
+                return uri;
+            }
+        }
+    }
+
+    private static ConsistentHashRing<String> ring(List<String> hosts) {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(160);
+        hosts.forEach(host -> ring.add(host, host));
+        return ring;
+    }
+}
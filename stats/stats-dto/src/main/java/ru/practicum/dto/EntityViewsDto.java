@@ -0,0 +1,16 @@
+package ru.practicum.dto;
+
+import lombok.*;
+
+/**
+ * {@code views[i]} belongs to {@code ids[i]}; ids without views are left out.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class EntityViewsDto {
+    private long[] ids;
+    private long[] views;
+}
@@ -0,0 +1,29 @@
+package ru.practicum.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * Views of entities of one type, addressed by id. {@code since[i]}, in epoch seconds UTC, is the start for
+ * {@code ids[i]}; without {@code since} all ids are counted from the common {@code start}.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class EntityViewsRequestDto {
+    @NotNull
+    private long[] ids;
+    private long[] since;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime start;
+    @NotNull
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime end;
+    private boolean unique;
+    private boolean approximate;
+}
@@ -0,0 +1,14 @@
+package ru.practicum.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class HistogramSeriesDto {
+    private String app;
+    private String uri;
+    private long[] hits;
+}
@@ -0,0 +1,57 @@
+package ru.practicum.dto;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Binary hit protocol of the TCP ingest listener. Every frame is prefixed with its 4-byte big-endian length, at
+ * most {@link #MAX_FRAME_LENGTH} by default, and starts with a type byte. Strings are interned per connection: a
+ * STRING frame assigns an id once, and HITS frames only carry ids, a packed ip and the zigzag varint delta of the
+ * epoch second from the previous hit of the connection.
+ * <p>
+ * Every HITS frame is answered in order: ACK carries the number of stored hits and the number of invalid ones that
+ * were dropped, NACK the number of hits that were not stored and should be sent again.
+ */
+public final class HitWireFormat {
+    public static final byte FRAME_STRING = 1;
+    public static final byte FRAME_HITS = 2;
+    public static final byte FRAME_ACK = 16;
+    public static final byte FRAME_NACK = 17;
+
+    public static final int LENGTH_FIELD_BYTES = 4;
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+    public static final int MAX_TEXT_BYTES = 4096;
+
+    public static final byte IP_TEXT = 0;
+    public static final byte IP_V4 = 4;
+
+    private HitWireFormat() {
+    }
+
+    public static void writeVarint(ByteBuf buf, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.writeByte((int) value);
+    }
+
+    public static long readVarint(ByteBuf buf) {
+        long result = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = buf.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.dto;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An IPv4 or IPv6 literal as accepted by {@link IpAddresses}; {@code null} is valid.
+ */
+@Documented
+@Constraint(validatedBy = IpAddressValidator.class)
+@Target({ElementType.FIELD, ElementType.PARAMETER, ElementType.TYPE_USE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface IpAddress {
+    String message() default "must be an IPv4 or IPv6 address";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
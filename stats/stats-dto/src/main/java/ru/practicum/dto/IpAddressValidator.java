@@ -0,0 +1,11 @@
+package ru.practicum.dto;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+public class IpAddressValidator implements ConstraintValidator<IpAddress, String> {
+    @Override
+    public boolean isValid(String value, ConstraintValidatorContext context) {
+        return value == null || IpAddresses.isValid(value);
+    }
+}
@@ -0,0 +1,156 @@
+package ru.practicum.dto;
+
+/**
+ * Parses IPv4 and IPv6 literals without name lookups and formats them the way Postgres prints {@code INET} hosts, so
+ * a normalized ip is the same string whichever path stored the hit.
+ */
+public final class IpAddresses {
+    private static final int MAX_LENGTH = 45;
+
+    private IpAddresses() {
+    }
+
+    public static boolean isValid(String ip) {
+        return normalize(ip) != null;
+    }
+
+    /**
+     * Returns the canonical form of an ip literal, or {@code null} if it is not one.
+     */
+    public static String normalize(String ip) {
+        if (ip == null || ip.isEmpty() || ip.length() > MAX_LENGTH) {
+            return null;
+        }
+        if (ip.indexOf(':') < 0) {
+            int[] octets = parseIpv4(ip);
+            return octets == null ? null : formatIpv4(octets[0], octets[1], octets[2], octets[3]);
+        }
+        int[] words = parseIpv6(ip);
+        return words == null ? null : formatIpv6(words);
+    }
+
+    private static int[] parseIpv4(String ip) {
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        int[] octets = new int[4];
+        for (int i = 0; i < 4; i++) {
+            octets[i] = parseNumber(parts[i], 10, 3, 255);
+            if (octets[i] < 0) {
+                return null;
+            }
+        }
+        return octets;
+    }
+
+    private static int[] parseIpv6(String ip) {
+        int gap = ip.indexOf("::");
+        if (gap >= 0 && ip.indexOf("::", gap + 1) >= 0) {
+            return null;
+        }
+        int[] head = parseWords(gap < 0 ? ip : ip.substring(0, gap), gap < 0);
+        int[] tail = gap < 0 ? new int[0] : parseWords(ip.substring(gap + 2), true);
+        if (head == null || tail == null) {
+            return null;
+        }
+        int length = head.length + tail.length;
+        if (gap < 0 ? length != 8 : length > 7) {
+            return null;
+        }
+        int[] words = new int[8];
+        System.arraycopy(head, 0, words, 0, head.length);
+        System.arraycopy(tail, 0, words, 8 - tail.length, tail.length);
+        return words;
+    }
+
+    private static int[] parseWords(String part, boolean last) {
+        if (part.isEmpty()) {
+            return new int[0];
+        }
+        String[] groups = part.split(":", -1);
+        boolean ipv4 = last && groups[groups.length - 1].indexOf('.') >= 0;
+        int[] words = new int[groups.length + (ipv4 ? 1 : 0)];
+        for (int i = 0; i < groups.length; i++) {
+            if (ipv4 && i == groups.length - 1) {
+                int[] octets = parseIpv4(groups[i]);
+                if (octets == null) {
+                    return null;
+                }
+                words[i] = octets[0] << 8 | octets[1];
+                words[i + 1] = octets[2] << 8 | octets[3];
+            } else {
+                words[i] = parseNumber(groups[i], 16, 4, 0xffff);
+                if (words[i] < 0) {
+                    return null;
+                }
+            }
+        }
+        return words;
+    }
+
+    private static int parseNumber(String digits, int radix, int maxDigits, int maxValue) {
+        if (digits.isEmpty() || digits.length() > maxDigits) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = Character.digit(digits.charAt(i), radix);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * radix + digit;
+        }
+        return value <= maxValue ? value : -1;
+    }
+
+    private static String formatIpv4(int a, int b, int c, int d) {
+        return a + "." + b + "." + c + "." + d;
+    }
+
+    /**
+     * Compresses the first longest run of at least two zero words, and keeps IPv4-compatible and IPv4-mapped
+     * addresses in dotted form, as Postgres does.
+     */
+    private static String formatIpv6(int[] words) {
+        int bestBase = -1;
+        int bestLength = 0;
+        for (int i = 0; i < 8; ) {
+            if (words[i] != 0) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < 8 && words[i] == 0) {
+                i++;
+            }
+            if (i - start > bestLength) {
+                bestBase = start;
+                bestLength = i - start;
+            }
+        }
+        if (bestLength < 2) {
+            bestBase = -1;
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            if (i == bestBase) {
+                text.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (i == 6 && bestBase == 0 && (bestLength == 6 || bestLength == 5 && words[5] == 0xffff)) {
+                if (bestLength == 5) {
+                    text.append(':');
+                }
+                text.append(formatIpv4(words[6] >> 8, words[6] & 0xff, words[7] >> 8, words[7] & 0xff));
+                break;
+            }
+            if (i > 0 && i != bestBase + bestLength) {
+                text.append(':');
+            }
+            text.append(Integer.toHexString(words[i]));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package ru.practicum.server.bitmap;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+/**
+ * Hourly bitmap of one (app, uri) series; ips stored at different sampling rates are kept in separate bitmaps.
+ */
+@Getter
+@EqualsAndHashCode
+public class BitmapKey implements Comparable<BitmapKey> {
+    private static final Comparator<BitmapKey> ORDER = Comparator
+            .comparingInt(BitmapKey::getAppId)
+            .thenComparingInt(BitmapKey::getUriId)
+            .thenComparing(BitmapKey::getBucket)
+            .thenComparingInt(BitmapKey::getWeight);
+
+    private final int appId;
+    private final int uriId;
+    private final LocalDateTime bucket;
+    private final int weight;
+
+    public BitmapKey(int appId, int uriId, LocalDateTime bucket, int weight) {
+        this.appId = appId;
+        this.uriId = uriId;
+        this.bucket = bucket;
+        this.weight = weight;
+    }
+
+    @Override
+    public int compareTo(BitmapKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,174 @@
+package ru.practicum.server.bitmap;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.server.cache.StatsQueryCache;
+import ru.practicum.server.ingest.DirtyHours;
+import ru.practicum.server.ingest.HitListener;
+import ru.practicum.server.ingest.PendingIncrements;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.repository.DictionaryRepository;
+import ru.practicum.server.repository.DirtyHourRepository;
+import ru.practicum.server.repository.IpBitmapRepository;
+import ru.practicum.server.rollup.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.Set;
+
+/**
+ * Keeps an hourly bitmap of ip dictionary ids per (app, uri). Like the HLL sketches, increments are collected in
+ * memory after the ingest transaction commits and merged into the stored bitmaps on a schedule, and bitmaps of hours
+ * left unflushed by a crash are rebuilt from raw hits on startup.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.storage", havingValue = "postgres", matchIfMissing = true)
+public class IpBitmapMaintainer implements HitListener, SmartLifecycle {
+    private final DictionaryRepository dictionaryRepository;
+    private final IpBitmapRepository ipBitmapRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final DirtyHours dirtyHours;
+    private final StatsQueryCache queryCache;
+    private final PendingIncrements<BitmapKey, RoaringBitmap> pending = new PendingIncrements<>((bitmap, other) -> {
+        bitmap.or(other);
+        return bitmap;
+    });
+
+    private volatile boolean running;
+
+    public IpBitmapMaintainer(DictionaryRepository dictionaryRepository, IpBitmapRepository ipBitmapRepository,
+                              TransactionTemplate transactionTemplate, DirtyHourRepository dirtyHourRepository,
+                              ObjectProvider<StatsQueryCache> queryCache, MeterRegistry meterRegistry) {
+        this.dictionaryRepository = dictionaryRepository;
+        this.ipBitmapRepository = ipBitmapRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.dirtyHours = new DirtyHours(dirtyHourRepository, "bitmap");
+        this.queryCache = queryCache.getIfAvailable();
+        Gauge.builder("stats.uniques.pending", pending, PendingIncrements::size)
+                .tag("index", "bitmap")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        Set<String> apps = new HashSet<>();
+        Set<String> uris = new HashSet<>();
+        Set<String> ips = new HashSet<>();
+        for (EndpointHit hit : hits) {
+            apps.add(hit.getApp());
+            uris.add(hit.getUri());
+            ips.add(hit.getIp());
+        }
+        Map<String, Integer> appIds = dictionaryRepository.resolveApps(apps);
+        Map<String, Integer> uriIds = dictionaryRepository.resolveUris(uris);
+        Map<String, Integer> ipIds = dictionaryRepository.resolveIps(ips);
+
+        Map<BitmapKey, RoaringBitmap> increments = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            Integer appId = appIds.get(hit.getApp());
+            Integer uriId = uriIds.get(hit.getUri());
+            Integer ipId = ipIds.get(hit.getIp());
+            if (hit.getTimestamp() == null || appId == null || uriId == null || ipId == null) {
+                continue;
+            }
+            BitmapKey key = new BitmapKey(appId, uriId, RollupGranularity.HOUR.floor(hit.getTimestamp()),
+                    hit.getWeight());
+            increments.computeIfAbsent(key, k -> new RoaringBitmap()).add(ipId);
+        }
+        if (!increments.isEmpty()) {
+            dirtyHours.record(buckets(increments.keySet()), () -> pending.add(increments));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.uniques.flush-ms:1000}")
+    public void flush() {
+        Map<BitmapKey, RoaringBitmap> increments = pending.drain();
+        if (increments.isEmpty()) {
+            dirtyHours.flushed(() -> buckets(pending.keys()));
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> merge(increments));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сохранить {} битовых карт ip, повтор при следующем сбросе", increments.size(), e);
+            // or-ing is idempotent, so bitmaps already merged with stored ones can be retried as is
+            pending.add(increments);
+            return;
+        }
+        dirtyHours.flushed(() -> buckets(pending.keys()));
+        if (queryCache != null) {
+            queryCache.uniquesFlushed(buckets(increments.keySet()));
+        }
+    }
+
+    private void rebuildUnflushed() {
+        List<LocalDateTime> hours = dirtyHours.unflushed();
+        for (LocalDateTime hour : hours) {
+            Map<BitmapKey, RoaringBitmap> bitmaps = new HashMap<>();
+            ipBitmapRepository.forEachDistinctIpId(hour, hour.plusHours(1), null,
+                    (key, ipId) -> bitmaps.computeIfAbsent(key, k -> new RoaringBitmap()).add(ipId));
+            if (!bitmaps.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> merge(bitmaps));
+            }
+        }
+        dirtyHours.rebuilt(hours);
+        if (!hours.isEmpty()) {
+            log.info("Битовые карты ip пересобраны по сырым хитам за {} несброшенных часов", hours.size());
+        }
+    }
+
+    private static Set<LocalDateTime> buckets(Set<BitmapKey> keys) {
+        return keys.stream().map(BitmapKey::getBucket).collect(Collectors.toSet());
+    }
+
+    private void merge(Map<BitmapKey, RoaringBitmap> increments) {
+        Map<BitmapKey, RoaringBitmap> stored = ipBitmapRepository.lockBitmaps(new ArrayList<>(increments.keySet()));
+        increments.forEach((key, bitmap) -> {
+            RoaringBitmap current = stored.get(key);
+            if (current != null) {
+                bitmap.or(current);
+            }
+        });
+        ipBitmapRepository.saveBitmaps(increments);
+    }
+
+    @Override
+    public void start() {
+        try {
+            rebuildUnflushed();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось пересобрать несброшенные битовые карты ip, повтор при следующем запуске", e);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        flush();
+        running = false;
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 6144;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,71 @@
+package ru.practicum.server.bitmap;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.repository.DictionaryRepository;
+import ru.practicum.server.repository.IpBitmapRepository;
+import ru.practicum.server.rollup.RollupGranularity;
+import ru.practicum.server.rollup.TimeRange;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exact unique counts: hourly ip bitmaps inside the window are OR-ed together, and the ip ids of the ragged edges
+ * are added straight from raw hits. Sampled ips are weighted by their sampling rate, see {@link WeightedIpSet}.
+ */
+@Component
+@RequiredArgsConstructor
+public class IpBitmapStatsReader {
+    private final DictionaryRepository dictionaryRepository;
+    private final IpBitmapRepository ipBitmapRepository;
+
+    public List<ViewStats> getUniqueHits(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Collection<Integer> uriIds = null;
+        if (uris != null) {
+            uriIds = dictionaryRepository.findUris(uris).values();
+            if (uriIds.isEmpty()) {
+                return List.of();
+            }
+        }
+        LocalDateTime endExclusive = TimeRange.exclusiveEnd(end);
+        LocalDateTime alignedFrom = RollupGranularity.HOUR.ceil(start);
+        LocalDateTime alignedTo = RollupGranularity.HOUR.floor(endExclusive);
+        Map<Long, WeightedIpSet> bitmaps = new HashMap<>();
+        if (alignedFrom.isBefore(alignedTo)) {
+            ipBitmapRepository.forEachBitmap(alignedFrom, alignedTo, uriIds, (key, bitmap) ->
+                    bitmaps.computeIfAbsent(series(key), k -> new WeightedIpSet()).or(key.getWeight(), bitmap));
+            addEdge(bitmaps, start, alignedFrom, uriIds);
+            addEdge(bitmaps, alignedTo, endExclusive, uriIds);
+        } else {
+            addEdge(bitmaps, start, endExclusive, uriIds);
+        }
+        List<ViewStats> result = new ArrayList<>(bitmaps.size());
+        bitmaps.forEach((series, ips) -> result.add(new ViewStats(
+                dictionaryRepository.appName((int) (series >>> 32)),
+                dictionaryRepository.uri((int) (long) series),
+                ips.estimate(),
+                ips.samples())));
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    private void addEdge(Map<Long, WeightedIpSet> bitmaps, LocalDateTime from, LocalDateTime to,
+                         Collection<Integer> uriIds) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        ipBitmapRepository.forEachDistinctIpId(from, to, uriIds, (key, ipId) ->
+                bitmaps.computeIfAbsent(series(key), k -> new WeightedIpSet()).add(key.getWeight(), ipId));
+    }
+
+    private static long series(BitmapKey key) {
+        return ((long) key.getAppId() << 32) | (key.getUriId() & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.practicum.server.bitmap;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Distinct ip ids of one series grouped by the sampling rate they were stored at. Sampling keeps an ip by a hash of
+ * the ip, and the ips kept at a higher rate are a subset of those kept at a lower one, so an ip stored at all was
+ * kept with probability one over the lowest rate it was seen at. Counting each ip once with that rate as its weight
+ * gives an unbiased estimate of the distinct ips before sampling.
+ */
+public class WeightedIpSet {
+    private final Map<Integer, RoaringBitmap> levels = new TreeMap<>();
+
+    public void add(int weight, int ipId) {
+        level(weight).add(ipId);
+    }
+
+    public void or(int weight, RoaringBitmap bitmap) {
+        level(weight).or(bitmap);
+    }
+
+    public long estimate() {
+        RoaringBitmap seen = new RoaringBitmap();
+        long estimate = 0;
+        for (Map.Entry<Integer, RoaringBitmap> level : levels.entrySet()) {
+            estimate += (long) RoaringBitmap.andNotCardinality(level.getValue(), seen) * level.getKey();
+            seen.or(level.getValue());
+        }
+        return estimate;
+    }
+
+    public long samples() {
+        if (levels.size() == 1) {
+            return levels.values().iterator().next().getLongCardinality();
+        }
+        RoaringBitmap all = new RoaringBitmap();
+        levels.values().forEach(all::or);
+        return all.getLongCardinality();
+    }
+
+    private RoaringBitmap level(int weight) {
+        return levels.computeIfAbsent(weight, w -> new RoaringBitmap());
+    }
+}
@@ -0,0 +1,13 @@
+package ru.practicum.server.bulk;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum BulkFormat {
+    CSV("text/csv"),
+    NDJSON("application/x-ndjson");
+
+    private final String contentType;
+}
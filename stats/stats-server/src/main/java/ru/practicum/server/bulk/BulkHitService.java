@@ -0,0 +1,328 @@
+package ru.practicum.server.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.CopyOut;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.IpAddresses;
+import ru.practicum.server.exception.DataException;
+import ru.practicum.server.ingest.HitListener;
+import ru.practicum.server.model.EndpointHit;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk load and dump of raw hits through the COPY protocol. An import is split into chunks of
+ * {@code stats.bulk.chunk-rows} rows, each in its own transaction: the chunk is copied into a temporary staging table,
+ * dictionaries and {@code stats} are filled from it with set-based inserts, and the staged hits are then passed to the
+ * hit listeners in ingest-sized batches, so rollups, sketches, bitmaps and in-memory stores stay consistent. Ips are
+ * normalized before staging and rows with an ip that is not an ip literal are skipped and counted as rejected.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "stats.storage", havingValue = "postgres", matchIfMissing = true)
+public class BulkHitService {
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final String CREATE_STAGING = "CREATE TEMP TABLE stats_import (" +
+            "app VARCHAR(40), uri VARCHAR(40), ip VARCHAR(64), timestamp TIMESTAMP WITHOUT TIME ZONE) ON COMMIT DROP";
+    private static final String COPY_STAGING = "COPY stats_import (app, uri, ip, timestamp) FROM STDIN WITH (FORMAT csv)";
+    private static final String INSERT_APPS = "INSERT INTO stats_apps (name) " +
+            "SELECT DISTINCT app FROM stats_import ON CONFLICT (name) DO NOTHING";
+    private static final String INSERT_URIS = "INSERT INTO stats_uris (uri) " +
+            "SELECT DISTINCT uri FROM stats_import ON CONFLICT (uri) DO NOTHING";
+    private static final String INSERT_IPS = "INSERT INTO stats_ips (ip) " +
+            "SELECT DISTINCT CAST(ip AS INET) FROM stats_import WHERE ip IS NOT NULL ON CONFLICT (ip) DO NOTHING";
+    private static final String INSERT_HITS = "INSERT INTO stats (app_id, uri_id, ip_id, timestamp) " +
+            "SELECT a.id, u.id, i.id, s.timestamp FROM stats_import s " +
+            "JOIN stats_apps a ON a.name = s.app " +
+            "JOIN stats_uris u ON u.uri = s.uri " +
+            "LEFT JOIN stats_ips i ON i.ip = CAST(s.ip AS INET)";
+    private static final String SELECT_STAGED = "SELECT app, uri, ip, timestamp FROM stats_import";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate cursor;
+    private final TransactionTemplate transactionTemplate;
+    private final List<HitListener> listeners;
+    private final ObjectReader hitReader;
+    private final ObjectWriter hitWriter;
+    private final int chunkRows;
+    private final int batchSize;
+
+    public BulkHitService(JdbcTemplate jdbcTemplate,
+                          TransactionTemplate transactionTemplate,
+                          List<HitListener> listeners,
+                          ObjectMapper objectMapper,
+                          @Value("${stats.bulk.chunk-rows:100000}") int chunkRows,
+                          @Value("${stats.ingest.batch-size:500}") int batchSize) {
+        this.dataSource = jdbcTemplate.getDataSource();
+        this.cursor = new JdbcTemplate(dataSource);
+        this.cursor.setFetchSize(batchSize);
+        this.transactionTemplate = transactionTemplate;
+        this.listeners = listeners;
+        this.hitReader = objectMapper.readerFor(EndpointHitDto.class);
+        this.hitWriter = objectMapper.writerFor(EndpointHitDto.class);
+        this.chunkRows = chunkRows;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports hits, one per line, and returns how many were stored. CSV columns are app, uri, ip and timestamp.
+     */
+    public BulkResult importHits(InputStream in, BulkFormat format, boolean header) {
+        long started = System.currentTimeMillis();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        LineSource source = new LineSource(reader, format);
+        if (header && format == BulkFormat.CSV) {
+            source.skip();
+        }
+        long rows = 0;
+        while (!source.isFinished()) {
+            Long imported = transactionTemplate.execute(status -> importChunk(source));
+            rows += imported;
+            log.info("Импортировано {} хитов", rows);
+        }
+        BulkResult result = new BulkResult(rows, source.rejected, System.currentTimeMillis() - started);
+        log.info("Импорт завершён: {} хитов за {} мс, {} хитов/с, отклонено {}", result.getRows(), result.getMillis(),
+                result.getRowsPerSecond(), result.getRejected());
+        return result;
+    }
+
+    /**
+     * Writes hits with {@code start <= timestamp <= end} to {@code out} straight from a COPY stream.
+     */
+    public BulkResult exportHits(LocalDateTime start, LocalDateTime end, BulkFormat format, OutputStream out) {
+        long started = System.currentTimeMillis();
+        String sql = "COPY (SELECT app, uri, ip, to_char(timestamp, 'YYYY-MM-DD HH24:MI:SS') FROM stats_hits " +
+                "WHERE timestamp BETWEEN '" + start.format(TIME_FORMATTER) + "' AND '" + end.format(TIME_FORMATTER) +
+                "') TO STDOUT WITH (FORMAT csv" + (format == BulkFormat.CSV ? ", HEADER)" : ")");
+        Long rows = transactionTemplate.execute(status -> withCopy(copyManager -> format == BulkFormat.CSV
+                ? copyManager.copyOut(sql, out)
+                : exportNdjson(copyManager.copyOut(sql), out)));
+        BulkResult result = new BulkResult(rows, 0, System.currentTimeMillis() - started);
+        log.info("Экспорт завершён: {} хитов за {} мс, {} хитов/с", result.getRows(), result.getMillis(),
+                result.getRowsPerSecond());
+        return result;
+    }
+
+    private long importChunk(LineSource source) {
+        cursor.execute(CREATE_STAGING);
+        long staged = withCopy(copyManager -> copyChunk(copyManager.copyIn(COPY_STAGING), source));
+        if (staged == 0) {
+            return 0L;
+        }
+        cursor.update(INSERT_APPS);
+        cursor.update(INSERT_URIS);
+        cursor.update(INSERT_IPS);
+        int inserted = cursor.update(INSERT_HITS);
+        List<EndpointHit> batch = new ArrayList<>(batchSize);
+        cursor.query(SELECT_STAGED, rs -> {
+            batch.add(EndpointHit.builder()
+                    .app(rs.getString("app"))
+                    .uri(rs.getString("uri"))
+                    .ip(rs.getString("ip"))
+                    .timestamp(rs.getTimestamp("timestamp") == null ? null : rs.getTimestamp("timestamp").toLocalDateTime())
+                    .build());
+            if (batch.size() == batchSize) {
+                notifyListeners(batch);
+            }
+        });
+        notifyListeners(batch);
+        return inserted;
+    }
+
+    private long copyChunk(CopyIn copyIn, LineSource source) throws SQLException {
+        StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE);
+        long rows = 0;
+        try {
+            while (rows < chunkRows && source.next(buffer)) {
+                rows++;
+                if (buffer.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copyIn, buffer);
+                }
+            }
+            writeToCopy(copyIn, buffer);
+            copyIn.endCopy();
+            return rows;
+        } catch (RuntimeException | SQLException e) {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+            throw e;
+        }
+    }
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private long exportNdjson(CopyOut copyOut, OutputStream out) throws SQLException, IOException {
+        long rows = 0;
+        byte[] row;
+        while ((row = copyOut.readFromCopy()) != null) {
+            List<String> fields = HitCsv.parse(new String(row, StandardCharsets.UTF_8).stripTrailing());
+            EndpointHitDto hit = EndpointHitDto.builder()
+                    .app(fields.get(0))
+                    .uri(fields.get(1))
+                    .ip(fields.get(2))
+                    .timestamp(fields.get(3) == null ? null : LocalDateTime.parse(fields.get(3), TIME_FORMATTER))
+                    .build();
+            out.write(hitWriter.writeValueAsBytes(hit));
+            out.write('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    private void notifyListeners(List<EndpointHit> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<EndpointHit> hits = List.copyOf(batch);
+        for (HitListener listener : listeners) {
+            listener.onHits(hits);
+        }
+        batch.clear();
+    }
+
+    private long withCopy(CopyAction action) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return action.run(connection.unwrap(PGConnection.class).getCopyAPI());
+        } catch (SQLException e) {
+            throw new DataException("Ошибка COPY: " + e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    @FunctionalInterface
+    private interface CopyAction {
+        long run(CopyManager copyManager) throws SQLException, IOException;
+    }
+
+    /**
+     * Reads input lines and appends them to the COPY buffer as staging-table CSV rows.
+     */
+    private final class LineSource {
+        private final BufferedReader reader;
+        private final BulkFormat format;
+        private long lineNumber;
+        private long rejected;
+        private boolean finished;
+
+        private LineSource(BufferedReader reader, BulkFormat format) {
+            this.reader = reader;
+            this.format = format;
+        }
+
+        boolean isFinished() {
+            return finished;
+        }
+
+        void skip() {
+            readLine();
+        }
+
+        boolean next(StringBuilder buffer) {
+            String line;
+            do {
+                line = readLine();
+                if (line == null) {
+                    return false;
+                }
+            } while (line.isBlank() || !append(buffer, line));
+            return true;
+        }
+
+        private boolean append(StringBuilder buffer, String line) {
+            String app;
+            String uri;
+            String ip;
+            String timestamp;
+            if (format == BulkFormat.CSV) {
+                List<String> fields = HitCsv.parse(line);
+                if (fields.size() != 4) {
+                    throw new DataException("Строка " + lineNumber + ": ожидалось 4 поля, получено " + fields.size());
+                }
+                app = fields.get(0);
+                uri = fields.get(1);
+                ip = fields.get(2);
+                timestamp = fields.get(3);
+            } else {
+                EndpointHitDto hit = readHit(line);
+                app = hit.getApp();
+                uri = hit.getUri();
+                ip = hit.getIp();
+                timestamp = hit.getTimestamp() == null ? null : hit.getTimestamp().format(TIME_FORMATTER);
+            }
+            if (app == null || app.isBlank() || uri == null || uri.isBlank()) {
+                throw new DataException("Строка " + lineNumber + ": не заданы app или uri");
+            }
+            if (timestamp == null) {
+                log.debug("Строка {}: не задан timestamp, хит пропущен", lineNumber);
+                rejected++;
+                return false;
+            }
+            String normalizedIp = IpAddresses.normalize(ip);
+            if (ip != null && normalizedIp == null) {
+                log.debug("Строка {}: некорректный ip {}, хит пропущен", lineNumber, ip);
+                rejected++;
+                return false;
+            }
+            HitCsv.append(buffer, app, uri, normalizedIp, timestamp);
+            return true;
+        }
+
+        private EndpointHitDto readHit(String line) {
+            try {
+                return hitReader.readValue(line);
+            } catch (JsonProcessingException e) {
+                throw new DataException("Строка " + lineNumber + ": " + e.getOriginalMessage());
+            }
+        }
+
+        private String readLine() {
+            try {
+                String line = reader.readLine();
+                if (line == null) {
+                    finished = true;
+                } else {
+                    lineNumber++;
+                }
+                return line;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.server.bulk;
+
+import lombok.Getter;
+
+@Getter
+public class BulkResult {
+    private final long rows;
+    private final long rejected;
+    private final long millis;
+    private final long rowsPerSecond;
+
+    public BulkResult(long rows, long rejected, long millis) {
+        this.rows = rows;
+        this.rejected = rejected;
+        this.millis = millis;
+        this.rowsPerSecond = millis == 0 ? rows : rows * 1000 / millis;
+    }
+}
@@ -0,0 +1,63 @@
+package ru.practicum.server.bulk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One-line CSV in the dialect of Postgres {@code COPY ... (FORMAT csv)}: an unquoted empty field is NULL, a quoted
+ * one is an empty string.
+ */
+final class HitCsv {
+    private HitCsv() {
+    }
+
+    static List<String> parse(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    inQuotes = false;
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(quoted || field.length() > 0 ? field.toString() : null);
+                field.setLength(0);
+                quoted = false;
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(quoted || field.length() > 0 ? field.toString() : null);
+        return fields;
+    }
+
+    static void append(StringBuilder line, String... fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            String field = fields[i];
+            if (field == null) {
+                continue;
+            }
+            if (field.isEmpty() || field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0
+                    || field.indexOf('\r') >= 0) {
+                line.append('"').append(field.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(field);
+            }
+        }
+        line.append('\n');
+    }
+}
@@ -0,0 +1,40 @@
+package ru.practicum.server.cache;
+
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class CachedResult {
+    private final QueryKey key;
+    private final Map<List<String>, long[]> hits = new LinkedHashMap<>();
+
+    CachedResult(QueryKey key, List<ViewStats> result) {
+        this.key = key;
+        for (ViewStats viewStats : result) {
+            hits.put(List.of(viewStats.getApp(), viewStats.getUri()),
+                    new long[]{viewStats.getHits(), viewStats.sampleCount()});
+        }
+    }
+
+    QueryKey key() {
+        return key;
+    }
+
+    synchronized void add(EndpointHit hit) {
+        long[] count = hits.computeIfAbsent(List.of(hit.getApp(), hit.getUri()), key -> new long[2]);
+        count[0] += hit.getWeight();
+        count[1]++;
+    }
+
+    synchronized List<ViewStats> snapshot() {
+        List<ViewStats> result = new ArrayList<>(hits.size());
+        hits.forEach((key, count) -> result.add(new ViewStats(key.get(0), key.get(1), count[0], count[1])));
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+}
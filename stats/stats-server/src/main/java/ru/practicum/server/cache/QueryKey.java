@@ -0,0 +1,37 @@
+package ru.practicum.server.cache;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import ru.practicum.server.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Normalized stats query: uris are sorted and deduplicated, and {@code approximate} only matters for unique counts.
+ */
+@Getter
+@EqualsAndHashCode
+class QueryKey {
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    private final List<String> uris;
+    private final boolean unique;
+    private final boolean approximate;
+
+    QueryKey(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, boolean approximate) {
+        this.start = start;
+        this.end = end;
+        this.uris = uris == null ? null : List.copyOf(new TreeSet<>(uris));
+        this.unique = unique;
+        this.approximate = unique && approximate;
+    }
+
+    /**
+     * Uris are not checked here: hits reach a key through the cache's uri index.
+     */
+    boolean covers(LocalDateTime timestamp) {
+        return timestamp != null && !timestamp.isBefore(start) && !timestamp.isAfter(end);
+    }
+}
@@ -0,0 +1,196 @@
+package ru.practicum.server.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.server.ingest.HitListener;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.partition.RetentionListener;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of /stats answers with W-TinyLFU eviction. Every committed hit is applied as a delta to each cached result
+ * whose window contains it, late hits included: plain counts are incremented in place and unique counts are dropped
+ * and recomputed on the next call. Results are found through an index by uri, so a commit only touches the results
+ * for the uris it contains and the ones without a uri filter. Unique counts are also dropped when the scheduled
+ * sketch and bitmap flushes make new hits visible.
+ * <p>
+ * A result is only cached if no ingest transaction was committing while it was computed, otherwise the snapshot it
+ * saw and the deltas applied to it could overlap.
+ */
+@Component
+@ConditionalOnProperty(name = "stats.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class StatsQueryCache implements HitListener, RetentionListener {
+    private final Cache<QueryKey, CachedResult> cache;
+    private final Map<String, Set<CachedResult>> byUri = new ConcurrentHashMap<>();
+    private final Set<CachedResult> unfiltered = ConcurrentHashMap.newKeySet();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicInteger committing = new AtomicInteger();
+
+    public StatsQueryCache(MeterRegistry meterRegistry,
+                           @Value("${stats.cache.maximum-size:10000}") long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .removalListener((QueryKey key, CachedResult entry, RemovalCause cause) -> unindex(entry))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stats.query");
+        Gauge.builder("stats.query.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .register(meterRegistry);
+    }
+
+    public List<ViewStats> get(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                               boolean approximate, Supplier<List<ViewStats>> loader) {
+        QueryKey key = new QueryKey(start, end, uris, unique, approximate);
+        CachedResult cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached.snapshot();
+        }
+        long seen = version.get();
+        boolean quiet = committing.get() == 0;
+        List<ViewStats> result = loader.get();
+        if (quiet) {
+            synchronized (this) {
+                if (seen == version.get()) {
+                    CachedResult entry = new CachedResult(key, result);
+                    cache.put(key, entry);
+                    index(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            startCommit();
+            applyCommitted(hits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean started;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                started = true;
+                startCommit();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    applyCommitted(hits);
+                } else if (started) {
+                    commitFailed();
+                }
+            }
+        });
+    }
+
+    /**
+     * Unique counts come from sketches and bitmaps that are merged on a schedule after the commit, so cached unique
+     * results overlapping the flushed hours are dropped, including any computed while the flush was running.
+     */
+    public synchronized void uniquesFlushed(Collection<LocalDateTime> hours) {
+        if (hours.isEmpty()) {
+            return;
+        }
+        LocalDateTime from = Collections.min(hours);
+        LocalDateTime to = Collections.max(hours).plusHours(1);
+        version.incrementAndGet();
+        cache.asMap().keySet().removeIf(key -> key.isUnique()
+                && key.getStart().isBefore(to) && !key.getEnd().isBefore(from));
+    }
+
+    @Override
+    public synchronized void retired(LocalDateTime threshold) {
+        version.incrementAndGet();
+        cache.asMap().keySet().removeIf(key -> key.getStart().isBefore(threshold));
+    }
+
+    private void startCommit() {
+        committing.incrementAndGet();
+        version.incrementAndGet();
+    }
+
+    private synchronized void commitFailed() {
+        version.incrementAndGet();
+        committing.decrementAndGet();
+    }
+
+    private synchronized void applyCommitted(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            apply(byUri.get(hit.getUri()), hit);
+            apply(unfiltered, hit);
+        }
+        version.incrementAndGet();
+        committing.decrementAndGet();
+    }
+
+    private void apply(Set<CachedResult> entries, EndpointHit hit) {
+        if (entries == null) {
+            return;
+        }
+        for (CachedResult entry : entries) {
+            QueryKey key = entry.key();
+            if (cache.asMap().get(key) != entry) {
+                unindex(entry);
+            } else if (key.covers(hit.getTimestamp())) {
+                if (key.isUnique()) {
+                    cache.asMap().remove(key, entry);
+                } else {
+                    entry.add(hit);
+                }
+            }
+        }
+    }
+
+    private void index(CachedResult entry) {
+        List<String> uris = entry.key().getUris();
+        if (uris == null) {
+            unfiltered.add(entry);
+            return;
+        }
+        for (String uri : uris) {
+            byUri.compute(uri, (u, entries) -> {
+                Set<CachedResult> indexed = entries == null ? ConcurrentHashMap.newKeySet() : entries;
+                indexed.add(entry);
+                return indexed;
+            });
+        }
+    }
+
+    /**
+     * Entries are indexed by identity, so dropping a replaced or evicted result never unindexes its successor.
+     */
+    private void unindex(CachedResult entry) {
+        List<String> uris = entry.key().getUris();
+        if (uris == null) {
+            unfiltered.remove(entry);
+            return;
+        }
+        for (String uri : uris) {
+            byUri.computeIfPresent(uri, (u, entries) -> entries.remove(entry) && entries.isEmpty() ? null : entries);
+        }
+    }
+}
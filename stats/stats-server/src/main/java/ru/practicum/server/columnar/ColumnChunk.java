@@ -0,0 +1,45 @@
+package ru.practicum.server.columnar;
+
+/**
+ * Fixed-capacity block of hits stored column by column. A single writer appends; readers only look at rows below
+ * the published size.
+ */
+class ColumnChunk {
+    /**
+     * Ip column value of a hit without an ip, which counts as a hit but not as a unique visitor.
+     */
+    static final int NO_IP = -1;
+
+    final long[] timestamps;
+    final int[] series;
+    final int[] ips;
+    private volatile int size;
+    private long maxTimestamp = Long.MIN_VALUE;
+
+    ColumnChunk(int capacity) {
+        this.timestamps = new long[capacity];
+        this.series = new int[capacity];
+        this.ips = new int[capacity];
+    }
+
+    boolean append(long timestamp, int seriesId, int ip) {
+        int row = size;
+        if (row == timestamps.length) {
+            return false;
+        }
+        timestamps[row] = timestamp;
+        series[row] = seriesId;
+        ips[row] = ip;
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        size = row + 1;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+}
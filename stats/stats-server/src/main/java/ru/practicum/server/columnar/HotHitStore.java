@@ -0,0 +1,232 @@
+package ru.practicum.server.columnar;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.server.ingest.HitListener;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.partition.RetentionListener;
+import ru.practicum.server.storage.HitStorage;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Hits of the recent hot window kept in primitive columns: epoch seconds, a dictionary id of the (app, uri) pair
+ * and the ip as an int. Queries that start inside the window are answered by a fork-join scan over the column
+ * chunks with per-task partial aggregates.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.hot-store.enabled", havingValue = "true", matchIfMissing = true)
+public class HotHitStore implements HitListener, RetentionListener, SmartLifecycle {
+    private static final int NON_IPV4_BASE = 0xF0000000;
+
+    private final HitStorage hitStorage;
+    private final int windowDays;
+    private final int chunkSize;
+    private final int parallelism;
+    private final List<ColumnChunk> chunks = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> seriesIds = new HashMap<>();
+    private final List<String> seriesApps = new ArrayList<>();
+    private final List<String> seriesUris = new ArrayList<>();
+    private final Map<String, List<Integer>> uriSeries = new ConcurrentHashMap<>();
+    private final Map<String, Integer> otherIps = new HashMap<>();
+
+    private ForkJoinPool pool;
+    private ColumnChunk active;
+    private volatile long coveredFrom = Long.MAX_VALUE;
+    private volatile boolean running;
+
+    public HotHitStore(HitStorage hitStorage,
+                       @Value("${stats.hot-store.window-days:7}") int windowDays,
+                       @Value("${stats.hot-store.chunk-size:65536}") int chunkSize,
+                       @Value("${stats.hot-store.parallelism:0}") int parallelism) {
+        this.hitStorage = hitStorage;
+        this.windowDays = windowDays;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appendAll(hits);
+                }
+            });
+        } else {
+            appendAll(hits);
+        }
+    }
+
+    public boolean covers(LocalDateTime start) {
+        return running && start.toEpochSecond(ZoneOffset.UTC) >= coveredFrom;
+    }
+
+    public List<ViewStats> get(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        boolean[] filter;
+        synchronized (this) {
+            filter = new boolean[seriesApps.size()];
+        }
+        if (uris == null) {
+            Arrays.fill(filter, true);
+        } else {
+            for (String uri : uris) {
+                for (int seriesId : uriSeries.getOrDefault(uri, List.of())) {
+                    if (seriesId < filter.length) {
+                        filter[seriesId] = true;
+                    }
+                }
+            }
+        }
+        List<ColumnChunk> snapshot = new ArrayList<>(chunks);
+        PartialAggregate total = pool.invoke(new ScanTask(snapshot, 0, snapshot.size(),
+                start.toEpochSecond(ZoneOffset.UTC), end.toEpochSecond(ZoneOffset.UTC), filter, unique));
+        if (unique) {
+            total.distinct.forEach(value -> total.counts[(int) (value >>> 32)]++);
+        }
+        List<ViewStats> result = new ArrayList<>();
+        synchronized (this) {
+            for (int seriesId = 0; seriesId < total.counts.length; seriesId++) {
+                if (total.counts[seriesId] > 0) {
+                    result.add(new ViewStats(seriesApps.get(seriesId), seriesUris.get(seriesId), total.counts[seriesId]));
+                }
+            }
+        }
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.hot-store.evict-ms:60000}")
+    public synchronized void evict() {
+        if (!running) {
+            return;
+        }
+        long threshold = LocalDateTime.now().minusDays(windowDays).toEpochSecond(ZoneOffset.UTC);
+        for (ColumnChunk chunk : chunks) {
+            if (chunk != active && chunk.maxTimestamp() < threshold) {
+                chunks.remove(chunk);
+                coveredFrom = Math.max(coveredFrom, chunk.maxTimestamp() + 1);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void retired(LocalDateTime threshold) {
+        long from = threshold.toEpochSecond(ZoneOffset.UTC);
+        coveredFrom = Math.max(coveredFrom, from);
+        chunks.removeIf(chunk -> chunk != active && chunk.maxTimestamp() < from);
+    }
+
+    private synchronized void appendAll(List<EndpointHit> hits) {
+        if (!running) {
+            return;
+        }
+        for (EndpointHit hit : hits) {
+            append(hit);
+        }
+    }
+
+    private void append(EndpointHit hit) {
+        if (hit.getTimestamp() == null) {
+            return;
+        }
+        long timestamp = hit.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+        int seriesId = seriesId(hit.getApp(), hit.getUri());
+        int ip = encodeIp(hit.getIp());
+        if (active == null || !active.append(timestamp, seriesId, ip)) {
+            active = new ColumnChunk(chunkSize);
+            chunks.add(active);
+            active.append(timestamp, seriesId, ip);
+        }
+    }
+
+    private int seriesId(String app, String uri) {
+        return seriesIds.computeIfAbsent(app + '\n' + uri, key -> {
+            int id = seriesApps.size();
+            seriesApps.add(app);
+            seriesUris.add(uri);
+            uriSeries.merge(uri, List.of(id), (current, added) -> {
+                List<Integer> merged = new ArrayList<>(current);
+                merged.addAll(added);
+                return List.copyOf(merged);
+            });
+            return id;
+        });
+    }
+
+    /**
+     * IPv4 addresses are stored as their 32-bit value; anything else gets a dictionary id inside the reserved
+     * 240.0.0.0/4 block, which never appears as a client address.
+     */
+    private int encodeIp(String ip) {
+        if (ip == null) {
+            return ColumnChunk.NO_IP;
+        }
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length == 4) {
+            int value = 0;
+            for (String part : parts) {
+                if (part.isEmpty() || part.length() > 3 || !part.chars().allMatch(Character::isDigit)
+                        || (part.length() > 1 && part.charAt(0) == '0') || Integer.parseInt(part) > 255) {
+                    return otherIp(ip);
+                }
+                value = (value << 8) | Integer.parseInt(part);
+            }
+            if ((value & NON_IPV4_BASE) != NON_IPV4_BASE) {
+                return value;
+            }
+        }
+        return otherIp(ip);
+    }
+
+    private int otherIp(String ip) {
+        return otherIps.computeIfAbsent(ip, key -> NON_IPV4_BASE | otherIps.size());
+    }
+
+    @Override
+    public void start() {
+        pool = new ForkJoinPool(parallelism);
+        LocalDateTime from = LocalDateTime.now().minusDays(windowDays);
+        synchronized (this) {
+            running = true;
+            hitStorage.scanSince(from, this::append);
+            coveredFrom = from.toEpochSecond(ZoneOffset.UTC);
+        }
+        log.info("Горячее окно статистики загружено: {} блоков", chunks.size());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        pool.shutdown();
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 8192;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
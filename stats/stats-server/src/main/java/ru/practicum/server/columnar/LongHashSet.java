@@ -0,0 +1,79 @@
+package ru.practicum.server.columnar;
+
+import ru.practicum.server.sketch.Hashing;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing set of primitive longs; zero is tracked separately so it can be used as the empty marker.
+ */
+public class LongHashSet {
+    private long[] table = new long[16];
+    private int size;
+    private boolean containsZero;
+
+    public boolean add(long value) {
+        if (value == 0) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+        if ((size + 1) * 4 > table.length * 3) {
+            resize();
+        }
+        if (insert(table, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    public void addAll(LongHashSet other) {
+        if (other.containsZero) {
+            add(0);
+        }
+        for (long value : other.table) {
+            if (value != 0) {
+                add(value);
+            }
+        }
+    }
+
+    public void forEach(LongConsumer consumer) {
+        if (containsZero) {
+            consumer.accept(0);
+        }
+        for (long value : table) {
+            if (value != 0) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    public int size() {
+        return size + (containsZero ? 1 : 0);
+    }
+
+    private void resize() {
+        long[] resized = new long[table.length * 2];
+        for (long value : table) {
+            if (value != 0) {
+                insert(resized, value);
+            }
+        }
+        table = resized;
+    }
+
+    private static boolean insert(long[] table, long value) {
+        int mask = table.length - 1;
+        int slot = (int) (Hashing.mix(value) & mask);
+        while (table[slot] != 0) {
+            if (table[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.server.columnar;
+
+class PartialAggregate {
+    final long[] counts;
+    final LongHashSet distinct;
+
+    PartialAggregate(int seriesCount, boolean unique) {
+        this.counts = new long[seriesCount];
+        this.distinct = unique ? new LongHashSet() : null;
+    }
+
+    PartialAggregate merge(PartialAggregate other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        if (distinct != null) {
+            distinct.addAll(other.distinct);
+        }
+        return this;
+    }
+}
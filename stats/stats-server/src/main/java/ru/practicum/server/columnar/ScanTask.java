@@ -0,0 +1,60 @@
+package ru.practicum.server.columnar;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+class ScanTask extends RecursiveTask<PartialAggregate> {
+    private final List<ColumnChunk> chunks;
+    private final int from;
+    private final int to;
+    private final long start;
+    private final long end;
+    private final boolean[] seriesFilter;
+    private final boolean unique;
+
+    ScanTask(List<ColumnChunk> chunks, int from, int to, long start, long end, boolean[] seriesFilter,
+             boolean unique) {
+        this.chunks = chunks;
+        this.from = from;
+        this.to = to;
+        this.start = start;
+        this.end = end;
+        this.seriesFilter = seriesFilter;
+        this.unique = unique;
+    }
+
+    @Override
+    protected PartialAggregate compute() {
+        if (to - from > 1) {
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(chunks, from, middle, start, end, seriesFilter, unique);
+            ScanTask right = new ScanTask(chunks, middle, to, start, end, seriesFilter, unique);
+            left.fork();
+            return right.compute().merge(left.join());
+        }
+        PartialAggregate partial = new PartialAggregate(seriesFilter.length, unique);
+        if (from == to) {
+            return partial;
+        }
+        ColumnChunk chunk = chunks.get(from);
+        int size = chunk.size();
+        long[] timestamps = chunk.timestamps;
+        int[] series = chunk.series;
+        for (int row = 0; row < size; row++) {
+            long timestamp = timestamps[row];
+            int seriesId = series[row];
+            if (timestamp < start || timestamp > end || seriesId >= seriesFilter.length || !seriesFilter[seriesId]) {
+                continue;
+            }
+            if (unique) {
+                if (chunk.ips[row] == ColumnChunk.NO_IP) {
+                    continue;
+                }
+                partial.distinct.add(((long) seriesId << 32) | (chunk.ips[row] & 0xffffffffL));
+            } else {
+                partial.counts[seriesId]++;
+            }
+        }
+        return partial;
+    }
+}
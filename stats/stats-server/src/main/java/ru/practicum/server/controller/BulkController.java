@@ -0,0 +1,55 @@
+package ru.practicum.server.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.server.bulk.BulkFormat;
+import ru.practicum.server.bulk.BulkHitService;
+import ru.practicum.server.bulk.BulkResult;
+import ru.practicum.server.exception.DataException;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/admin/hits")
+@Profile("!reactive")
+@ConditionalOnProperty(name = "stats.storage", havingValue = "postgres", matchIfMissing = true)
+@AllArgsConstructor
+@Slf4j
+public class BulkController {
+    private final BulkHitService service;
+
+    @PostMapping("/import")
+    public BulkResult importHits(HttpServletRequest request,
+                                 @RequestParam(defaultValue = "CSV") BulkFormat format,
+                                 @RequestParam(defaultValue = "true") boolean header) throws IOException {
+        log.info("Importing hits in format {}", format);
+        return service.importHits(request.getInputStream(), format, header);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportHits(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(defaultValue = "CSV") BulkFormat format) {
+        log.info("Exporting hits with start={}, end={}, format={}", start, end, format);
+        if (start.isAfter(end)) {
+            throw new DataException("Начало мероприятия не может быть позже окончания мероприятия.");
+        }
+        StreamingResponseBody body = out -> service.exportHits(start, end, format, out);
+        return ResponseEntity.ok()
+                .header("Content-Type", format.getContentType())
+                .body(body);
+    }
+}
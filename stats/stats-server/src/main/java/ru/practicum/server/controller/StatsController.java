@@ -1,37 +1,172 @@
 package ru.practicum.server.controller;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.EntityViewsDto;
+import ru.practicum.dto.EntityViewsRequestDto;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.dto.StatsHistogramDto;
+import ru.practicum.dto.StatsSinceRequestDto;
 import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.server.exception.DataException;
+import ru.practicum.server.histogram.HistogramInterval;
+import ru.practicum.server.ingest.BatchLedger;
+import ru.practicum.server.ingest.HitValidator;
 import ru.practicum.server.service.StatsService;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController()
-@AllArgsConstructor
+@Validated
+@Profile("!reactive")
 @Slf4j
 public class StatsController {
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final String ENTITY_TYPE = "[a-z][a-z0-9-]*";
+    private static final String BATCH_ID_HEADER = "X-Batch-Id";
+
     private final StatsService service;
+    private final HitValidator hitValidator;
+    private final BatchLedger batchLedger;
+    private final ObjectMapper objectMapper;
+    private final AsyncTaskExecutor ingestExecutor;
+    private final AsyncTaskExecutor queryExecutor;
+
+    public StatsController(StatsService service, HitValidator hitValidator, BatchLedger batchLedger,
+                           ObjectMapper objectMapper,
+                           @Qualifier("ingestExecutor") AsyncTaskExecutor ingestExecutor,
+                           @Qualifier("queryExecutor") AsyncTaskExecutor queryExecutor) {
+        this.service = service;
+        this.hitValidator = hitValidator;
+        this.batchLedger = batchLedger;
+        this.objectMapper = objectMapper;
+        this.ingestExecutor = ingestExecutor;
+        this.queryExecutor = queryExecutor;
+    }
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
-    public EndpointHitDto create(@RequestBody @Valid EndpointHitDto endpointHitDto) {
+    public CompletableFuture<EndpointHitDto> create(@RequestBody @Valid EndpointHitDto endpointHitDto) {
         log.debug("Saving hit {}", endpointHitDto.getApp());
-        return service.create(endpointHitDto);
+        return CompletableFuture.supplyAsync(() -> service.create(endpointHitDto), ingestExecutor);
+    }
+
+    @PostMapping("/hits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public CompletableFuture<Void> createAll(@RequestBody List<EndpointHitDto> endpointHitDtos,
+                                             @RequestHeader(name = BATCH_ID_HEADER, required = false) String batchId,
+                                             HttpServletRequest request) {
+        log.debug("Saving {} hits", endpointHitDtos.size());
+        List<EndpointHitDto> valid = hitValidator.valid(endpointHitDtos, request.getRemoteAddr());
+        if (batchId == null) {
+            return CompletableFuture.runAsync(() -> service.createAll(valid), ingestExecutor);
+        }
+        if (!batchLedger.begin(batchId)) {
+            log.debug("Batch {} has already been stored", batchId);
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            return CompletableFuture.runAsync(() -> service.createAll(valid), ingestExecutor)
+                    .whenComplete((result, error) -> batchLedger.finish(batchId, error == null));
+        } catch (RuntimeException e) {
+            batchLedger.finish(batchId, false);
+            throw e;
+        }
     }
 
     @GetMapping("/stats")
-    public List<ViewStatsDto> get(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
-                                  @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
-                                  @RequestParam(required = false) List<String> uris,
-                                  @RequestParam(defaultValue = "false") boolean unique) {
-        log.info("Getting hits from stats service with start={}, end={}, uris={}, unique={}", start, end, uris, unique);
-        return service.get(start, end, uris, unique);
-    }
-}
\ No newline at end of file
+    public CompletableFuture<List<ViewStatsDto>> get(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "false") boolean unique,
+            @RequestParam(defaultValue = "false") boolean approximate) {
+        log.info("Getting hits from stats service with start={}, end={}, uris={}, unique={}, approximate={}",
+                start, end, uris, unique, approximate);
+        return CompletableFuture.supplyAsync(() -> service.get(start, end, uris, unique, approximate), queryExecutor);
+    }
+
+    @PostMapping("/stats/since")
+    public CompletableFuture<List<ViewStatsDto>> getSince(@RequestBody @Valid StatsSinceRequestDto request) {
+        log.info("Getting hits from stats service for {} uris with own start, end={}, unique={}, approximate={}",
+                request.getUris().size(), request.getEnd(), request.isUnique(), request.isApproximate());
+        return CompletableFuture.supplyAsync(() -> service.getSince(request.getUris(), request.getEnd(),
+                request.isUnique(), request.isApproximate()), queryExecutor);
+    }
+
+    @PostMapping("/stats/{type}/views")
+    public CompletableFuture<EntityViewsDto> getEntityViews(@PathVariable @Pattern(regexp = ENTITY_TYPE) String type,
+                                                            @RequestBody @Valid EntityViewsRequestDto request) {
+        log.info("Getting views of {} {} from stats service with end={}, unique={}, approximate={}",
+                request.getIds().length, type, request.getEnd(), request.isUnique(), request.isApproximate());
+        return CompletableFuture.supplyAsync(() -> service.getEntityViews(type, request), queryExecutor);
+    }
+
+    @GetMapping("/stats/top")
+    public CompletableFuture<List<ViewStatsDto>> top(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) String app,
+            @RequestParam(defaultValue = "10") @Positive int limit) {
+        log.info("Getting top {} uris from stats service with start={}, end={}, app={}", limit, start, end, app);
+        return CompletableFuture.supplyAsync(() -> service.top(start, end, app, limit), queryExecutor);
+    }
+
+    @GetMapping("/stats/histogram")
+    public CompletableFuture<StatsHistogramDto> histogram(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "HOUR") HistogramInterval interval,
+            @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("Getting histogram from stats service with start={}, end={}, uris={}, interval={}, unique={}",
+                start, end, uris, interval, unique);
+        return CompletableFuture.supplyAsync(() -> service.histogram(start, end, uris, interval, unique),
+                queryExecutor);
+    }
+
+    @GetMapping(value = "/stats/stream", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> stream(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("Streaming hits from stats service with start={}, end={}, uris={}, unique={}", start, end, uris, unique);
+        if (start.isAfter(end)) {
+            throw new DataException("Начало мероприятия не может быть позже окончания мероприятия.");
+        }
+        ObjectWriter writer = objectMapper.writerFor(ViewStatsDto.class);
+        StreamingResponseBody body = out -> service.stream(start, end, uris, unique, dto -> writeLine(writer, out, dto));
+        return ResponseEntity.ok()
+                .header("Content-Type", APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private void writeLine(ObjectWriter writer, OutputStream out, ViewStatsDto dto) {
+        try {
+            out.write(writer.writeValueAsBytes(dto));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package ru.practicum.server.counter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.server.ingest.HitListener;
+import ru.practicum.server.isolation.Workload;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.partition.RetentionListener;
+import ru.practicum.server.storage.HitStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * All-time per-(app, uri) totals kept in a {@link MappedCounterFile}. Queries whose window covers every recorded
+ * hit are answered without touching Postgres. A file that was not checkpointed cleanly is rebuilt from the hit
+ * storage in the background while queries are served from the database.
+ * <p>
+ * Ingest commits pass a shared gate that the rebuild closes until its scan has taken a snapshot, so every hit is
+ * either in the snapshot or committed after it and replayed once the scan is done.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.counters.enabled", havingValue = "true", matchIfMissing = true)
+public class CounterStore implements HitListener, RetentionListener, SmartLifecycle {
+    private final HitStorage hitStorage;
+    private final Path path;
+    private final int slots;
+    private final int fingerprintSlots;
+    private final ReadWriteLock commitGate = new ReentrantReadWriteLock();
+    private final List<List<EndpointHit>> replay = new ArrayList<>();
+
+    private volatile MappedCounterFile file;
+    private Thread rebuilder;
+    private boolean rebuilding;
+    private boolean rebuildAgain;
+    private boolean overflowed;
+    private volatile boolean ready;
+    private volatile boolean running;
+
+    public CounterStore(HitStorage hitStorage,
+                        @Value("${stats.counters.path:stats-data/counters.bin}") Path path,
+                        @Value("${stats.counters.slots:262144}") int slots,
+                        @Value("${stats.counters.fingerprint-slots:2097152}") int fingerprintSlots) {
+        this.hitStorage = hitStorage;
+        this.path = path;
+        this.slots = slots;
+        this.fingerprintSlots = fingerprintSlots;
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            commitGate.readLock().lock();
+            try {
+                committed(hits);
+            } finally {
+                commitGate.readLock().unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean entered;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commitGate.readLock().lock();
+                entered = true;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        committed(hits);
+                    }
+                } finally {
+                    if (entered) {
+                        commitGate.readLock().unlock();
+                    }
+                }
+            }
+        });
+    }
+
+    public boolean covers(LocalDateTime start, LocalDateTime end) {
+        return ready
+                && toEpochSecond(start) <= file.minTimestamp()
+                && toEpochSecond(end) >= file.maxTimestamp();
+    }
+
+    public synchronized List<ViewStats> get(List<String> uris, boolean unique) {
+        List<ViewStats> result = new ArrayList<>();
+        for (String uri : new LinkedHashSet<>(uris)) {
+            for (String app : file.apps()) {
+                long hits = file.hits(app, uri, unique);
+                if (hits > 0) {
+                    result.add(new ViewStats(app, uri, hits));
+                }
+            }
+        }
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    /**
+     * Totals cannot be decremented by time, so once retention removes hits they include the store is rebuilt.
+     */
+    @Override
+    public synchronized void retired(LocalDateTime threshold) {
+        if (rebuilding) {
+            rebuildAgain = true;
+        } else if (ready && file.minTimestamp() < toEpochSecond(threshold)) {
+            startRebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.counters.checkpoint-ms:10000}")
+    public synchronized void checkpoint() {
+        if (ready && file.isDirty()) {
+            file.checkpoint();
+        }
+    }
+
+    private synchronized void committed(List<EndpointHit> hits) {
+        if (rebuilding) {
+            replay.add(hits);
+        } else if (ready) {
+            file.markDirty();
+            hits.forEach(this::record);
+        }
+    }
+
+    private void record(EndpointHit hit) {
+        if (hit.getTimestamp() == null || overflowed) {
+            return;
+        }
+        if (file.isFull()) {
+            grow();
+        }
+        if (!overflowed && !file.record(hit.getApp(), hit.getUri(), hit.getIp(), toEpochSecond(hit.getTimestamp()))) {
+            overflowed();
+        }
+    }
+
+    private void grow() {
+        try {
+            file = file.grow(path);
+            log.info("Хранилище счётчиков {} увеличено до {} счётчиков и {} отпечатков", path, file.slots(),
+                    file.fingerprintSlots());
+        } catch (IOException e) {
+            log.warn("Не удалось увеличить хранилище счётчиков {}", path, e);
+            overflowed();
+        }
+    }
+
+    private void overflowed() {
+        overflowed = true;
+        ready = false;
+        log.warn("Хранилище счётчиков {} переполнено, запросы обслуживаются из базы", path);
+    }
+
+    private void startRebuild() {
+        ready = false;
+        rebuilding = true;
+        rebuildAgain = false;
+        overflowed = false;
+        rebuilder = new Thread(Workload.QUERY.wrap(this::rebuild), "stats-counter-rebuild");
+        rebuilder.setDaemon(true);
+        rebuilder.start();
+    }
+
+    private void rebuild() {
+        log.info("Восстановление хранилища счётчиков {} из хранилища хитов", path);
+        Lock gate = commitGate.writeLock();
+        gate.lock();
+        boolean[] gated = {true};
+        try {
+            synchronized (this) {
+                file.clear();
+            }
+            hitStorage.scanAll(hit -> {
+                if (gated[0]) {
+                    gate.unlock();
+                    gated[0] = false;
+                }
+                if (!running) {
+                    throw new CancellationException();
+                }
+                synchronized (this) {
+                    record(hit);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (running) {
+                log.error("Не удалось восстановить хранилище счётчиков {}", path, e);
+            }
+            synchronized (this) {
+                rebuilding = false;
+                replay.clear();
+            }
+            return;
+        } finally {
+            if (gated[0]) {
+                gate.unlock();
+            }
+        }
+        synchronized (this) {
+            replay.forEach(hits -> hits.forEach(this::record));
+            replay.clear();
+            rebuilding = false;
+            if (rebuildAgain) {
+                startRebuild();
+            } else if (!overflowed) {
+                file.checkpoint();
+                ready = true;
+                log.info("Хранилище счётчиков {} восстановлено", path);
+            }
+        }
+    }
+
+    private static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @Override
+    public synchronized void start() {
+        try {
+            file = new MappedCounterFile(path, slots, fingerprintSlots);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        running = true;
+        if (file.isValid()) {
+            ready = true;
+        } else {
+            startRebuild();
+        }
+    }
+
+    @Override
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = rebuilder;
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            try {
+                if (ready) {
+                    file.checkpoint();
+                }
+                ready = false;
+                file.close();
+            } catch (IOException e) {
+                log.warn("Не удалось закрыть хранилище счётчиков {}", path, e);
+            }
+        }
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 8192;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
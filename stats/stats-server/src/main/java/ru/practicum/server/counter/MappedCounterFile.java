@@ -0,0 +1,306 @@
+package ru.practicum.server.counter;
+
+import ru.practicum.server.sketch.Hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped open-addressing tables of per-(app, uri) counters and (app, uri, ip) fingerprints. Slots hold only
+ * primitives; the header keeps a checksum of the body that is only valid after a clean checkpoint. Full tables are
+ * grown into a new file with twice the slots, and a grown file is reopened at its own size.
+ */
+public class MappedCounterFile implements AutoCloseable {
+    private static final long MAGIC = 0x5354415453434e54L;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4096;
+    private static final int MAX_APPS = 64;
+    private static final int APP_NAME_SIZE = 56;
+    private static final int COUNTER_SLOT_SIZE = 24;
+    private static final int FINGERPRINT_SLOT_SIZE = 8;
+    private static final double MAX_LOAD = 0.75;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int SLOTS_OFFSET = 12;
+    private static final int FINGERPRINT_SLOTS_OFFSET = 16;
+    private static final int DIRTY_OFFSET = 20;
+    private static final int CHECKSUM_OFFSET = 24;
+    private static final int MIN_TIMESTAMP_OFFSET = 32;
+    private static final int MAX_TIMESTAMP_OFFSET = 40;
+    private static final int COUNTERS_USED_OFFSET = 48;
+    private static final int FINGERPRINTS_USED_OFFSET = 52;
+    private static final int APP_COUNT_OFFSET = 56;
+    private static final int APPS_OFFSET = 64;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slots;
+    private final int fingerprintSlots;
+    private final int countersOffset;
+    private final int fingerprintsOffset;
+    private final List<String> apps = new ArrayList<>();
+
+    public MappedCounterFile(Path path, int slots, int fingerprintSlots) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(FINGERPRINT_SLOTS_OFFSET + Integer.BYTES);
+        channel.read(header, 0);
+        boolean known = header.getLong(MAGIC_OFFSET) == MAGIC && header.getInt(VERSION_OFFSET) == VERSION;
+        this.slots = Math.max(Integer.highestOneBit(slots), known ? header.getInt(SLOTS_OFFSET) : 0);
+        this.fingerprintSlots = Math.max(Integer.highestOneBit(fingerprintSlots),
+                known ? header.getInt(FINGERPRINT_SLOTS_OFFSET) : 0);
+        this.countersOffset = HEADER_SIZE;
+        this.fingerprintsOffset = countersOffset + this.slots * COUNTER_SLOT_SIZE;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(this.slots, this.fingerprintSlots));
+        if (isValid()) {
+            loadApps();
+        }
+    }
+
+    public boolean isValid() {
+        return buffer.getLong(MAGIC_OFFSET) == MAGIC
+                && buffer.getInt(VERSION_OFFSET) == VERSION
+                && buffer.getInt(SLOTS_OFFSET) == slots
+                && buffer.getInt(FINGERPRINT_SLOTS_OFFSET) == fingerprintSlots
+                && buffer.getInt(DIRTY_OFFSET) == 0
+                && buffer.getLong(CHECKSUM_OFFSET) == checksum();
+    }
+
+    public void clear() {
+        for (int i = 0; i < buffer.capacity(); i += Long.BYTES) {
+            buffer.putLong(i, 0L);
+        }
+        apps.clear();
+        buffer.putLong(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(SLOTS_OFFSET, slots);
+        buffer.putInt(FINGERPRINT_SLOTS_OFFSET, fingerprintSlots);
+        buffer.putLong(MIN_TIMESTAMP_OFFSET, Long.MAX_VALUE);
+        buffer.putLong(MAX_TIMESTAMP_OFFSET, Long.MIN_VALUE);
+        buffer.putInt(DIRTY_OFFSET, 1);
+    }
+
+    public boolean isDirty() {
+        return buffer.getInt(DIRTY_OFFSET) != 0;
+    }
+
+    public void markDirty() {
+        if (buffer.getInt(DIRTY_OFFSET) == 0) {
+            buffer.putInt(DIRTY_OFFSET, 1);
+            buffer.force();
+        }
+    }
+
+    public void checkpoint() {
+        buffer.force();
+        buffer.putLong(CHECKSUM_OFFSET, checksum());
+        buffer.putInt(DIRTY_OFFSET, 0);
+        buffer.force();
+    }
+
+    public boolean isFull() {
+        return countersFull() || fingerprintsFull();
+    }
+
+    /**
+     * Copies the tables into a file with twice the slots of each full table and moves it over {@code path}. This
+     * file is closed afterwards and the grown one is returned.
+     */
+    public MappedCounterFile grow(Path path) throws IOException {
+        int grownSlots = countersFull() ? slots * 2 : slots;
+        int grownFingerprintSlots = fingerprintsFull() ? fingerprintSlots * 2 : fingerprintSlots;
+        if (grownSlots <= 0 || grownFingerprintSlots <= 0
+                || size(grownSlots, grownFingerprintSlots) > Integer.MAX_VALUE) {
+            throw new IOException("Файл счётчиков достиг предельного размера");
+        }
+        Path next = path.resolveSibling(path.getFileName() + ".next");
+        Files.deleteIfExists(next);
+        MappedCounterFile grown = new MappedCounterFile(next, grownSlots, grownFingerprintSlots);
+        grown.clear();
+        apps.forEach(grown::appIndex);
+        for (int slot = 0; slot < slots; slot++) {
+            int offset = countersOffset + slot * COUNTER_SLOT_SIZE;
+            long key = buffer.getLong(offset);
+            if (key != 0) {
+                int target = grown.countersOffset + grown.findCounter(key, true) * COUNTER_SLOT_SIZE;
+                grown.buffer.putLong(target + 8, buffer.getLong(offset + 8));
+                grown.buffer.putLong(target + 16, buffer.getLong(offset + 16));
+            }
+        }
+        for (int slot = 0; slot < fingerprintSlots; slot++) {
+            long fingerprint = buffer.getLong(fingerprintsOffset + slot * FINGERPRINT_SLOT_SIZE);
+            if (fingerprint != 0) {
+                grown.addFingerprint(fingerprint);
+            }
+        }
+        grown.buffer.putLong(MIN_TIMESTAMP_OFFSET, minTimestamp());
+        grown.buffer.putLong(MAX_TIMESTAMP_OFFSET, maxTimestamp());
+        close();
+        Files.move(next, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return grown;
+    }
+
+    public int slots() {
+        return slots;
+    }
+
+    public int fingerprintSlots() {
+        return fingerprintSlots;
+    }
+
+    /**
+     * A hit without an ip is counted as a view but never as a unique one, the same way {@code count(DISTINCT ip)}
+     * ignores nulls.
+     */
+    public boolean record(String app, String uri, String ip, long epochSecond) {
+        int appIndex = appIndex(app);
+        if (appIndex < 0 || isFull()) {
+            return false;
+        }
+        int slot = findCounter(counterKey(app, uri), true);
+        int offset = countersOffset + slot * COUNTER_SLOT_SIZE;
+        buffer.putLong(offset + 8, buffer.getLong(offset + 8) + 1);
+        if (ip != null && addFingerprint(nonZero(Hashing.hash64(app, uri, ip)))) {
+            buffer.putLong(offset + 16, buffer.getLong(offset + 16) + 1);
+        }
+        buffer.putLong(MIN_TIMESTAMP_OFFSET, Math.min(buffer.getLong(MIN_TIMESTAMP_OFFSET), epochSecond));
+        buffer.putLong(MAX_TIMESTAMP_OFFSET, Math.max(buffer.getLong(MAX_TIMESTAMP_OFFSET), epochSecond));
+        return true;
+    }
+
+    public long hits(String app, String uri, boolean unique) {
+        int slot = findCounter(counterKey(app, uri), false);
+        if (slot < 0) {
+            return 0;
+        }
+        return buffer.getLong(countersOffset + slot * COUNTER_SLOT_SIZE + (unique ? 16 : 8));
+    }
+
+    public List<String> apps() {
+        return apps;
+    }
+
+    public long minTimestamp() {
+        return buffer.getLong(MIN_TIMESTAMP_OFFSET);
+    }
+
+    public long maxTimestamp() {
+        return buffer.getLong(MAX_TIMESTAMP_OFFSET);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean countersFull() {
+        return buffer.getInt(COUNTERS_USED_OFFSET) >= slots * MAX_LOAD;
+    }
+
+    private boolean fingerprintsFull() {
+        return buffer.getInt(FINGERPRINTS_USED_OFFSET) >= fingerprintSlots * MAX_LOAD;
+    }
+
+    private static long size(int slots, int fingerprintSlots) {
+        return HEADER_SIZE + (long) slots * COUNTER_SLOT_SIZE + (long) fingerprintSlots * FINGERPRINT_SLOT_SIZE;
+    }
+
+    private long counterKey(String app, String uri) {
+        return nonZero(Hashing.hash64(app, uri));
+    }
+
+    private int findCounter(long key, boolean insert) {
+        int mask = slots - 1;
+        for (int slot = (int) key & mask, probes = 0; probes < slots; slot = (slot + 1) & mask, probes++) {
+            int offset = countersOffset + slot * COUNTER_SLOT_SIZE;
+            long stored = buffer.getLong(offset);
+            if (stored == key) {
+                return slot;
+            }
+            if (stored == 0) {
+                if (!insert) {
+                    return -1;
+                }
+                buffer.putLong(offset, key);
+                buffer.putInt(COUNTERS_USED_OFFSET, buffer.getInt(COUNTERS_USED_OFFSET) + 1);
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean addFingerprint(long fingerprint) {
+        int mask = fingerprintSlots - 1;
+        for (int slot = (int) fingerprint & mask, probes = 0; probes < fingerprintSlots;
+             slot = (slot + 1) & mask, probes++) {
+            int offset = fingerprintsOffset + slot * FINGERPRINT_SLOT_SIZE;
+            long stored = buffer.getLong(offset);
+            if (stored == fingerprint) {
+                return false;
+            }
+            if (stored == 0) {
+                buffer.putLong(offset, fingerprint);
+                buffer.putInt(FINGERPRINTS_USED_OFFSET, buffer.getInt(FINGERPRINTS_USED_OFFSET) + 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int appIndex(String app) {
+        int index = apps.indexOf(app);
+        if (index >= 0) {
+            return index;
+        }
+        byte[] name = app.getBytes(StandardCharsets.UTF_8);
+        if (apps.size() >= MAX_APPS || name.length > APP_NAME_SIZE) {
+            return -1;
+        }
+        int offset = APPS_OFFSET + apps.size() * (APP_NAME_SIZE + Long.BYTES);
+        buffer.putInt(offset, name.length);
+        for (int i = 0; i < name.length; i++) {
+            buffer.put(offset + Long.BYTES + i, name[i]);
+        }
+        apps.add(app);
+        buffer.putInt(APP_COUNT_OFFSET, apps.size());
+        return apps.size() - 1;
+    }
+
+    private void loadApps() {
+        int count = buffer.getInt(APP_COUNT_OFFSET);
+        for (int i = 0; i < count; i++) {
+            int offset = APPS_OFFSET + i * (APP_NAME_SIZE + Long.BYTES);
+            byte[] name = new byte[buffer.getInt(offset)];
+            for (int j = 0; j < name.length; j++) {
+                name[j] = buffer.get(offset + Long.BYTES + j);
+            }
+            apps.add(new String(name, StandardCharsets.UTF_8));
+        }
+    }
+
+    private long checksum() {
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.position(MIN_TIMESTAMP_OFFSET);
+        crc.update(body);
+        return crc.getValue();
+    }
+
+    private static long nonZero(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.server.exception;
+
+public class BatchInProgressException extends RuntimeException {
+    public BatchInProgressException(final String message) {
+        super(message);
+    }
+}
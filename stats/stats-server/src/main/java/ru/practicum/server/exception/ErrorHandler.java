@@ -1,12 +1,20 @@
 package ru.practicum.server.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.server.ServerWebInputException;
+
+import javax.validation.ConstraintViolationException;
 
 @RestControllerAdvice
 @Slf4j
@@ -18,6 +26,13 @@ public class ErrorHandler {
         return ErrorMessage.builder().error(e.getMessage()).build();
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorMessage handleNotReadable(final HttpMessageNotReadableException e) {
+        log.warn(e.getMessage());
+        return ErrorMessage.builder().error("Некорректное тело запроса").build();
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorMessage handleMissingServletRequestParameter(final MissingServletRequestParameterException e) {
@@ -25,6 +40,27 @@ public class ErrorHandler {
         return ErrorMessage.builder().error(e.getMessage()).build();
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorMessage handleArgumentTypeMismatch(final MethodArgumentTypeMismatchException e) {
+        log.warn(e.getMessage());
+        return ErrorMessage.builder().error(e.getMessage()).build();
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorMessage handleServerWebInput(final ServerWebInputException e) {
+        log.warn(e.getMessage());
+        return ErrorMessage.builder().error(e.getReason()).build();
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorMessage handleConstraintViolation(final ConstraintViolationException e) {
+        log.warn(e.getMessage());
+        return ErrorMessage.builder().error(e.getMessage()).build();
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorMessage handleDateExceptional(final DataException e) {
@@ -32,6 +68,42 @@ public class ErrorHandler {
         return ErrorMessage.builder().error(e.getMessage()).build();
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorMessage handleDataIntegrityViolation(final DataIntegrityViolationException e) {
+        log.warn(e.getMessage());
+        return ErrorMessage.builder().error(e.getMostSpecificCause().getMessage()).build();
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ErrorMessage handleIngestOverloaded(final IngestOverloadedException e) {
+        log.warn(e.getMessage());
+        return ErrorMessage.builder().error(e.getMessage()).build();
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorMessage handleBatchInProgress(final BatchInProgressException e) {
+        log.warn(e.getMessage());
+        return ErrorMessage.builder().error(e.getMessage()).build();
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorMessage handleTaskRejected(final TaskRejectedException e) {
+        String message = e.getCause() == null ? e.getMessage() : e.getCause().getMessage();
+        log.warn(message);
+        return ErrorMessage.builder().error(message).build();
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorMessage handleAsyncRequestTimeout(final AsyncRequestTimeoutException e) {
+        log.warn("Запрос не выполнен за отведённое время");
+        return ErrorMessage.builder().error("Сервер статистики не успел ответить, повторите запрос позже").build();
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ErrorMessage handleThrowable(final Throwable e) {
@@ -0,0 +1,7 @@
+package ru.practicum.server.exception;
+
+public class IngestOverloadedException extends RuntimeException {
+    public IngestOverloadedException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.practicum.server.histogram;
+
+import ru.practicum.dto.HistogramSeriesDto;
+import ru.practicum.dto.StatsHistogramDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-series count arrays of a histogram that is being filled from several sources.
+ */
+public class Histogram {
+    private final LocalDateTime first;
+    private final HistogramInterval interval;
+    private final int size;
+    private final Map<List<String>, long[]> series = new LinkedHashMap<>();
+
+    public Histogram(LocalDateTime start, LocalDateTime end, HistogramInterval interval) {
+        this.first = interval.floor(start);
+        this.interval = interval;
+        this.size = index(end) + 1;
+    }
+
+    int index(LocalDateTime time) {
+        return (int) interval.getUnit().between(first, interval.floor(time));
+    }
+
+    int size() {
+        return size;
+    }
+
+    public void add(String app, String uri, LocalDateTime time, long hits) {
+        add(app, uri, index(time), hits);
+    }
+
+    void add(String app, String uri, int index, long hits) {
+        if (index >= 0 && index < size) {
+            series.computeIfAbsent(List.of(app, uri), key -> new long[size])[index] += hits;
+        }
+    }
+
+    public StatsHistogramDto toDto() {
+        List<HistogramSeriesDto> result = new ArrayList<>(series.size());
+        series.forEach((key, hits) -> result.add(new HistogramSeriesDto(key.get(0), key.get(1), hits)));
+        result.sort(Comparator.comparingLong((HistogramSeriesDto dto) -> Arrays.stream(dto.getHits()).sum()).reversed());
+        return new StatsHistogramDto(first, interval.name(), result);
+    }
+}
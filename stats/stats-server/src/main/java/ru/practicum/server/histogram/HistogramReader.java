@@ -0,0 +1,139 @@
+package ru.practicum.server.histogram;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.StatsHistogramDto;
+import ru.practicum.server.bitmap.WeightedIpSet;
+import ru.practicum.server.repository.DictionaryRepository;
+import ru.practicum.server.repository.IpBitmapRepository;
+import ru.practicum.server.repository.RollupRepository;
+import ru.practicum.server.rollup.RollupGranularity;
+import ru.practicum.server.rollup.TimeRange;
+import ru.practicum.server.storage.HitStorage;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds histograms from the same sources as the totals. Plain counts come from the rollups, with whole hours
+ * taken from the hourly rollup only when the interval is at least an hour. Unique counts per hour or day come from
+ * the hourly ip bitmaps; unique counts per minute are counted over raw hits.
+ */
+@Component
+@RequiredArgsConstructor
+public class HistogramReader {
+    private final RollupRepository rollupRepository;
+    private final IpBitmapRepository ipBitmapRepository;
+    private final DictionaryRepository dictionaryRepository;
+
+    public StatsHistogramDto get(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                 HistogramInterval interval, boolean unique) {
+        Histogram histogram = new Histogram(start, end, interval);
+        LocalDateTime to = TimeRange.exclusiveEnd(end);
+        if (!unique) {
+            collect(histogram, start, to, uris, interval == HistogramInterval.MINUTE ? 0 : 1);
+        } else if (interval == HistogramInterval.MINUTE) {
+            rollupRepository.forEachRawMinute(start, to, uris, true, (key, hits) ->
+                    histogram.add(key.getApp(), key.getUri(), key.getBucket(), hits));
+        } else {
+            collectUnique(histogram, start, to, uris);
+        }
+        return histogram.toDto();
+    }
+
+    /**
+     * Fallback for storages without rollups: a single pass over the raw hits of the window.
+     */
+    public StatsHistogramDto scan(HitStorage hitStorage, LocalDateTime start, LocalDateTime end, List<String> uris,
+                                  HistogramInterval interval, boolean unique) {
+        Histogram histogram = new Histogram(start, end, interval);
+        Set<String> uriFilter = uris == null ? null : new HashSet<>(uris);
+        Map<List<Object>, Set<String>> ips = new HashMap<>();
+        hitStorage.scanSince(start, hit -> {
+            if (hit.getTimestamp() == null || hit.getTimestamp().isAfter(end)
+                    || (uriFilter != null && !uriFilter.contains(hit.getUri()))) {
+                return;
+            }
+            if (!unique || ips.computeIfAbsent(List.of(hit.getApp(), hit.getUri(), histogram.index(hit.getTimestamp())),
+                    key -> new HashSet<>()).add(hit.getIp())) {
+                histogram.add(hit.getApp(), hit.getUri(), hit.getTimestamp(), 1);
+            }
+        });
+        return histogram.toDto();
+    }
+
+    private void collect(Histogram histogram, LocalDateTime from, LocalDateTime to, List<String> uris, int level) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level < 0) {
+            rollupRepository.forEachRawMinute(from, to, uris, false, (key, hits) ->
+                    histogram.add(key.getApp(), key.getUri(), key.getBucket(), hits));
+            return;
+        }
+        RollupGranularity granularity = RollupGranularity.values()[level];
+        LocalDateTime alignedFrom = granularity.ceil(from);
+        LocalDateTime alignedTo = granularity.floor(to);
+        if (!alignedFrom.isBefore(alignedTo)) {
+            collect(histogram, from, to, uris, level - 1);
+            return;
+        }
+        rollupRepository.forEachBucket(granularity, alignedFrom, alignedTo, uris, (key, hits) ->
+                histogram.add(key.getApp(), key.getUri(), key.getBucket(), hits));
+        collect(histogram, from, alignedFrom, uris, level - 1);
+        collect(histogram, alignedTo, to, uris, level - 1);
+    }
+
+    private void collectUnique(Histogram histogram, LocalDateTime from, LocalDateTime to, List<String> uris) {
+        Collection<Integer> uriIds = null;
+        if (uris != null) {
+            uriIds = dictionaryRepository.findUris(uris).values();
+            if (uriIds.isEmpty()) {
+                return;
+            }
+        }
+        Map<Long, WeightedIpSet[]> bitmaps = new HashMap<>();
+        LocalDateTime alignedFrom = RollupGranularity.HOUR.ceil(from);
+        LocalDateTime alignedTo = RollupGranularity.HOUR.floor(to);
+        if (alignedFrom.isAfter(alignedTo)) {
+            ipBitmapRepository.forEachDistinctIpId(from, to, uriIds, (key, ipId) ->
+                    bitmap(bitmaps, histogram, key.getAppId(), key.getUriId(), from).add(key.getWeight(), ipId));
+        } else {
+            ipBitmapRepository.forEachBitmap(alignedFrom, alignedTo, uriIds, (key, bitmap) ->
+                    bitmap(bitmaps, histogram, key.getAppId(), key.getUriId(), key.getBucket()).or(key.getWeight(), bitmap));
+            if (from.isBefore(alignedFrom)) {
+                ipBitmapRepository.forEachDistinctIpId(from, alignedFrom, uriIds, (key, ipId) ->
+                        bitmap(bitmaps, histogram, key.getAppId(), key.getUriId(), from).add(key.getWeight(), ipId));
+            }
+            if (alignedTo.isBefore(to)) {
+                ipBitmapRepository.forEachDistinctIpId(alignedTo, to, uriIds, (key, ipId) ->
+                        bitmap(bitmaps, histogram, key.getAppId(), key.getUriId(), alignedTo).add(key.getWeight(), ipId));
+            }
+        }
+        bitmaps.forEach((series, buckets) -> {
+            String app = dictionaryRepository.appName((int) (series >>> 32));
+            String uri = dictionaryRepository.uri((int) (long) series);
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] != null) {
+                    histogram.add(app, uri, i, buckets[i].estimate());
+                }
+            }
+        });
+    }
+
+    private WeightedIpSet bitmap(Map<Long, WeightedIpSet[]> bitmaps, Histogram histogram, int appId, int uriId,
+                                 LocalDateTime time) {
+        long series = ((long) appId << 32) | (uriId & 0xFFFFFFFFL);
+        WeightedIpSet[] buckets = bitmaps.computeIfAbsent(series, key -> new WeightedIpSet[histogram.size()]);
+        int index = histogram.index(time);
+        if (buckets[index] == null) {
+            buckets[index] = new WeightedIpSet();
+        }
+        return buckets[index];
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum.server.ingest;
+
+public enum BackpressurePolicy {
+    REJECT,
+    BLOCK
+}
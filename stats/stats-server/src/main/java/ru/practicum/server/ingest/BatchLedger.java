@@ -0,0 +1,56 @@
+package ru.practicum.server.ingest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.server.exception.BatchInProgressException;
+
+import java.time.Duration;
+
+/**
+ * Ids of the hit batches stored recently, so a batch the client sends again after a timeout or a failure of another
+ * node is not stored twice. A batch is reserved while it is written and remembered once the write succeeded; a copy
+ * arriving while it is still being written is refused, so the client retries it, and a write that fails forgets the
+ * id. Ids are kept for {@code stats.ingest.batch-ids.ttl-seconds}, longer than the client's retry schedule.
+ */
+@Component
+public class BatchLedger {
+    private final Cache<String, Boolean> batches;
+    private final Counter duplicateCounter;
+
+    public BatchLedger(MeterRegistry meterRegistry,
+                       @Value("${stats.ingest.batch-ids.ttl-seconds:600}") long ttlSeconds,
+                       @Value("${stats.ingest.batch-ids.maximum-size:100000}") long maximumSize) {
+        this.batches = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maximumSize)
+                .build();
+        this.duplicateCounter = meterRegistry.counter("stats.ingest.batches.duplicate");
+    }
+
+    /**
+     * Reserves the batch; {@code false} means it has already been stored and must be skipped.
+     */
+    public boolean begin(String batchId) {
+        Boolean stored = batches.asMap().putIfAbsent(batchId, Boolean.FALSE);
+        if (stored == null) {
+            return true;
+        }
+        if (stored) {
+            duplicateCounter.increment();
+            return false;
+        }
+        throw new BatchInProgressException("Пакет хитов " + batchId + " ещё записывается");
+    }
+
+    public void finish(String batchId, boolean stored) {
+        if (stored) {
+            batches.put(batchId, Boolean.TRUE);
+        } else {
+            batches.invalidate(batchId);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.practicum.server.ingest;
+
+/**
+ * Fixed-size Bloom filter over 64-bit key hashes; the probe positions come from the two halves of the hash.
+ */
+class BloomFilter {
+    private final long[] words;
+    private final long bits;
+    private final int hashes;
+
+    BloomFilter(long expectedKeys, double falsePositiveRate) {
+        long size = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.words = new long[(int) Math.max(1, (size + 63) / 64)];
+        this.bits = words.length * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedKeys * Math.log(2)));
+    }
+
+    /**
+     * Returns whether the key was probably added already.
+     */
+    boolean contains(long hash) {
+        int low = (int) hash;
+        int high = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = Math.floorMod(low + (long) i * high, bits);
+            if ((words[(int) (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the key and returns whether it was probably present already.
+     */
+    boolean put(long hash) {
+        int low = (int) hash;
+        int high = (int) (hash >>> 32);
+        boolean present = true;
+        for (int i = 1; i <= hashes; i++) {
+            long combined = low + (long) i * high;
+            long bit = Math.floorMod(combined, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words[word] & mask) == 0) {
+                words[word] |= mask;
+                present = false;
+            }
+        }
+        return present;
+    }
+
+    long sizeInBytes() {
+        return words.length * 8L;
+    }
+}
@@ -0,0 +1,115 @@
+package ru.practicum.server.ingest;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer ring buffer. Every slot carries a sequence number, so producers and the consumer
+ * claim slots with a single CAS and never take a lock.
+ */
+public class BoundedRingBuffer<E> {
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public BoundedRingBuffer(int capacity) {
+        int size = 1 << (32 - Integer.numberOfLeadingZeros(Math.max(2, capacity) - 1));
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Claims slots for all elements with one CAS, so either every element is added or none is.
+     */
+    public boolean offerAll(List<E> batch) {
+        int count = batch.size();
+        if (count == 0) {
+            return true;
+        }
+        if (count > capacity()) {
+            return false;
+        }
+        claim:
+        while (true) {
+            long position = tail.get();
+            for (int i = 0; i < count; i++) {
+                long difference = sequences.get((int) ((position + i) & mask)) - (position + i);
+                if (difference < 0) {
+                    return false;
+                }
+                if (difference > 0) {
+                    continue claim;
+                }
+            }
+            if (tail.compareAndSet(position, position + count)) {
+                for (int i = 0; i < count; i++) {
+                    int index = (int) ((position + i) & mask);
+                    elements.lazySet(index, batch.get(i));
+                    sequences.lazySet(index, position + i + 1);
+                }
+                return true;
+            }
+        }
+    }
+
+    public E poll() {
+        while (true) {
+            long position = head.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = elements.get(index);
+                    elements.lazySet(index, null);
+                    sequences.lazySet(index, position + mask + 1);
+                    return element;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+        }
+    }
+
+    public int drainTo(List<E> target, int maxElements) {
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = poll()) != null) {
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
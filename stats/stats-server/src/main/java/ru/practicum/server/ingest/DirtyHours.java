@@ -0,0 +1,119 @@
+package ru.practicum.server.ingest;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.server.repository.DirtyHourRepository;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Durable list of the hours whose increments were committed with the raw hits but may not have been flushed yet, so
+ * they can be rebuilt from raw hits after a crash. An hour is marked inside the ingest transaction the first time it
+ * is seen, so later commits for it touch no rows. It is unmarked after a flush once no transaction touching it is in
+ * flight and nothing is pending for it; a commit that slips in while the mark is being removed puts it back.
+ */
+public class DirtyHours {
+    private final DirtyHourRepository repository;
+    private final String kind;
+    private final Set<LocalDateTime> marked = ConcurrentHashMap.newKeySet();
+    private final Map<LocalDateTime, Integer> inFlight = new ConcurrentHashMap<>();
+
+    public DirtyHours(DirtyHourRepository repository, String kind) {
+        this.repository = repository;
+        this.kind = kind;
+    }
+
+    /**
+     * Marks the hours in the current transaction and runs {@code afterCommit} once it commits.
+     */
+    public void record(Set<LocalDateTime> hours, Runnable afterCommit) {
+        hours.forEach(hour -> inFlight.merge(hour, 1, Integer::sum));
+        Set<LocalDateTime> unmarked;
+        try {
+            unmarked = hours.stream().filter(hour -> !marked.contains(hour)).collect(Collectors.toSet());
+            if (!unmarked.isEmpty()) {
+                repository.mark(kind, unmarked);
+            }
+        } catch (RuntimeException e) {
+            release(hours);
+            throw e;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            complete(hours, unmarked, afterCommit);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    complete(hours, unmarked, afterCommit);
+                } else {
+                    release(hours);
+                }
+            }
+        });
+    }
+
+    /**
+     * Unmarks the hours with nothing in flight or pending; called after a successful flush.
+     */
+    public void flushed(Supplier<Set<LocalDateTime>> pendingHours) {
+        Set<LocalDateTime> busy = busy(pendingHours);
+        List<LocalDateTime> clean = marked.stream()
+                .filter(hour -> !busy.contains(hour))
+                .collect(Collectors.toList());
+        if (clean.isEmpty()) {
+            return;
+        }
+        marked.removeAll(clean);
+        repository.unmark(kind, clean);
+        Set<LocalDateTime> touched = busy(pendingHours);
+        List<LocalDateTime> remark = clean.stream().filter(touched::contains).collect(Collectors.toList());
+        if (!remark.isEmpty()) {
+            repository.mark(kind, remark);
+            marked.addAll(remark);
+        }
+    }
+
+    /**
+     * Hours left marked by a process that did not flush before it stopped.
+     */
+    public List<LocalDateTime> unflushed() {
+        return repository.findMarked(kind);
+    }
+
+    public void rebuilt(List<LocalDateTime> hours) {
+        if (!hours.isEmpty()) {
+            repository.unmark(kind, hours);
+        }
+    }
+
+    /**
+     * In-flight hours are read before pending ones: a commit adds its increments before it stops being in flight.
+     */
+    private Set<LocalDateTime> busy(Supplier<Set<LocalDateTime>> pendingHours) {
+        Set<LocalDateTime> busy = new HashSet<>(inFlight.keySet());
+        busy.addAll(pendingHours.get());
+        return busy;
+    }
+
+    private void complete(Set<LocalDateTime> hours, Set<LocalDateTime> unmarked, Runnable afterCommit) {
+        try {
+            marked.addAll(unmarked);
+            afterCommit.run();
+        } finally {
+            release(hours);
+        }
+    }
+
+    private void release(Set<LocalDateTime> hours) {
+        hours.forEach(hour -> inFlight.computeIfPresent(hour, (h, count) -> count == 1 ? null : count - 1));
+    }
+}
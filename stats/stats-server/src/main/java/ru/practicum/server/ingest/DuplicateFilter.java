@@ -0,0 +1,172 @@
+package ru.practicum.server.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.sketch.Hashing;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Drops repeated (app, uri, ip) hits inside a window. Windows are aligned on the hit timestamp, each with its own
+ * Bloom filter, and only the latest {@code stats.dedup.windows} of them are kept, so memory stays bounded and a hit
+ * too late for any kept window is simply stored. The first hit of every ip in every window is kept, so unique counts
+ * over window-aligned ranges do not change, apart from the configured false positive rate.
+ * <p>
+ * A key that passed is only reserved until its hit is committed and then added to the Bloom filter, so a write
+ * that fails releases it and the hit can be sent again. Hits stamped more than {@code stats.dedup.max-skew-seconds}
+ * ahead of the clock are stored without being tracked, so they cannot push the current windows out.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.dedup.enabled", havingValue = "true")
+public class DuplicateFilter implements HitListener {
+    private final long windowSeconds;
+    private final int windows;
+    private final long expectedKeys;
+    private final double falsePositiveRate;
+    private final long maxSkewSeconds;
+    private final NavigableMap<Long, Window> filters = new TreeMap<>();
+    private final Counter passedCounter;
+    private final Counter suppressedCounter;
+
+    public DuplicateFilter(MeterRegistry meterRegistry,
+                           @Value("${stats.dedup.window-seconds:60}") long windowSeconds,
+                           @Value("${stats.dedup.windows:2}") int windows,
+                           @Value("${stats.dedup.expected-keys:1000000}") long expectedKeys,
+                           @Value("${stats.dedup.false-positive-rate:0.001}") double falsePositiveRate,
+                           @Value("${stats.dedup.max-skew-seconds:300}") long maxSkewSeconds) {
+        this.windowSeconds = windowSeconds;
+        this.windows = windows;
+        this.expectedKeys = expectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxSkewSeconds = maxSkewSeconds;
+        this.passedCounter = meterRegistry.counter("stats.dedup.hits", "result", "passed");
+        this.suppressedCounter = meterRegistry.counter("stats.dedup.hits", "result", "suppressed");
+        Gauge.builder("stats.dedup.suppression.ratio", this, DuplicateFilter::suppressionRatio)
+                .register(meterRegistry);
+        log.info("Подавление повторных хитов включено: окно {} с, окон {}, {} байт на окно", windowSeconds, windows,
+                new BloomFilter(expectedKeys, falsePositiveRate).sizeInBytes());
+    }
+
+    public List<EndpointHit> filter(List<EndpointHit> hits) {
+        List<EndpointHit> passed = new ArrayList<>(hits.size());
+        long latest = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC) + maxSkewSeconds;
+        synchronized (this) {
+            for (EndpointHit hit : hits) {
+                if (hit.getTimestamp() == null || !reserve(hit, latest)) {
+                    passed.add(hit);
+                }
+            }
+        }
+        passedCounter.increment(passed.size());
+        suppressedCounter.increment(hits.size() - passed.size());
+        return passed;
+    }
+
+    /**
+     * Gives back the keys reserved for hits that were not written.
+     */
+    public synchronized void release(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            Window window = window(hit);
+            if (window != null) {
+                window.pending.remove(hash(hit));
+            }
+        }
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            committed(hits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    committed(hits);
+                } else {
+                    release(hits);
+                }
+            }
+        });
+    }
+
+    private synchronized void committed(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            Window window = window(hit);
+            if (window != null) {
+                long hash = hash(hit);
+                window.pending.remove(hash);
+                window.filter.put(hash);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the hit repeats a committed or reserved key, and reserves its key otherwise.
+     */
+    private boolean reserve(EndpointHit hit, long latest) {
+        long second = hit.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+        if (second > latest) {
+            return false;
+        }
+        long index = Math.floorDiv(second, windowSeconds);
+        Window window = filters.get(index);
+        if (window == null) {
+            if (filters.size() >= windows && index < filters.firstKey()) {
+                return false;
+            }
+            window = new Window(new BloomFilter(expectedKeys, falsePositiveRate));
+            filters.put(index, window);
+            while (filters.size() > windows) {
+                filters.pollFirstEntry();
+            }
+        }
+        long hash = hash(hit);
+        return window.filter.contains(hash) || !window.pending.add(hash);
+    }
+
+    private Window window(EndpointHit hit) {
+        if (hit.getTimestamp() == null) {
+            return null;
+        }
+        return filters.get(Math.floorDiv(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC), windowSeconds));
+    }
+
+    private static long hash(EndpointHit hit) {
+        return Hashing.hash64(Objects.toString(hit.getApp(), ""), Objects.toString(hit.getUri(), ""),
+                Objects.toString(hit.getIp(), ""));
+    }
+
+    private double suppressionRatio() {
+        double total = passedCounter.count() + suppressedCounter.count();
+        return total == 0 ? 0 : suppressedCounter.count() / total;
+    }
+
+    private static final class Window {
+        private final BloomFilter filter;
+        private final Set<Long> pending = new HashSet<>();
+
+        private Window(BloomFilter filter) {
+            this.filter = filter;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.practicum.server.ingest;
+
+import ru.practicum.server.model.EndpointHit;
+
+import java.util.List;
+
+public interface HitListener {
+    void onHits(List<EndpointHit> hits);
+}
@@ -0,0 +1,36 @@
+package ru.practicum.server.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.EndpointHitDto;
+
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Validation of hits received in batches: an invalid hit is dropped on its own instead of failing the batch it came
+ * with.
+ */
+@Component
+@Slf4j
+public class HitValidator {
+    private final Validator validator;
+
+    public HitValidator(Validator validator) {
+        this.validator = validator;
+    }
+
+    public List<EndpointHitDto> valid(List<EndpointHitDto> hits, Object source) {
+        List<EndpointHitDto> valid = new ArrayList<>(hits.size());
+        for (EndpointHitDto hit : hits) {
+            if (hit != null && validator.validate(hit).isEmpty()) {
+                valid.add(hit);
+            }
+        }
+        if (valid.size() < hits.size()) {
+            log.warn("Отклонено {} некорректных хитов от {}", hits.size() - valid.size(), source);
+        }
+        return valid;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.server.ingest;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.storage.HitStorage;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+    private final HitStorage hitStorage;
+    private final List<HitListener> listeners;
+
+    @Transactional
+    public EndpointHit save(EndpointHit hit) {
+        EndpointHit saved = hitStorage.save(hit);
+        notifyListeners(List.of(saved));
+        return saved;
+    }
+
+    @Transactional
+    public void write(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        hitStorage.saveAll(hits);
+        notifyListeners(hits);
+    }
+
+    private void notifyListeners(List<EndpointHit> hits) {
+        for (HitListener listener : listeners) {
+            listener.onHits(hits);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.practicum.server.ingest;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+
+/**
+ * Increments per key accumulated in memory between flushes. {@code merge} folds its second argument into the first
+ * and returns the first.
+ */
+public class PendingIncrements<K, V> {
+    private final BinaryOperator<V> merge;
+    private Map<K, V> pending = new HashMap<>();
+
+    public PendingIncrements(BinaryOperator<V> merge) {
+        this.merge = merge;
+    }
+
+    public synchronized void add(Map<K, V> increments) {
+        increments.forEach((key, value) -> pending.merge(key, value, merge));
+    }
+
+    /**
+     * Takes everything accumulated so far; a batch that could not be flushed goes back through {@link #add}.
+     */
+    public synchronized Map<K, V> drain() {
+        Map<K, V> drained = pending;
+        pending = new HashMap<>();
+        return drained;
+    }
+
+    public synchronized Set<K> keys() {
+        return new HashSet<>(pending.keySet());
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+}
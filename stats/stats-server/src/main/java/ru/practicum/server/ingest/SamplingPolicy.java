@@ -0,0 +1,121 @@
+package ru.practicum.server.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.sketch.Hashing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores 1 in N hits with weight N. The rate is configured per app and multiplied while the write-behind buffer is
+ * filling up. Rates are powers of two and a hit is kept when the low bits of a hash of its ip are zero, so an ip is
+ * either always kept or always skipped at a given rate, and the ips kept at a higher rate are a subset of those kept
+ * at a lower one. That keeps unique counts consistent across rate changes.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.sampling.enabled", havingValue = "true")
+public class SamplingPolicy {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final WriteBehindIngestor writeBehindIngestor;
+    private final int defaultRate;
+    private final Map<String, Integer> appRates = new HashMap<>();
+    private final int maxRate;
+    private final boolean adaptive;
+    private final double adaptiveStartFill;
+    private final Counter keptCounter;
+    private final Counter skippedCounter;
+
+    public SamplingPolicy(ObjectProvider<WriteBehindIngestor> writeBehindIngestor,
+                          MeterRegistry meterRegistry,
+                          @Value("${stats.storage:postgres}") String storage,
+                          @Value("${stats.sampling.default-rate:1}") int defaultRate,
+                          @Value("${stats.sampling.app-rates:}") List<String> appRates,
+                          @Value("${stats.sampling.max-rate:64}") int maxRate,
+                          @Value("${stats.sampling.adaptive.enabled:true}") boolean adaptive,
+                          @Value("${stats.sampling.adaptive.start-fill:0.5}") double adaptiveStartFill) {
+        if (!"postgres".equals(storage)) {
+            throw new IllegalStateException("Выборка хитов поддерживается только при stats.storage=postgres");
+        }
+        this.writeBehindIngestor = writeBehindIngestor.getIfAvailable();
+        this.defaultRate = powerOfTwo(defaultRate);
+        for (String appRate : appRates) {
+            if (appRate.isBlank()) {
+                continue;
+            }
+            int separator = appRate.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Ожидалось app:rate, получено " + appRate);
+            }
+            this.appRates.put(appRate.substring(0, separator).trim(),
+                    powerOfTwo(Integer.parseInt(appRate.substring(separator + 1).trim())));
+        }
+        this.maxRate = powerOfTwo(maxRate);
+        this.adaptive = adaptive && this.writeBehindIngestor != null;
+        this.adaptiveStartFill = adaptiveStartFill;
+        this.keptCounter = meterRegistry.counter("stats.sampling.hits", "result", "kept");
+        this.skippedCounter = meterRegistry.counter("stats.sampling.hits", "result", "skipped");
+        Gauge.builder("stats.sampling.adaptive.multiplier", this, SamplingPolicy::adaptiveMultiplier)
+                .register(meterRegistry);
+        log.info("Выборка хитов включена: rate={}, по приложениям={}, max={}, адаптивная={}",
+                this.defaultRate, this.appRates, this.maxRate, this.adaptive);
+    }
+
+    /**
+     * Hits to store, each with its weight set to the rate it was sampled at.
+     */
+    public List<EndpointHit> sample(List<EndpointHit> hits) {
+        int multiplier = adaptiveMultiplier();
+        List<EndpointHit> kept = new ArrayList<>(hits.size());
+        for (EndpointHit hit : hits) {
+            int rate = Math.min(maxRate, appRates.getOrDefault(hit.getApp(), defaultRate) * multiplier);
+            if (rate == 1 || keeps(hit.getIp(), rate)) {
+                hit.setWeight(rate);
+                kept.add(hit);
+            }
+        }
+        keptCounter.increment(kept.size());
+        skippedCounter.increment(hits.size() - kept.size());
+        return kept;
+    }
+
+    /**
+     * Rate multiplier for the current buffer fill: 1 below the start fill, then doubling in equal steps up to the
+     * maximum rate when the buffer is full.
+     */
+    private int adaptiveMultiplier() {
+        if (!adaptive) {
+            return 1;
+        }
+        double fill = writeBehindIngestor.fillRatio();
+        if (fill < adaptiveStartFill) {
+            return 1;
+        }
+        int steps = Integer.numberOfTrailingZeros(maxRate);
+        int level = (int) Math.ceil((fill - adaptiveStartFill) / (1 - adaptiveStartFill) * steps);
+        return 1 << Math.min(level, steps);
+    }
+
+    private static boolean keeps(String ip, int rate) {
+        long hash = Hashing.mix(Hashing.hash64(ip == null ? "" : ip) ^ SEED);
+        return (hash & (rate - 1)) == 0;
+    }
+
+    private static int powerOfTwo(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Частота выборки должна быть не меньше 1: " + rate);
+        }
+        return rate == 1 ? 1 : Integer.highestOneBit(rate - 1) << 1;
+    }
+}
@@ -0,0 +1,165 @@
+package ru.practicum.server.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.server.exception.IngestOverloadedException;
+import ru.practicum.server.isolation.Workload;
+import ru.practicum.server.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.ingest.write-behind.enabled", havingValue = "true")
+public class WriteBehindIngestor implements SmartLifecycle {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final HitWriter hitWriter;
+    private final BoundedRingBuffer<EndpointHit> buffer;
+    private final BackpressurePolicy policy;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long blockTimeoutNanos;
+    private final Timer flushTimer;
+    private final Counter flushedCounter;
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean running;
+    private volatile Thread flusher;
+
+    public WriteBehindIngestor(HitWriter hitWriter,
+                               MeterRegistry meterRegistry,
+                               @Value("${stats.ingest.write-behind.capacity:65536}") int capacity,
+                               @Value("${stats.ingest.write-behind.policy:REJECT}") BackpressurePolicy policy,
+                               @Value("${stats.ingest.write-behind.batch-size:500}") int batchSize,
+                               @Value("${stats.ingest.write-behind.linger-ms:200}") long lingerMs,
+                               @Value("${stats.ingest.write-behind.block-timeout-ms:1000}") long blockTimeoutMs) {
+        this.hitWriter = hitWriter;
+        this.buffer = new BoundedRingBuffer<>(capacity);
+        this.policy = policy;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        Gauge.builder("stats.ingest.buffer.depth", buffer, BoundedRingBuffer::size)
+                .description("Hits accepted but not yet flushed")
+                .register(meterRegistry);
+        Gauge.builder("stats.ingest.buffer.capacity", buffer, BoundedRingBuffer::capacity)
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("stats.ingest.flush.latency")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.flushedCounter = meterRegistry.counter("stats.ingest.flushed");
+        this.rejectedCounter = meterRegistry.counter("stats.ingest.dropped", "reason", "rejected");
+        this.failedCounter = meterRegistry.counter("stats.ingest.dropped", "reason", "failed");
+    }
+
+    public double fillRatio() {
+        return (double) buffer.size() / buffer.capacity();
+    }
+
+    /**
+     * Accepts the whole batch or rejects it, so a client that resends a rejected batch never duplicates a part of
+     * it that was already buffered.
+     */
+    public void accept(List<EndpointHit> hits) {
+        if (!running) {
+            throw new IngestOverloadedException("Приём статистики остановлен.");
+        }
+        if (!buffer.offerAll(hits) && !awaitOffer(hits)) {
+            rejectedCounter.increment(hits.size());
+            throw new IngestOverloadedException("Буфер статистики переполнен.");
+        }
+        if (buffer.size() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    private boolean awaitOffer(List<EndpointHit> hits) {
+        if (policy != BackpressurePolicy.BLOCK || hits.size() > buffer.capacity()) {
+            return false;
+        }
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (System.nanoTime() < deadline) {
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+            if (buffer.offerAll(hits)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void runFlusher() {
+        List<EndpointHit> batch = new ArrayList<>(batchSize);
+        long lastFlush = System.nanoTime();
+        while (running || buffer.size() > 0) {
+            buffer.drainTo(batch, batchSize - batch.size());
+            boolean lingerExpired = System.nanoTime() - lastFlush >= lingerNanos;
+            if (batch.size() >= batchSize || (!batch.isEmpty() && (lingerExpired || !running))) {
+                flush(batch);
+                batch.clear();
+                lastFlush = System.nanoTime();
+            } else {
+                if (batch.isEmpty()) {
+                    lastFlush = System.nanoTime();
+                }
+                LockSupport.parkNanos(Math.min(lingerNanos, TimeUnit.MILLISECONDS.toNanos(50)));
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    private void flush(List<EndpointHit> batch) {
+        try {
+            flushTimer.record(() -> hitWriter.write(batch));
+            flushedCounter.increment(batch.size());
+        } catch (RuntimeException e) {
+            failedCounter.increment(batch.size());
+            log.error("Не удалось сохранить пакет из {} хитов", batch.size(), e);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        flusher = new Thread(Workload.INGEST.wrap(this::runFlusher), "stats-write-behind-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = flusher;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Буфер статистики сброшен, осталось {} хитов", buffer.size());
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
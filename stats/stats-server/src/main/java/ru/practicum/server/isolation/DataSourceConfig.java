@@ -0,0 +1,48 @@
+package ru.practicum.server.isolation;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Separate Hikari pools for ingestion and queries. Both take the connection settings from
+ * {@code spring.datasource.*} and {@code spring.datasource.hikari.*}; pool sizes and timeouts are overridden by
+ * {@code stats.datasource.ingest.*} and {@code stats.datasource.query.*}. Pool names tag the Hikari metrics.
+ */
+@Configuration
+public class DataSourceConfig {
+    @Bean
+    public HikariDataSource ingestDataSource(DataSourceProperties properties, Environment environment) {
+        return pool(properties, environment, "stats-ingest", "stats.datasource.ingest");
+    }
+
+    @Bean
+    public HikariDataSource queryDataSource(DataSourceProperties properties, Environment environment) {
+        return pool(properties, environment, "stats-query", "stats.datasource.query");
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("ingestDataSource") DataSource ingest,
+                                 @Qualifier("queryDataSource") DataSource query) {
+        return new WorkloadRoutingDataSource(ingest, query);
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Environment environment, String name,
+                                         String prefix) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder binder = Binder.get(environment);
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        binder.bind(prefix, Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,94 @@
+package ru.practicum.server.isolation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.server.exception.IngestOverloadedException;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Ingest and query requests are handed off from the servlet threads to their own executors, each running on its
+ * own connection pool. Ingest has a deep queue; queries have a short queue and are rejected at once with 503 when
+ * it is full instead of piling up behind slow aggregations. A request still waiting for its result after
+ * {@code spring.mvc.async.request-timeout} is answered with 503 as well. Pool and queue
+ * saturation is exported per executor as {@code executor.*{name=ingestExecutor|queryExecutor}}, rejections as
+ * {@code stats.executor.rejected{pool}}.
+ */
+@Configuration
+@Profile("!reactive")
+public class ExecutorConfig {
+    @Bean
+    public ThreadPoolTaskExecutor ingestExecutor(@Value("${stats.executor.ingest.threads}") int threads,
+                                                 @Value("${stats.executor.ingest.queue-capacity}") int queueCapacity,
+                                                 MeterRegistry meterRegistry) {
+        Counter rejected = meterRegistry.counter("stats.executor.rejected", "pool", "ingest");
+        ThreadPoolTaskExecutor executor = executor("stats-ingest-", threads, queueCapacity, Workload.INGEST);
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejected.increment();
+            throw new IngestOverloadedException("Очередь записи хитов переполнена, повторите запрос позже");
+        });
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor queryExecutor(@Value("${stats.executor.query.threads}") int threads,
+                                                @Value("${stats.executor.query.queue-capacity}") int queueCapacity,
+                                                MeterRegistry meterRegistry) {
+        Counter rejected = meterRegistry.counter("stats.executor.rejected", "pool", "query");
+        ThreadPoolTaskExecutor executor = executor("stats-query-", threads, queueCapacity, Workload.QUERY);
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejected.increment();
+            throw new RejectedExecutionException("Сервер статистики перегружен запросами, повторите запрос позже");
+        });
+        return executor;
+    }
+
+    /**
+     * Streaming responses, such as {@code /stats/stream} and exports, run on the query executor as well. They are
+     * the only callables, and get {@code stats.executor.stream-timeout} instead of the request timeout, as they
+     * legitimately run for as long as there is data to send.
+     */
+    @Bean
+    public WebMvcConfigurer queryAsyncSupport(@Qualifier("queryExecutor") AsyncTaskExecutor queryExecutor,
+                                              @Value("${stats.executor.stream-timeout:30m}") Duration streamTimeout) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(queryExecutor);
+                configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                        if (request instanceof AsyncWebRequest) {
+                            ((AsyncWebRequest) request).setTimeout(streamTimeout.toMillis());
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    private static ThreadPoolTaskExecutor executor(String prefix, int threads, int queueCapacity, Workload workload) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(prefix);
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setTaskDecorator(workload::wrap);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+}
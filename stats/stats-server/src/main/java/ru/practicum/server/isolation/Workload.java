@@ -0,0 +1,34 @@
+package ru.practicum.server.isolation;
+
+/**
+ * Kind of work the current thread is doing. Threads that store hits mark themselves for the duration of a task, so
+ * the routing data source can hand out a connection from the matching pool. Unmarked threads, such as schedulers
+ * and startup, count as queries, so only hit ingestion ever uses the ingest pool.
+ */
+public enum Workload {
+    INGEST,
+    QUERY;
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    public static Workload current() {
+        Workload workload = CURRENT.get();
+        return workload == null ? QUERY : workload;
+    }
+
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            Workload previous = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+}
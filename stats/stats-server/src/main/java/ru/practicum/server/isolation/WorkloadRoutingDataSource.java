@@ -0,0 +1,22 @@
+package ru.practicum.server.isolation;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Hands out connections from the ingest or query pool depending on the workload of the calling thread, so a burst
+ * of heavy aggregations or background jobs can never take the connections hit ingestion needs.
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource {
+    public WorkloadRoutingDataSource(DataSource ingest, DataSource query) {
+        setTargetDataSources(Map.of(Workload.INGEST, ingest, Workload.QUERY, query));
+        setDefaultTargetDataSource(query);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return Workload.current();
+    }
+}
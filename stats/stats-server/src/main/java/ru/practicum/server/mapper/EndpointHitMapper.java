@@ -1,8 +1,12 @@
 package ru.practicum.server.mapper;
 
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.IpAddresses;
 import ru.practicum.server.model.EndpointHit;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 public class EndpointHitMapper {
     public static EndpointHitDto toEndpointHitDto(EndpointHit endpointHit) {
         return EndpointHitDto.builder()
@@ -15,12 +19,18 @@ public class EndpointHitMapper {
     }
 
     public static EndpointHit toEndpointHit(EndpointHitDto endpointHitDto) {
+        String ip = IpAddresses.normalize(endpointHitDto.getIp());
         return EndpointHit.builder()
                 .app(endpointHitDto.getApp())
                 .uri(endpointHitDto.getUri())
-                .ip(endpointHitDto.getIp())
+                .ip(ip == null ? endpointHitDto.getIp() : ip)
                 .timestamp(endpointHitDto.getTimestamp())
                 .build();
     }
-}
 
+    public static List<EndpointHit> listToEndpointHit(List<EndpointHitDto> list) {
+        return list.stream()
+                .map(EndpointHitMapper::toEndpointHit)
+                .collect(Collectors.toList());
+    }
+}
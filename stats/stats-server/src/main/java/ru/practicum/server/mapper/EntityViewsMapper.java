@@ -0,0 +1,72 @@
+package ru.practicum.server.mapper;
+
+import ru.practicum.dto.EntityViewsDto;
+import ru.practicum.dto.EntityViewsRequestDto;
+import ru.practicum.dto.UriSinceDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.server.exception.DataException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps entity ids of a type to uris of the form {@code /type/id} and the per-uri stats back to ids.
+ */
+public class EntityViewsMapper {
+    public static List<String> toUris(String type, long[] ids) {
+        String prefix = prefix(type);
+        List<String> uris = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            uris.add(prefix + id);
+        }
+        return uris;
+    }
+
+    public static List<UriSinceDto> toUrisSince(String type, EntityViewsRequestDto request) {
+        long[] ids = request.getIds();
+        long[] since = request.getSince();
+        if (since.length != ids.length) {
+            throw new DataException("Количество начальных моментов не совпадает с количеством идентификаторов.");
+        }
+        String prefix = prefix(type);
+        List<UriSinceDto> uris = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            uris.add(new UriSinceDto(prefix + ids[i], LocalDateTime.ofEpochSecond(since[i], 0, ZoneOffset.UTC)));
+        }
+        return uris;
+    }
+
+    /**
+     * Views of the same id reported by several apps are summed; uris of other types are ignored.
+     */
+    public static EntityViewsDto toDto(String type, List<ViewStatsDto> stats) {
+        String prefix = prefix(type);
+        Map<Long, Long> views = new LinkedHashMap<>();
+        for (ViewStatsDto viewStats : stats) {
+            String uri = viewStats.getUri();
+            if (uri.startsWith(prefix)) {
+                try {
+                    views.merge(Long.parseLong(uri.substring(prefix.length())), viewStats.getHits(), Long::sum);
+                } catch (NumberFormatException ignored) {
+                    // not an entity uri
+                }
+            }
+        }
+        long[] ids = new long[views.size()];
+        long[] counts = new long[views.size()];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : views.entrySet()) {
+            ids[i] = entry.getKey();
+            counts[i++] = entry.getValue();
+        }
+        return new EntityViewsDto(ids, counts);
+    }
+
+    private static String prefix(String type) {
+        return "/" + type + "/";
+    }
+}
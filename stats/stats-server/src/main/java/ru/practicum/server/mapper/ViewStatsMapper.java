@@ -12,6 +12,7 @@ public class ViewStatsMapper {
                 .app(viewStats.getApp())
                 .uri(viewStats.getUri())
                 .hits(viewStats.getHits())
+                .samplingRate(viewStats.getSamplingRate())
                 .build();
     }
 
@@ -0,0 +1,122 @@
+package ru.practicum.server.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.practicum.server.sketch.HyperLogLog;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Builds the hourly HLL sketches and ip bitmaps for hours that have raw hits but none of them, which is the case for
+ * rows copied from the text-keyed stats table. Hours that already have one were maintained at ingest and are kept.
+ */
+public class V3__BackfillUniques extends BaseJavaMigration {
+    private static final int BATCH_SIZE = 500;
+
+    @Override
+    public void migrate(Context context) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+        jdbcTemplate.setFetchSize(10_000);
+
+        Series<HyperLogLog> sketches = new Series<>(jdbcTemplate, 3, HyperLogLog::new, HyperLogLog::toBytes,
+                "INSERT INTO stats_hll_hour (app, uri, bucket, sketch) VALUES (?, ?, ?, ?)");
+        jdbcTemplate.query("SELECT h.app, h.uri, date_trunc('hour', h.timestamp) AS bucket, h.ip " +
+                "FROM stats_hits h WHERE h.ip IS NOT NULL AND NOT EXISTS (SELECT 1 FROM stats_hll_hour s " +
+                "WHERE s.app = h.app AND s.uri = h.uri AND s.bucket = date_trunc('hour', h.timestamp)) " +
+                "ORDER BY 1, 2, 3", sketches.adding((sketch, rs) -> sketch.add(rs.getString("ip"))));
+        sketches.finish();
+
+        Series<RoaringBitmap> bitmaps = new Series<>(jdbcTemplate, 4, RoaringBitmap::new, V3__BackfillUniques::toBytes,
+                "INSERT INTO stats_ip_bitmap_hour (app_id, uri_id, bucket, weight, bitmap) VALUES (?, ?, ?, ?, ?)");
+        jdbcTemplate.query("SELECT s.app_id, s.uri_id, date_trunc('hour', s.timestamp) AS bucket, s.weight, s.ip_id " +
+                "FROM stats s WHERE s.ip_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM stats_ip_bitmap_hour b " +
+                "WHERE b.app_id = s.app_id AND b.uri_id = s.uri_id AND b.bucket = date_trunc('hour', s.timestamp)) " +
+                "ORDER BY 1, 2, 3, 4", bitmaps.adding((bitmap, rs) -> bitmap.add(rs.getInt("ip_id"))));
+        bitmaps.finish();
+    }
+
+    private static byte[] toBytes(RoaringBitmap bitmap) {
+        bitmap.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+
+    private interface RowAdder<T> {
+        void add(T value, ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Folds rows ordered by their leading key columns into one value per key and inserts them in batches.
+     */
+    private static final class Series<T> {
+        private final JdbcTemplate jdbcTemplate;
+        private final int keyColumns;
+        private final Supplier<T> factory;
+        private final Function<T, byte[]> serializer;
+        private final String insert;
+        private final List<Object[]> batch = new ArrayList<>();
+
+        private Object[] key;
+        private T value;
+
+        Series(JdbcTemplate jdbcTemplate, int keyColumns, Supplier<T> factory, Function<T, byte[]> serializer,
+               String insert) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.keyColumns = keyColumns;
+            this.factory = factory;
+            this.serializer = serializer;
+            this.insert = insert;
+        }
+
+        RowCallbackHandler adding(RowAdder<T> adder) {
+            return rs -> {
+                Object[] rowKey = new Object[keyColumns];
+                for (int i = 0; i < keyColumns; i++) {
+                    rowKey[i] = rs.getObject(i + 1);
+                }
+                if (!Arrays.equals(rowKey, key)) {
+                    complete();
+                    key = rowKey;
+                    value = factory.get();
+                }
+                adder.add(value, rs);
+            };
+        }
+
+        void finish() {
+            complete();
+            flush();
+        }
+
+        private void complete() {
+            if (key == null) {
+                return;
+            }
+            Object[] row = Arrays.copyOf(key, keyColumns + 1);
+            row[keyColumns] = serializer.apply(value);
+            batch.add(row);
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(insert, batch);
+                batch.clear();
+            }
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package ru.practicum.server.model;
 
 import lombok.*;
+import org.hibernate.annotations.Immutable;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
 import static javax.persistence.GenerationType.IDENTITY;
 
+/**
+ * Raw hit as seen through the {@code stats_hits} view, which joins the dictionary-encoded {@code stats} table back to
+ * app, uri and ip strings. Hits are written with plain JDBC, the entity is read-only.
+ */
 @Entity
-@Table(name = "stats")
+@Immutable
+@Table(name = "stats_hits")
 @Getter
 @Setter
 @Builder
@@ -26,4 +32,10 @@ public class EndpointHit {
     private String ip;
     @Column(name = "timestamp")
     private LocalDateTime timestamp;
+    /**
+     * How many hits this one stands for: the sampling rate it was stored at, 1 when sampling is off.
+     */
+    @Column(name = "weight")
+    @Builder.Default
+    private Integer weight = 1;
 }
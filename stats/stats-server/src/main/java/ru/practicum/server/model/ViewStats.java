@@ -11,4 +11,20 @@ public class ViewStats {
     private String app;
     private String uri;
     private Long hits;
+    /**
+     * Stored hits behind a sampled estimate, {@code null} when every hit was stored.
+     */
+    private Long samples;
+
+    public ViewStats(String app, String uri, Long hits) {
+        this(app, uri, hits, null);
+    }
+
+    public long sampleCount() {
+        return samples == null ? hits : samples;
+    }
+
+    public Double getSamplingRate() {
+        return samples == null || samples >= hits ? null : (double) samples / hits;
+    }
 }
@@ -0,0 +1,37 @@
+package ru.practicum.server.partition;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum PartitionInterval {
+    DAY(ChronoUnit.DAYS, DateTimeFormatter.ofPattern("yyyyMMdd")),
+    MONTH(ChronoUnit.MONTHS, DateTimeFormatter.ofPattern("yyyyMM"));
+
+    private static final String PREFIX = "stats_p";
+
+    private final ChronoUnit unit;
+    private final DateTimeFormatter suffixFormatter;
+
+    public LocalDate floor(LocalDate date) {
+        return this == MONTH ? date.withDayOfMonth(1) : date;
+    }
+
+    public String partitionName(LocalDate from) {
+        return PREFIX + from.format(suffixFormatter);
+    }
+
+    public static PartitionInterval ofPartition(String name) {
+        return name.length() == PREFIX.length() + 8 ? DAY : MONTH;
+    }
+
+    public static LocalDate partitionStart(String name) {
+        String suffix = name.substring(PREFIX.length());
+        return LocalDate.parse(suffix.length() == 8 ? suffix : suffix + "01", DAY.suffixFormatter);
+    }
+}
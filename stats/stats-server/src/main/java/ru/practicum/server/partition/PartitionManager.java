@@ -0,0 +1,119 @@
+package ru.practicum.server.partition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Keeps the range partitions of the stats table ahead of the clock and retires the ones that fall out of the
+ * retention period, so expiring history is a detach or drop instead of a bulk delete. Rollups, sketches and ip
+ * bitmaps of the retired period are deleted with it, and in-memory stores are told to forget it.
+ */
+@Component
+@Slf4j
+public class PartitionManager {
+    private static final String PARTITIONS_QUERY = "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = 'stats' AND c.relname LIKE 'stats\\_p%'";
+    private static final List<String> BUCKETED_TABLES = List.of("stats_rollup_minute", "stats_rollup_hour",
+            "stats_hll_hour", "stats_ip_bitmap_hour");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PartitionInterval interval;
+    private final int precreate;
+    private final int retentionDays;
+    private final RetentionAction retentionAction;
+    private final List<RetentionListener> listeners;
+
+    public PartitionManager(JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            List<RetentionListener> listeners,
+                            @Value("${stats.partition.interval:DAY}") PartitionInterval interval,
+                            @Value("${stats.partition.precreate:7}") int precreate,
+                            @Value("${stats.partition.retention-days:0}") int retentionDays,
+                            @Value("${stats.partition.retention-action:DROP}") RetentionAction retentionAction) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.interval = interval;
+        this.precreate = precreate;
+        this.retentionDays = retentionDays;
+        this.retentionAction = retentionAction;
+        this.listeners = listeners;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${stats.partition.cron:0 5 * * * *}")
+    public void maintain() {
+        LocalDate current = interval.floor(LocalDate.now());
+        for (int i = 0; i <= precreate; i++) {
+            createPartition(current.plus(i, interval.getUnit()));
+        }
+        if (retentionDays > 0) {
+            retire(LocalDate.now().minusDays(retentionDays));
+        }
+    }
+
+    private void createPartition(LocalDate from) {
+        String name = interval.partitionName(from);
+        Timestamp lower = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp upper = Timestamp.valueOf(from.plus(1, interval.getUnit()).atStartOfDay());
+        transactionTemplate.executeWithoutResult(status -> {
+            Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name);
+            if (Boolean.TRUE.equals(exists)) {
+                return;
+            }
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE stats INCLUDING DEFAULTS)");
+            int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM stats_default " +
+                    "WHERE timestamp >= ? AND timestamp < ? RETURNING *) " +
+                    "INSERT INTO " + name + " SELECT * FROM moved", lower, upper);
+            jdbcTemplate.execute("ALTER TABLE stats ATTACH PARTITION " + name + " FOR VALUES FROM ('" + lower +
+                    "') TO ('" + upper + "')");
+            log.info("Создана партиция {} ({} строк перенесено из stats_default)", name, moved);
+        });
+    }
+
+    /**
+     * Only whole partitions are retired, so derived data and the default partition are cut at the start of the
+     * earliest partition that is kept: raw hits and their rollups then always cover the same period.
+     */
+    void retire(LocalDate threshold) {
+        List<String> partitions = jdbcTemplate.queryForList(PARTITIONS_QUERY, String.class);
+        LocalDate cutoff = threshold;
+        for (String name : partitions) {
+            LocalDate from = PartitionInterval.partitionStart(name);
+            if (from.plus(1, PartitionInterval.ofPartition(name).getUnit()).isAfter(threshold)) {
+                if (from.isBefore(cutoff)) {
+                    cutoff = from;
+                }
+                continue;
+            }
+            jdbcTemplate.execute("ALTER TABLE stats DETACH PARTITION " + name);
+            if (retentionAction == RetentionAction.DROP) {
+                jdbcTemplate.execute("DROP TABLE " + name);
+            }
+            log.info("Партиция {} выведена из хранения ({})", name, retentionAction);
+        }
+        Timestamp before = Timestamp.valueOf(cutoff.atStartOfDay());
+        jdbcTemplate.update("DELETE FROM stats_default WHERE timestamp < ?", before);
+        for (String table : BUCKETED_TABLES) {
+            int deleted = jdbcTemplate.update("DELETE FROM " + table + " WHERE bucket < ?", before);
+            if (deleted > 0) {
+                log.info("Из {} удалено {} строк старше {}", table, deleted, cutoff);
+            }
+        }
+        for (RetentionListener listener : listeners) {
+            listener.retired(cutoff.atStartOfDay());
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum.server.partition;
+
+public enum RetentionAction {
+    DETACH,
+    DROP
+}
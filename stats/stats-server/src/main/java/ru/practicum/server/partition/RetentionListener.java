@@ -0,0 +1,10 @@
+package ru.practicum.server.partition;
+
+import java.time.LocalDateTime;
+
+/**
+ * Notified after hits older than the threshold were removed from the stats table.
+ */
+public interface RetentionListener {
+    void retired(LocalDateTime threshold);
+}
@@ -0,0 +1,16 @@
+package ru.practicum.server.reactive;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistogramRow {
+    private String app;
+    private String uri;
+    private LocalDateTime bucket;
+    private Long hits;
+}
@@ -0,0 +1,80 @@
+package ru.practicum.server.reactive;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.practicum.server.uri.UriPattern;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reactive counterpart of the dictionary lookups. Every statement runs in its own auto-commit, so a resolved id is
+ * always committed and can be cached right away.
+ */
+@Component
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveDictionary {
+    private final DatabaseClient databaseClient;
+    private final Map<String, Integer> apps = new ConcurrentHashMap<>();
+    private final Map<String, Integer> uris = new ConcurrentHashMap<>();
+    private final Map<String, Integer> ips = new ConcurrentHashMap<>();
+
+    public Mono<Integer> app(String app) {
+        return resolve(apps, "stats_apps", "name", "VARCHAR", app);
+    }
+
+    public Mono<Integer> uri(String uri) {
+        return resolve(uris, "stats_uris", "uri", "VARCHAR", uri);
+    }
+
+    public Mono<Integer> ip(String ip) {
+        return resolve(ips, "stats_ips", "ip", "INET", ip);
+    }
+
+    /**
+     * Replaces wildcard patterns with the matching known uris, found with a prefix scan of the uri dictionary.
+     */
+    public Mono<List<String>> expandUris(List<String> filter) {
+        return Flux.fromIterable(filter)
+                .concatMap(uri -> {
+                    if (!UriPattern.isPattern(uri)) {
+                        return Flux.just(uri);
+                    }
+                    UriPattern pattern = UriPattern.of(uri);
+                    return databaseClient.sql("SELECT uri FROM stats_uris WHERE uri LIKE :prefix")
+                            .bind("prefix", escapeLike(pattern.getPrefix()) + "%")
+                            .map(row -> row.get("uri", String.class))
+                            .all()
+                            .filter(pattern::matches);
+                })
+                .distinct()
+                .collectList();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private Mono<Integer> resolve(Map<String, Integer> cache, String table, String column, String type, String value) {
+        Integer cached = cache.get(value);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        String cast = "CAST(:value AS " + type + ")";
+        return databaseClient.sql("INSERT INTO " + table + " (" + column + ") VALUES (" + cast + ") " +
+                        "ON CONFLICT (" + column + ") DO NOTHING")
+                .bind("value", value)
+                .then()
+                .then(databaseClient.sql("SELECT id FROM " + table + " WHERE " + column + " = " + cast)
+                        .bind("value", value)
+                        .map(row -> row.get("id", Integer.class))
+                        .one())
+                .doOnNext(id -> cache.put(value, id));
+    }
+}
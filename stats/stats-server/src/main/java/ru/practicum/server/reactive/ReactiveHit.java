@@ -0,0 +1,30 @@
+package ru.practicum.server.reactive;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Dictionary-encoded raw hit as written by the reactive profile.
+ */
+@Table("stats")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReactiveHit {
+    @Id
+    private Long id;
+    @Column("app_id")
+    private Integer appId;
+    @Column("uri_id")
+    private Integer uriId;
+    @Column("ip_id")
+    private Integer ipId;
+    @Column("timestamp")
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,92 @@
+package ru.practicum.server.reactive;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import ru.practicum.server.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface ReactiveHitRepository extends ReactiveCrudRepository<ReactiveHit, Long> {
+    @Query("SELECT app, uri, count(ip) AS hits " +
+            "FROM stats_hits " +
+            "WHERE timestamp BETWEEN :start AND :end " +
+            "GROUP BY app, uri " +
+            "ORDER BY hits DESC")
+    Flux<ViewStats> countHits(@Param("start") LocalDateTime start,
+                              @Param("end") LocalDateTime end);
+
+    @Query("SELECT app, uri, count(ip) AS hits " +
+            "FROM stats_hits " +
+            "WHERE timestamp BETWEEN :start AND :end " +
+            "AND uri IN (:uris) " +
+            "GROUP BY app, uri " +
+            "ORDER BY hits DESC")
+    Flux<ViewStats> countHitsByUriIn(@Param("start") LocalDateTime start,
+                                     @Param("end") LocalDateTime end,
+                                     @Param("uris") Collection<String> uris);
+
+    @Query("SELECT app, uri, count(DISTINCT ip) AS hits " +
+            "FROM stats_hits " +
+            "WHERE timestamp BETWEEN :start AND :end " +
+            "GROUP BY app, uri " +
+            "ORDER BY hits DESC")
+    Flux<ViewStats> countUniqueHits(@Param("start") LocalDateTime start,
+                                    @Param("end") LocalDateTime end);
+
+    @Query("SELECT app, uri, count(DISTINCT ip) AS hits " +
+            "FROM stats_hits " +
+            "WHERE timestamp BETWEEN :start AND :end " +
+            "AND uri IN (:uris) " +
+            "GROUP BY app, uri " +
+            "ORDER BY hits DESC")
+    Flux<ViewStats> countUniqueHitsByUriIn(@Param("start") LocalDateTime start,
+                                           @Param("end") LocalDateTime end,
+                                           @Param("uris") Collection<String> uris);
+
+    @Query("SELECT h.app, h.uri, CASE WHEN :unique THEN count(DISTINCT h.ip) ELSE count(h.ip) END AS hits " +
+            "FROM unnest(CAST(:uris AS VARCHAR[]), CAST(:since AS TIMESTAMP[])) AS p(uri, since) " +
+            "JOIN stats_hits h ON h.uri = p.uri AND h.timestamp BETWEEN p.since AND :end " +
+            "GROUP BY h.app, h.uri " +
+            "ORDER BY hits DESC")
+    Flux<ViewStats> countHitsSince(@Param("uris") String[] uris,
+                                   @Param("since") String[] since,
+                                   @Param("end") LocalDateTime end,
+                                   @Param("unique") boolean unique);
+
+    @Query("SELECT app, uri, count(ip) AS hits " +
+            "FROM stats_hits " +
+            "WHERE timestamp BETWEEN :start AND :end " +
+            "AND (CAST(:app AS VARCHAR) IS NULL OR app = :app) " +
+            "GROUP BY app, uri " +
+            "ORDER BY hits DESC " +
+            "LIMIT :limit")
+    Flux<ViewStats> topHits(@Param("start") LocalDateTime start,
+                            @Param("end") LocalDateTime end,
+                            @Param("app") String app,
+                            @Param("limit") int limit);
+
+    @Query("SELECT app, uri, date_trunc(:unit, timestamp) AS bucket, " +
+            "CASE WHEN :unique THEN count(DISTINCT ip) ELSE count(ip) END AS hits " +
+            "FROM stats_hits " +
+            "WHERE timestamp BETWEEN :start AND :end " +
+            "GROUP BY app, uri, bucket")
+    Flux<HistogramRow> histogram(@Param("start") LocalDateTime start,
+                                 @Param("end") LocalDateTime end,
+                                 @Param("unit") String unit,
+                                 @Param("unique") boolean unique);
+
+    @Query("SELECT app, uri, date_trunc(:unit, timestamp) AS bucket, " +
+            "CASE WHEN :unique THEN count(DISTINCT ip) ELSE count(ip) END AS hits " +
+            "FROM stats_hits " +
+            "WHERE timestamp BETWEEN :start AND :end " +
+            "AND uri IN (:uris) " +
+            "GROUP BY app, uri, bucket")
+    Flux<HistogramRow> histogramByUriIn(@Param("start") LocalDateTime start,
+                                        @Param("end") LocalDateTime end,
+                                        @Param("uris") Collection<String> uris,
+                                        @Param("unit") String unit,
+                                        @Param("unique") boolean unique);
+}
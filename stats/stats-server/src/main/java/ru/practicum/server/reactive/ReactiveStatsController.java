@@ -0,0 +1,130 @@
+package ru.practicum.server.reactive;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.EntityViewsDto;
+import ru.practicum.dto.EntityViewsRequestDto;
+import ru.practicum.dto.StatsHistogramDto;
+import ru.practicum.dto.StatsSinceRequestDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.server.histogram.HistogramInterval;
+import ru.practicum.server.ingest.BatchLedger;
+import ru.practicum.server.ingest.HitValidator;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * WebFlux version of the stats API with the same contract as the servlet controller.
+ */
+@RestController
+@Validated
+@Profile("reactive")
+@AllArgsConstructor
+@Slf4j
+public class ReactiveStatsController {
+    private static final String ENTITY_TYPE = "[a-z][a-z0-9-]*";
+    private static final String BATCH_ID_HEADER = "X-Batch-Id";
+
+    private final ReactiveStatsService service;
+    private final HitValidator hitValidator;
+    private final BatchLedger batchLedger;
+
+    @PostMapping("/hit")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<EndpointHitDto> create(@RequestBody @Valid EndpointHitDto endpointHitDto) {
+        log.debug("Saving hit {}", endpointHitDto.getApp());
+        return service.create(endpointHitDto);
+    }
+
+    @PostMapping("/hits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Void> createAll(@RequestBody List<EndpointHitDto> endpointHitDtos,
+                                @RequestHeader(name = BATCH_ID_HEADER, required = false) String batchId,
+                                ServerHttpRequest request) {
+        log.debug("Saving {} hits", endpointHitDtos.size());
+        List<EndpointHitDto> valid = hitValidator.valid(endpointHitDtos, request.getRemoteAddress());
+        if (batchId == null) {
+            return service.createAll(valid);
+        }
+        return Mono.defer(() -> {
+            if (!batchLedger.begin(batchId)) {
+                log.debug("Batch {} has already been stored", batchId);
+                return Mono.empty();
+            }
+            return service.createAll(valid)
+                    .doOnSuccess(result -> batchLedger.finish(batchId, true))
+                    .doOnError(error -> batchLedger.finish(batchId, false))
+                    .doOnCancel(() -> batchLedger.finish(batchId, false));
+        });
+    }
+
+    @GetMapping("/stats")
+    public Flux<ViewStatsDto> get(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                                  @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+                                  @RequestParam(required = false) List<String> uris,
+                                  @RequestParam(defaultValue = "false") boolean unique,
+                                  @RequestParam(defaultValue = "false") boolean approximate) {
+        log.info("Getting hits from stats service with start={}, end={}, uris={}, unique={}, approximate={}",
+                start, end, uris, unique, approximate);
+        return service.get(start, end, uris, unique);
+    }
+
+    @PostMapping("/stats/since")
+    public Flux<ViewStatsDto> getSince(@RequestBody @Valid StatsSinceRequestDto request) {
+        log.info("Getting hits from stats service for {} uris with own start, end={}, unique={}, approximate={}",
+                request.getUris().size(), request.getEnd(), request.isUnique(), request.isApproximate());
+        return service.getSince(request.getUris(), request.getEnd(), request.isUnique());
+    }
+
+    @PostMapping("/stats/{type}/views")
+    public Mono<EntityViewsDto> getEntityViews(@PathVariable @Pattern(regexp = ENTITY_TYPE) String type,
+                                               @RequestBody @Valid EntityViewsRequestDto request) {
+        log.info("Getting views of {} {} from stats service with end={}, unique={}, approximate={}",
+                request.getIds().length, type, request.getEnd(), request.isUnique(), request.isApproximate());
+        return service.getEntityViews(type, request);
+    }
+
+    @GetMapping("/stats/top")
+    public Flux<ViewStatsDto> top(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                                  @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+                                  @RequestParam(required = false) String app,
+                                  @RequestParam(defaultValue = "10") @Positive int limit) {
+        log.info("Getting top {} uris from stats service with start={}, end={}, app={}", limit, start, end, app);
+        return service.top(start, end, app, limit);
+    }
+
+    @GetMapping("/stats/histogram")
+    public Mono<StatsHistogramDto> histogram(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "HOUR") HistogramInterval interval,
+            @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("Getting histogram from stats service with start={}, end={}, uris={}, interval={}, unique={}",
+                start, end, uris, interval, unique);
+        return service.histogram(start, end, uris, interval, unique);
+    }
+
+    @GetMapping(value = "/stats/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ViewStatsDto> stream(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                                     @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+                                     @RequestParam(required = false) List<String> uris,
+                                     @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("Streaming hits from stats service with start={}, end={}, uris={}, unique={}", start, end, uris, unique);
+        return service.get(start, end, uris, unique);
+    }
+}
@@ -0,0 +1,167 @@
+package ru.practicum.server.reactive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.EntityViewsDto;
+import ru.practicum.dto.EntityViewsRequestDto;
+import ru.practicum.dto.StatsHistogramDto;
+import ru.practicum.dto.UriSinceDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.server.exception.DataException;
+import ru.practicum.server.histogram.Histogram;
+import ru.practicum.server.histogram.HistogramInterval;
+import ru.practicum.server.mapper.EntityViewsMapper;
+import ru.practicum.server.mapper.ViewStatsMapper;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.uri.UriPattern;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Non-blocking variant of the stats service: hits are written and aggregated straight over R2DBC. Rollups,
+ * sketches, bitmaps and the in-memory stores are not maintained in this mode.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveStatsService {
+    private final ReactiveHitRepository repository;
+    private final ReactiveDictionary dictionary;
+    private final int histogramMaxBuckets;
+
+    public ReactiveStatsService(ReactiveHitRepository repository,
+                                ReactiveDictionary dictionary,
+                                @Value("${stats.histogram.max-buckets:10000}") int histogramMaxBuckets) {
+        this.repository = repository;
+        this.dictionary = dictionary;
+        this.histogramMaxBuckets = histogramMaxBuckets;
+    }
+
+    public Mono<EndpointHitDto> create(EndpointHitDto endpointHitDto) {
+        return toHit(endpointHitDto)
+                .flatMap(repository::save)
+                .map(saved -> {
+                    endpointHitDto.setId(saved.getId());
+                    return endpointHitDto;
+                });
+    }
+
+    public Mono<Void> createAll(List<EndpointHitDto> endpointHitDtos) {
+        return Flux.fromIterable(endpointHitDtos)
+                .concatMap(this::toHit)
+                .collectList()
+                .flatMapMany(repository::saveAll)
+                .then();
+    }
+
+    public Flux<ViewStatsDto> get(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        checkRange(start, end);
+        if (hasPatterns(uris)) {
+            return dictionary.expandUris(uris)
+                    .flatMapMany(expanded -> expanded.isEmpty() ? Flux.empty() : count(start, end, expanded, unique));
+        }
+        return count(start, end, uris, unique);
+    }
+
+    /**
+     * All the (uri, since) pairs are answered by one query; a uri listed more than once is counted from its
+     * earliest {@code since}.
+     */
+    public Flux<ViewStatsDto> getSince(List<UriSinceDto> uris, LocalDateTime end, boolean unique) {
+        uris.forEach(uri -> checkRange(uri.getSince(), end));
+        return Flux.fromIterable(uris)
+                .concatMap(uri -> UriPattern.isPattern(uri.getUri())
+                        ? dictionary.expandUris(List.of(uri.getUri())).flatMapIterable(expanded -> expanded)
+                        .map(expanded -> new UriSinceDto(expanded, uri.getSince()))
+                        : Mono.just(uri))
+                .collect(LinkedHashMap<String, LocalDateTime>::new, (since, uri) ->
+                        since.merge(uri.getUri(), uri.getSince(), (a, b) -> a.isBefore(b) ? a : b))
+                .flatMapMany(since -> since.isEmpty() ? Flux.empty()
+                        : repository.countHitsSince(since.keySet().toArray(String[]::new),
+                        since.values().stream().map(LocalDateTime::toString).toArray(String[]::new), end, unique))
+                .map(ViewStatsMapper::toViewStatsDto);
+    }
+
+    public Mono<EntityViewsDto> getEntityViews(String type, EntityViewsRequestDto request) {
+        if (request.getIds().length == 0) {
+            return Mono.just(new EntityViewsDto(new long[0], new long[0]));
+        }
+        Flux<ViewStatsDto> stats;
+        if (request.getSince() != null) {
+            stats = getSince(EntityViewsMapper.toUrisSince(type, request), request.getEnd(), request.isUnique());
+        } else if (request.getStart() == null) {
+            throw new DataException("Не задано начало периода.");
+        } else {
+            stats = get(request.getStart(), request.getEnd(), EntityViewsMapper.toUris(type, request.getIds()),
+                    request.isUnique());
+        }
+        return stats.collectList().map(list -> EntityViewsMapper.toDto(type, list));
+    }
+
+    private Flux<ViewStatsDto> count(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        Flux<ViewStats> stats;
+        if (unique) {
+            stats = uris == null ? repository.countUniqueHits(start, end)
+                    : repository.countUniqueHitsByUriIn(start, end, uris);
+        } else {
+            stats = uris == null ? repository.countHits(start, end) : repository.countHitsByUriIn(start, end, uris);
+        }
+        return stats.map(ViewStatsMapper::toViewStatsDto);
+    }
+
+    public Flux<ViewStatsDto> top(LocalDateTime start, LocalDateTime end, String app, int limit) {
+        checkRange(start, end);
+        return repository.topHits(start, end, app, limit).map(ViewStatsMapper::toViewStatsDto);
+    }
+
+    public Mono<StatsHistogramDto> histogram(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                             HistogramInterval interval, boolean unique) {
+        checkRange(start, end);
+        if (interval.getUnit().between(interval.floor(start), interval.floor(end)) >= histogramMaxBuckets) {
+            throw new DataException("Слишком много интервалов гистограммы, максимум " + histogramMaxBuckets + ".");
+        }
+        if (hasPatterns(uris)) {
+            return dictionary.expandUris(uris).flatMap(expanded -> expanded.isEmpty()
+                    ? Mono.just(new Histogram(start, end, interval).toDto())
+                    : buildHistogram(start, end, expanded, interval, unique));
+        }
+        return buildHistogram(start, end, uris, interval, unique);
+    }
+
+    private Mono<StatsHistogramDto> buildHistogram(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                                   HistogramInterval interval, boolean unique) {
+        String unit = interval.name().toLowerCase();
+        Flux<HistogramRow> rows = uris == null ? repository.histogram(start, end, unit, unique)
+                : repository.histogramByUriIn(start, end, uris, unit, unique);
+        return rows.collect(() -> new Histogram(start, end, interval),
+                        (histogram, row) -> histogram.add(row.getApp(), row.getUri(), row.getBucket(), row.getHits()))
+                .map(Histogram::toDto);
+    }
+
+    private Mono<ReactiveHit> toHit(EndpointHitDto endpointHitDto) {
+        return Mono.zip(dictionary.app(endpointHitDto.getApp()),
+                        dictionary.uri(endpointHitDto.getUri()),
+                        dictionary.ip(endpointHitDto.getIp()))
+                .map(ids -> ReactiveHit.builder()
+                        .appId(ids.getT1())
+                        .uriId(ids.getT2())
+                        .ipId(ids.getT3())
+                        .timestamp(endpointHitDto.getTimestamp())
+                        .build());
+    }
+
+    private static boolean hasPatterns(List<String> uris) {
+        return uris != null && uris.stream().anyMatch(UriPattern::isPattern);
+    }
+
+    private void checkRange(LocalDateTime start, LocalDateTime end) {
+        if (start.isAfter(end)) {
+            throw new DataException("Начало мероприятия не может быть позже окончания мероприятия.");
+        }
+    }
+}
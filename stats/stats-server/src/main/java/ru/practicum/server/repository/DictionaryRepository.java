@@ -0,0 +1,180 @@
+package ru.practicum.server.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.dto.IpAddresses;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionaries of apps, uris and ips: raw hits keep only their int ids. Resolved ids are cached in memory, but ids
+ * seen inside a transaction become visible to other threads only after it commits, so a rolled back insert never
+ * leaves a dangling id in the cache. Strings that are not ip literals get no ip id, so one bad ip cannot fail the
+ * insert of the whole batch.
+ */
+@Repository
+public class DictionaryRepository {
+    private static final int CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int ipCacheSize;
+    private final Map<Dictionary, Map<String, Integer>> ids = new EnumMap<>(Dictionary.class);
+    private final Map<Dictionary, Map<Integer, String>> values = new EnumMap<>(Dictionary.class);
+
+    public DictionaryRepository(JdbcTemplate jdbcTemplate,
+                                @Value("${stats.dictionary.ip-cache-size:100000}") int ipCacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ipCacheSize = ipCacheSize;
+        for (Dictionary dictionary : Dictionary.values()) {
+            ids.put(dictionary, new ConcurrentHashMap<>());
+            values.put(dictionary, new ConcurrentHashMap<>());
+        }
+    }
+
+    public Map<String, Integer> resolveApps(Collection<String> apps) {
+        return resolve(Dictionary.APP, apps, true);
+    }
+
+    public Map<String, Integer> resolveUris(Collection<String> uris) {
+        return resolve(Dictionary.URI, uris, true);
+    }
+
+    public Map<String, Integer> resolveIps(Collection<String> ips) {
+        return resolve(Dictionary.IP, ips, true);
+    }
+
+    /**
+     * Ids of already known uris; unknown uris are simply absent from the result.
+     */
+    public Map<String, Integer> findUris(Collection<String> uris) {
+        return resolve(Dictionary.URI, uris, false);
+    }
+
+    public String appName(int id) {
+        return value(Dictionary.APP, id);
+    }
+
+    public String uri(int id) {
+        return value(Dictionary.URI, id);
+    }
+
+    private Map<String, Integer> resolve(Dictionary dictionary, Collection<String> keys, boolean create) {
+        Map<String, Integer> result = new HashMap<>();
+        Map<String, Integer> pending = pending(dictionary);
+        TreeSet<String> missing = new TreeSet<>();
+        for (String key : keys) {
+            if (key == null || dictionary == Dictionary.IP && !IpAddresses.isValid(key)) {
+                continue;
+            }
+            Integer id = ids.get(dictionary).get(key);
+            if (id == null && pending != null) {
+                id = pending.get(key);
+            }
+            if (id != null) {
+                result.put(key, id);
+            } else {
+                missing.add(key);
+            }
+        }
+        List<String> sorted = new ArrayList<>(missing);
+        for (int from = 0; from < sorted.size(); from += CHUNK_SIZE) {
+            List<String> chunk = sorted.subList(from, Math.min(sorted.size(), from + CHUNK_SIZE));
+            Map<String, Integer> found = load(dictionary, chunk, create);
+            result.putAll(found);
+            remember(dictionary, found);
+        }
+        return result;
+    }
+
+    private Map<String, Integer> load(Dictionary dictionary, List<String> keys, boolean create) {
+        Object[] args = keys.toArray();
+        if (create) {
+            String rows = String.join(", ", Collections.nCopies(keys.size(), "(CAST(? AS " + dictionary.getType() + "))"));
+            jdbcTemplate.update("INSERT INTO " + dictionary.getTable() + " (" + dictionary.getColumn() + ") VALUES " +
+                    rows + " ON CONFLICT (" + dictionary.getColumn() + ") DO NOTHING", args);
+        }
+        String rows = String.join(", ", Collections.nCopies(keys.size(), "(?)"));
+        Map<String, Integer> found = new HashMap<>();
+        jdbcTemplate.query("SELECT v.raw, d.id FROM (VALUES " + rows + ") AS v(raw) " +
+                "JOIN " + dictionary.getTable() + " d ON d." + dictionary.getColumn() + " = " +
+                "CAST(v.raw AS " + dictionary.getType() + ")", rs -> {
+            found.put(rs.getString(1), rs.getInt(2));
+        }, args);
+        return found;
+    }
+
+    private String value(Dictionary dictionary, int id) {
+        String value = values.get(dictionary).get(id);
+        if (value == null) {
+            value = jdbcTemplate.queryForObject("SELECT " + dictionary.getColumn() + " FROM " + dictionary.getTable() +
+                    " WHERE id = ?", String.class, id);
+            values.get(dictionary).put(id, value);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Integer> pending(Dictionary dictionary) {
+        Map<Dictionary, Map<String, Integer>> pending =
+                (Map<Dictionary, Map<String, Integer>>) TransactionSynchronizationManager.getResource(this);
+        return pending == null ? null : pending.get(dictionary);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void remember(Dictionary dictionary, Map<String, Integer> found) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache(dictionary, found);
+            return;
+        }
+        Map<Dictionary, Map<String, Integer>> pending =
+                (Map<Dictionary, Map<String, Integer>>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<Dictionary, Map<String, Integer>> bound = new EnumMap<>(Dictionary.class);
+            TransactionSynchronizationManager.bindResource(this, bound);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DictionaryRepository.this);
+                    if (status == STATUS_COMMITTED) {
+                        bound.forEach(DictionaryRepository.this::cache);
+                    }
+                }
+            });
+            pending = bound;
+        }
+        pending.computeIfAbsent(dictionary, d -> new HashMap<>()).putAll(found);
+    }
+
+    private void cache(Dictionary dictionary, Map<String, Integer> found) {
+        Map<String, Integer> cached = ids.get(dictionary);
+        if (dictionary == Dictionary.IP && cached.size() + found.size() > ipCacheSize) {
+            cached.clear();
+        }
+        cached.putAll(found);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private enum Dictionary {
+        APP("stats_apps", "name", "VARCHAR"),
+        URI("stats_uris", "uri", "VARCHAR"),
+        IP("stats_ips", "ip", "INET");
+
+        private final String table;
+        private final String column;
+        private final String type;
+    }
+}
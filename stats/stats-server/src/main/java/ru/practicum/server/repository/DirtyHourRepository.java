@@ -0,0 +1,42 @@
+package ru.practicum.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Repository
+@RequiredArgsConstructor
+public class DirtyHourRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void mark(String kind, Collection<LocalDateTime> hours) {
+        SqlParameterSource[] inserts = hours.stream()
+                .map(hour -> new MapSqlParameterSource()
+                        .addValue("kind", kind)
+                        .addValue("bucket", Timestamp.valueOf(hour)))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("INSERT INTO stats_uniques_dirty (kind, bucket) VALUES (:kind, :bucket) " +
+                "ON CONFLICT (kind, bucket) DO NOTHING", inserts);
+    }
+
+    public void unmark(String kind, Collection<LocalDateTime> hours) {
+        jdbcTemplate.update("DELETE FROM stats_uniques_dirty WHERE kind = :kind AND bucket IN (:buckets)",
+                new MapSqlParameterSource()
+                        .addValue("kind", kind)
+                        .addValue("buckets", hours.stream().map(Timestamp::valueOf).collect(Collectors.toList())));
+    }
+
+    public List<LocalDateTime> findMarked(String kind) {
+        return jdbcTemplate.query("SELECT bucket FROM stats_uniques_dirty WHERE kind = :kind ORDER BY bucket",
+                new MapSqlParameterSource("kind", kind),
+                (rs, rowNum) -> rs.getTimestamp("bucket").toLocalDateTime());
+    }
+}
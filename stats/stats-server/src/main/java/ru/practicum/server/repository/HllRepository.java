@@ -0,0 +1,91 @@
+package ru.practicum.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.practicum.server.rollup.RollupKey;
+import ru.practicum.server.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+@Repository
+@RequiredArgsConstructor
+public class HllRepository {
+    private static final byte[] EMPTY_SKETCH = new byte[0];
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Map<RollupKey, HyperLogLog> lockSketches(List<RollupKey> keys) {
+        SqlParameterSource[] inserts = keys.stream()
+                .map(key -> keyParams(key).addValue("sketch", EMPTY_SKETCH))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("INSERT INTO stats_hll_hour (app, uri, bucket, sketch) " +
+                "VALUES (:app, :uri, :bucket, :sketch) ON CONFLICT (app, uri, bucket) DO NOTHING", inserts);
+
+        List<Object[]> tuples = keys.stream()
+                .map(key -> new Object[]{key.getApp(), key.getUri(), key.getBucket()})
+                .collect(Collectors.toList());
+        Map<RollupKey, HyperLogLog> sketches = new HashMap<>();
+        jdbcTemplate.query("SELECT app, uri, bucket, sketch FROM stats_hll_hour " +
+                        "WHERE (app, uri, bucket) IN (:keys) ORDER BY app, uri, bucket FOR UPDATE",
+                new MapSqlParameterSource("keys", tuples),
+                rs -> {
+                    RollupKey key = new RollupKey(rs.getString("app"), rs.getString("uri"),
+                            rs.getTimestamp("bucket").toLocalDateTime());
+                    sketches.put(key, HyperLogLog.fromBytes(rs.getBytes("sketch")));
+                });
+        return sketches;
+    }
+
+    public void saveSketches(Map<RollupKey, HyperLogLog> sketches) {
+        SqlParameterSource[] updates = sketches.entrySet().stream()
+                .map(entry -> keyParams(entry.getKey()).addValue("sketch", entry.getValue().toBytes()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("UPDATE stats_hll_hour SET sketch = :sketch " +
+                "WHERE app = :app AND uri = :uri AND bucket = :bucket", updates);
+    }
+
+    public void forEachSketch(LocalDateTime from, LocalDateTime to, List<String> uris,
+                              BiConsumer<RollupKey, HyperLogLog> consumer) {
+        String sql = "SELECT app, uri, bucket, sketch FROM stats_hll_hour " +
+                "WHERE bucket >= :from AND bucket < :to " +
+                (uris == null ? "" : "AND uri IN (:uris) ");
+        jdbcTemplate.query(sql, rangeParams(from, to, uris), rs -> {
+            RollupKey key = new RollupKey(rs.getString("app"), rs.getString("uri"),
+                    rs.getTimestamp("bucket").toLocalDateTime());
+            consumer.accept(key, HyperLogLog.fromBytes(rs.getBytes("sketch")));
+        });
+    }
+
+    public void forEachDistinctIp(LocalDateTime from, LocalDateTime to, List<String> uris,
+                                  BiConsumer<RollupKey, String> consumer) {
+        String sql = "SELECT DISTINCT app, uri, ip FROM stats_hits " +
+                "WHERE timestamp >= :from AND timestamp < :to " +
+                (uris == null ? "" : "AND uri IN (:uris) ");
+        jdbcTemplate.query(sql, rangeParams(from, to, uris), rs -> {
+            consumer.accept(new RollupKey(rs.getString("app"), rs.getString("uri"), from), rs.getString("ip"));
+        });
+    }
+
+    private MapSqlParameterSource keyParams(RollupKey key) {
+        return new MapSqlParameterSource()
+                .addValue("app", key.getApp())
+                .addValue("uri", key.getUri())
+                .addValue("bucket", Timestamp.valueOf(key.getBucket()));
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("uris", uris);
+    }
+}
@@ -0,0 +1,121 @@
+package ru.practicum.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.practicum.server.bitmap.BitmapKey;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+@Repository
+@RequiredArgsConstructor
+public class IpBitmapRepository {
+    private static final byte[] EMPTY_BITMAP = new byte[0];
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Map<BitmapKey, RoaringBitmap> lockBitmaps(List<BitmapKey> keys) {
+        SqlParameterSource[] inserts = keys.stream()
+                .map(key -> keyParams(key).addValue("bitmap", EMPTY_BITMAP))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("INSERT INTO stats_ip_bitmap_hour (app_id, uri_id, bucket, weight, bitmap) " +
+                "VALUES (:appId, :uriId, :bucket, :weight, :bitmap) " +
+                "ON CONFLICT (app_id, uri_id, bucket, weight) DO NOTHING", inserts);
+
+        List<Object[]> tuples = keys.stream()
+                .map(key -> new Object[]{key.getAppId(), key.getUriId(), Timestamp.valueOf(key.getBucket()),
+                        key.getWeight()})
+                .collect(Collectors.toList());
+        Map<BitmapKey, RoaringBitmap> bitmaps = new HashMap<>();
+        jdbcTemplate.query("SELECT app_id, uri_id, bucket, weight, bitmap FROM stats_ip_bitmap_hour " +
+                        "WHERE (app_id, uri_id, bucket, weight) IN (:keys) " +
+                        "ORDER BY app_id, uri_id, bucket, weight FOR UPDATE",
+                new MapSqlParameterSource("keys", tuples),
+                rs -> {
+                    BitmapKey key = new BitmapKey(rs.getInt("app_id"), rs.getInt("uri_id"),
+                            rs.getTimestamp("bucket").toLocalDateTime(), rs.getInt("weight"));
+                    bitmaps.put(key, fromBytes(rs.getBytes("bitmap")));
+                });
+        return bitmaps;
+    }
+
+    public void saveBitmaps(Map<BitmapKey, RoaringBitmap> bitmaps) {
+        SqlParameterSource[] updates = bitmaps.entrySet().stream()
+                .map(entry -> keyParams(entry.getKey()).addValue("bitmap", toBytes(entry.getValue())))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("UPDATE stats_ip_bitmap_hour SET bitmap = :bitmap " +
+                "WHERE app_id = :appId AND uri_id = :uriId AND bucket = :bucket AND weight = :weight", updates);
+    }
+
+    public void forEachBitmap(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds,
+                              BiConsumer<BitmapKey, RoaringBitmap> consumer) {
+        String sql = "SELECT app_id, uri_id, bucket, weight, bitmap FROM stats_ip_bitmap_hour " +
+                "WHERE bucket >= :from AND bucket < :to " +
+                (uriIds == null ? "" : "AND uri_id IN (:uriIds) ");
+        jdbcTemplate.query(sql, rangeParams(from, to, uriIds), rs -> {
+            BitmapKey key = new BitmapKey(rs.getInt("app_id"), rs.getInt("uri_id"),
+                    rs.getTimestamp("bucket").toLocalDateTime(), rs.getInt("weight"));
+            consumer.accept(key, fromBytes(rs.getBytes("bitmap")));
+        });
+    }
+
+    public void forEachDistinctIpId(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds,
+                                    BiConsumer<BitmapKey, Integer> consumer) {
+        String sql = "SELECT app_id, uri_id, ip_id, min(weight) AS weight FROM stats " +
+                "WHERE timestamp >= :from AND timestamp < :to AND ip_id IS NOT NULL " +
+                (uriIds == null ? "" : "AND uri_id IN (:uriIds) ") +
+                "GROUP BY app_id, uri_id, ip_id";
+        jdbcTemplate.query(sql, rangeParams(from, to, uriIds), rs -> {
+            consumer.accept(new BitmapKey(rs.getInt("app_id"), rs.getInt("uri_id"), from, rs.getInt("weight")),
+                    rs.getInt("ip_id"));
+        });
+    }
+
+    private static RoaringBitmap fromBytes(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        if (bytes.length == 0) {
+            return bitmap;
+        }
+        try {
+            bitmap.deserialize(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bitmap;
+    }
+
+    private static byte[] toBytes(RoaringBitmap bitmap) {
+        bitmap.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+
+    private MapSqlParameterSource keyParams(BitmapKey key) {
+        return new MapSqlParameterSource()
+                .addValue("appId", key.getAppId())
+                .addValue("uriId", key.getUriId())
+                .addValue("bucket", Timestamp.valueOf(key.getBucket()))
+                .addValue("weight", key.getWeight());
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds) {
+        return new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("uriIds", uriIds);
+    }
+}
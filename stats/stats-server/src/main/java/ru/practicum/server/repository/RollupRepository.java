@@ -0,0 +1,98 @@
+package ru.practicum.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.rollup.RollupCount;
+import ru.practicum.server.rollup.RollupGranularity;
+import ru.practicum.server.rollup.RollupKey;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+@Repository
+@RequiredArgsConstructor
+public class RollupRepository {
+    private static final RowMapper<ViewStats> VIEW_STATS_MAPPER = (rs, rowNum) ->
+            new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"), rs.getLong("samples"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void increment(RollupGranularity granularity, Map<RollupKey, RollupCount> increments) {
+        if (increments.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO " + granularity.getTable() + " (app, uri, bucket, hits, samples) " +
+                "VALUES (:app, :uri, :bucket, :hits, :samples) " +
+                "ON CONFLICT (app, uri, bucket) DO UPDATE SET hits = " + granularity.getTable() + ".hits + EXCLUDED.hits, " +
+                "samples = " + granularity.getTable() + ".samples + EXCLUDED.samples";
+        SqlParameterSource[] params = increments.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("app", entry.getKey().getApp())
+                        .addValue("uri", entry.getKey().getUri())
+                        .addValue("bucket", entry.getKey().getBucket())
+                        .addValue("hits", entry.getValue().getHits())
+                        .addValue("samples", entry.getValue().getSamples()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(sql, params);
+    }
+
+    public List<ViewStats> sumHits(RollupGranularity granularity, LocalDateTime from, LocalDateTime to, List<String> uris) {
+        String sql = "SELECT app, uri, sum(hits) AS hits, sum(samples) AS samples FROM " + granularity.getTable() + " " +
+                "WHERE bucket >= :from AND bucket < :to " +
+                (uris == null ? "" : "AND uri IN (:uris) ") +
+                "GROUP BY app, uri";
+        return jdbcTemplate.query(sql, rangeParams(from, to, uris), VIEW_STATS_MAPPER);
+    }
+
+    public List<ViewStats> countRawHits(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        String sql = "SELECT app, uri, sum(weight) AS hits, count(*) AS samples FROM stats_hits " +
+                "WHERE timestamp >= :from AND timestamp < :to " +
+                (uris == null ? "" : "AND uri IN (:uris) ") +
+                "GROUP BY app, uri";
+        return jdbcTemplate.query(sql, rangeParams(from, to, uris), VIEW_STATS_MAPPER);
+    }
+
+    public void forEachBucket(RollupGranularity granularity, LocalDateTime from, LocalDateTime to, List<String> uris,
+                              ObjLongConsumer<RollupKey> consumer) {
+        String sql = "SELECT app, uri, bucket, hits FROM " + granularity.getTable() + " " +
+                "WHERE bucket >= :from AND bucket < :to " +
+                (uris == null ? "" : "AND uri IN (:uris) ");
+        jdbcTemplate.query(sql, rangeParams(from, to, uris), rs -> {
+            consumer.accept(new RollupKey(rs.getString("app"), rs.getString("uri"),
+                    rs.getTimestamp("bucket").toLocalDateTime()), rs.getLong("hits"));
+        });
+    }
+
+    public void forEachRawMinute(LocalDateTime from, LocalDateTime to, List<String> uris, boolean unique,
+                                 ObjLongConsumer<RollupKey> consumer) {
+        String filter = "WHERE timestamp >= :from AND timestamp < :to " +
+                (uris == null ? "" : "AND uri IN (:uris) ");
+        String sql = unique
+                ? "SELECT app, uri, bucket, sum(weight) AS hits FROM (" +
+                "SELECT app, uri, date_trunc('minute', timestamp) AS bucket, ip, min(weight) AS weight " +
+                "FROM stats_hits " + filter + "AND ip IS NOT NULL " +
+                "GROUP BY app, uri, bucket, ip) AS d " +
+                "GROUP BY app, uri, bucket"
+                : "SELECT app, uri, date_trunc('minute', timestamp) AS bucket, sum(weight) AS hits " +
+                "FROM stats_hits " + filter +
+                "GROUP BY app, uri, bucket";
+        jdbcTemplate.query(sql, rangeParams(from, to, uris), rs -> {
+            consumer.accept(new RollupKey(rs.getString("app"), rs.getString("uri"),
+                    rs.getTimestamp("bucket").toLocalDateTime()), rs.getLong("hits"));
+        });
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("uris", uris);
+    }
+}
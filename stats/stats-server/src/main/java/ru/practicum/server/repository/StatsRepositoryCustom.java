@@ -0,0 +1,22 @@
+package ru.practicum.server.repository;
+
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public interface StatsRepositoryCustom {
+    EndpointHit saveHit(EndpointHit hit);
+
+    void saveAllBatch(List<EndpointHit> hits);
+
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                     Consumer<ViewStats> consumer);
+
+    List<ViewStats> getStatsSince(Map<String, LocalDateTime> since, LocalDateTime end, boolean unique);
+
+    List<ViewStats> topHits(LocalDateTime start, LocalDateTime end, String app, int limit);
+}
@@ -0,0 +1,160 @@
+package ru.practicum.server.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class StatsRepositoryCustomImpl implements StatsRepositoryCustom {
+    private static final String INSERT_HIT = "INSERT INTO stats (app_id, uri_id, ip_id, timestamp, weight) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DictionaryRepository dictionaryRepository;
+    private final NamedParameterJdbcTemplate cursorTemplate;
+    private final int batchSize;
+
+    public StatsRepositoryCustomImpl(JdbcTemplate jdbcTemplate,
+                                     DictionaryRepository dictionaryRepository,
+                                     @Value("${stats.ingest.batch-size:500}") int batchSize,
+                                     @Value("${stats.stream.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dictionaryRepository = dictionaryRepository;
+        this.batchSize = batchSize;
+        JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursor.setFetchSize(fetchSize);
+        this.cursorTemplate = new NamedParameterJdbcTemplate(cursor);
+    }
+
+    @Override
+    public EndpointHit saveHit(EndpointHit hit) {
+        Map<String, Integer> apps = dictionaryRepository.resolveApps(Collections.singletonList(hit.getApp()));
+        Map<String, Integer> uris = dictionaryRepository.resolveUris(Collections.singletonList(hit.getUri()));
+        Map<String, Integer> ips = dictionaryRepository.resolveIps(Collections.singletonList(hit.getIp()));
+        Long id = jdbcTemplate.queryForObject(INSERT_HIT + " RETURNING id", Long.class,
+                apps.get(hit.getApp()), uris.get(hit.getUri()), ips.get(hit.getIp()),
+                hit.getTimestamp() == null ? null : Timestamp.valueOf(hit.getTimestamp()), hit.getWeight());
+        hit.setId(id);
+        return hit;
+    }
+
+    @Override
+    public void saveAllBatch(List<EndpointHit> hits) {
+        Map<String, Integer> apps = dictionaryRepository.resolveApps(collect(hits, EndpointHit::getApp));
+        Map<String, Integer> uris = dictionaryRepository.resolveUris(collect(hits, EndpointHit::getUri));
+        Map<String, Integer> ips = dictionaryRepository.resolveIps(collect(hits, EndpointHit::getIp));
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, batchSize, (ps, hit) -> {
+            ps.setObject(1, apps.get(hit.getApp()), Types.INTEGER);
+            ps.setObject(2, uris.get(hit.getUri()), Types.INTEGER);
+            ps.setObject(3, ips.get(hit.getIp()), Types.INTEGER);
+            ps.setTimestamp(4, hit.getTimestamp() == null ? null : Timestamp.valueOf(hit.getTimestamp()));
+            ps.setInt(5, hit.getWeight());
+        });
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            Consumer<ViewStats> consumer) {
+        String filter = "WHERE timestamp BETWEEN :start AND :end " +
+                (uris == null ? "" : "AND uri IN (:uris) ");
+        String source = unique
+                ? "(SELECT app, uri, ip, min(weight) AS weight FROM stats_hits " + filter +
+                "AND ip IS NOT NULL GROUP BY app, uri, ip) AS d "
+                : "stats_hits " + filter;
+        String sql = "SELECT app, uri, sum(weight) AS hits, count(*) AS samples FROM " + source +
+                "GROUP BY app, uri " +
+                "ORDER BY hits DESC";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("end", end)
+                .addValue("uris", uris);
+        cursorTemplate.query(sql, params, rs -> {
+            consumer.accept(new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"),
+                    rs.getLong("samples")));
+        });
+    }
+
+    /**
+     * Every uri is counted from its own {@code since} in one statement: the (uri, since) pairs are passed as two
+     * arrays and joined to the hits through the (uri_id, timestamp) index. The earliest {@code since} bounds the scan
+     * as a constant, so partitions before it are pruned.
+     */
+    @Override
+    public List<ViewStats> getStatsSince(Map<String, LocalDateTime> since, LocalDateTime end, boolean unique) {
+        String hits = "SELECT s.app_id, s.uri_id, s.ip_id, s.weight " +
+                "FROM unnest(?::varchar[], ?::timestamp[]) AS p(uri, since) " +
+                "JOIN stats_uris pu ON pu.uri = p.uri " +
+                "JOIN stats s ON s.uri_id = pu.id AND s.timestamp BETWEEN p.since AND ? " +
+                "WHERE s.timestamp >= ?";
+        String source = unique
+                ? "(SELECT app_id, uri_id, ip_id, min(weight) AS weight FROM (" + hits + ") AS h " +
+                "WHERE ip_id IS NOT NULL GROUP BY app_id, uri_id, ip_id) AS d "
+                : "(" + hits + ") AS d ";
+        String sql = "SELECT a.name AS app, u.uri, sum(d.weight) AS hits, count(*) AS samples FROM " + source +
+                "JOIN stats_apps a ON a.id = d.app_id " +
+                "JOIN stats_uris u ON u.id = d.uri_id " +
+                "GROUP BY a.name, u.uri " +
+                "ORDER BY hits DESC";
+        String[] uris = new String[since.size()];
+        Timestamp[] starts = new Timestamp[since.size()];
+        Timestamp earliest = null;
+        int i = 0;
+        for (Map.Entry<String, LocalDateTime> entry : since.entrySet()) {
+            uris[i] = entry.getKey();
+            starts[i] = Timestamp.valueOf(entry.getValue());
+            if (earliest == null || starts[i].before(earliest)) {
+                earliest = starts[i];
+            }
+            i++;
+        }
+        Timestamp from = earliest;
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("varchar", uris));
+            ps.setArray(2, con.createArrayOf("timestamp", starts));
+            ps.setTimestamp(3, Timestamp.valueOf(end));
+            ps.setTimestamp(4, from);
+            return ps;
+        }, (rs, rowNum) ->
+                new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"), rs.getLong("samples")));
+    }
+
+    @Override
+    public List<ViewStats> topHits(LocalDateTime start, LocalDateTime end, String app, int limit) {
+        String sql = "SELECT app, uri, sum(weight) AS hits, count(*) AS samples FROM stats_hits " +
+                "WHERE timestamp BETWEEN :start AND :end " +
+                (app == null ? "" : "AND app = :app ") +
+                "GROUP BY app, uri " +
+                "ORDER BY hits DESC " +
+                "LIMIT :limit";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("end", end)
+                .addValue("app", app)
+                .addValue("limit", limit);
+        return cursorTemplate.query(sql, params, (rs, rowNum) ->
+                new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"), rs.getLong("samples")));
+    }
+
+    private static Set<String> collect(List<EndpointHit> hits, Function<EndpointHit, String> field) {
+        Set<String> values = new HashSet<>();
+        for (EndpointHit hit : hits) {
+            values.add(field.apply(hit));
+        }
+        return values;
+    }
+}
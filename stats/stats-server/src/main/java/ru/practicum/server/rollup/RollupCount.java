@@ -0,0 +1,17 @@
+package ru.practicum.server.rollup;
+
+import lombok.Getter;
+
+/**
+ * Rollup increment: weighted hits and the number of stored hits behind them.
+ */
+@Getter
+public class RollupCount {
+    private long hits;
+    private long samples;
+
+    public void add(int weight) {
+        hits += weight;
+        samples++;
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum.server.rollup;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum RollupGranularity {
+    MINUTE("stats_rollup_minute", ChronoUnit.MINUTES),
+    HOUR("stats_rollup_hour", ChronoUnit.HOURS);
+
+    private final String table;
+    private final ChronoUnit unit;
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+}
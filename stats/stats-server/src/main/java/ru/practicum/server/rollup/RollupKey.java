@@ -0,0 +1,27 @@
+package ru.practicum.server.rollup;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+@Getter
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class RollupKey implements Comparable<RollupKey> {
+    private static final Comparator<RollupKey> ORDER = Comparator
+            .comparing(RollupKey::getApp, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(RollupKey::getUri, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(RollupKey::getBucket);
+
+    private final String app;
+    private final String uri;
+    private final LocalDateTime bucket;
+
+    @Override
+    public int compareTo(RollupKey other) {
+        return ORDER.compare(this, other);
+    }
+}
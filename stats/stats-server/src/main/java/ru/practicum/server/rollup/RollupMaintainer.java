@@ -0,0 +1,34 @@
+package ru.practicum.server.rollup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.server.ingest.HitListener;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.repository.RollupRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.storage", havingValue = "postgres", matchIfMissing = true)
+public class RollupMaintainer implements HitListener {
+    private final RollupRepository rollupRepository;
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            Map<RollupKey, RollupCount> increments = new TreeMap<>();
+            for (EndpointHit hit : hits) {
+                if (hit.getTimestamp() == null) {
+                    continue;
+                }
+                RollupKey key = new RollupKey(hit.getApp(), hit.getUri(), granularity.floor(hit.getTimestamp()));
+                increments.computeIfAbsent(key, k -> new RollupCount()).add(hit.getWeight());
+            }
+            rollupRepository.increment(granularity, increments);
+        }
+    }
+}
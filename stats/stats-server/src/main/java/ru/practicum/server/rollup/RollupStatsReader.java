@@ -0,0 +1,61 @@
+package ru.practicum.server.rollup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.repository.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers non-unique hit counts from the rollup tables: whole hours come from the hourly rollup, whole minutes at
+ * the edges from the minute rollup, and only the sub-minute remainders are counted over raw hits.
+ */
+@Component
+@RequiredArgsConstructor
+public class RollupStatsReader {
+    private final RollupRepository rollupRepository;
+
+    public List<ViewStats> getHits(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<List<String>, long[]> totals = new LinkedHashMap<>();
+        collect(totals, start, TimeRange.exclusiveEnd(end), uris, RollupGranularity.values().length - 1);
+        List<ViewStats> result = new ArrayList<>(totals.size());
+        totals.forEach((key, total) -> result.add(new ViewStats(key.get(0), key.get(1), total[0], total[1])));
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    private void collect(Map<List<String>, long[]> totals, LocalDateTime from, LocalDateTime to, List<String> uris,
+                         int level) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level < 0) {
+            merge(totals, rollupRepository.countRawHits(from, to, uris));
+            return;
+        }
+        RollupGranularity granularity = RollupGranularity.values()[level];
+        LocalDateTime alignedFrom = granularity.ceil(from);
+        LocalDateTime alignedTo = granularity.floor(to);
+        if (!alignedFrom.isBefore(alignedTo)) {
+            collect(totals, from, to, uris, level - 1);
+            return;
+        }
+        merge(totals, rollupRepository.sumHits(granularity, alignedFrom, alignedTo, uris));
+        collect(totals, from, alignedFrom, uris, level - 1);
+        collect(totals, alignedTo, to, uris, level - 1);
+    }
+
+    private void merge(Map<List<String>, long[]> totals, List<ViewStats> stats) {
+        for (ViewStats viewStats : stats) {
+            long[] total = totals.computeIfAbsent(List.of(viewStats.getApp(), viewStats.getUri()), k -> new long[2]);
+            total[0] += viewStats.getHits();
+            total[1] += viewStats.sampleCount();
+        }
+    }
+}
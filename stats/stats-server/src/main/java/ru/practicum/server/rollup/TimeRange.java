@@ -0,0 +1,17 @@
+package ru.practicum.server.rollup;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Readers take an inclusive {@code end} and query half-open ranges. Stored timestamps have microsecond precision
+ * and pgjdbc drops sub-microsecond nanos when binding, so the exclusive bound is one microsecond past {@code end}.
+ */
+public final class TimeRange {
+    private TimeRange() {
+    }
+
+    public static LocalDateTime exclusiveEnd(LocalDateTime end) {
+        return end.truncatedTo(ChronoUnit.MICROS).plus(1, ChronoUnit.MICROS);
+    }
+}
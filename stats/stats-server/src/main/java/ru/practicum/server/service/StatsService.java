@@ -1,13 +1,34 @@
 package ru.practicum.server.service;
 
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.EntityViewsDto;
+import ru.practicum.dto.EntityViewsRequestDto;
+import ru.practicum.dto.StatsHistogramDto;
+import ru.practicum.dto.UriSinceDto;
 import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.server.histogram.HistogramInterval;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
     EndpointHitDto create(EndpointHitDto endpointHitDto);
 
-    List<ViewStatsDto> get(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+    void createAll(List<EndpointHitDto> endpointHitDtos);
+
+    List<ViewStatsDto> get(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                           boolean approximate);
+
+    List<ViewStatsDto> getSince(List<UriSinceDto> uris, LocalDateTime end, boolean unique, boolean approximate);
+
+    EntityViewsDto getEntityViews(String type, EntityViewsRequestDto request);
+
+    List<ViewStatsDto> top(LocalDateTime start, LocalDateTime end, String app, int limit);
+
+    StatsHistogramDto histogram(LocalDateTime start, LocalDateTime end, List<String> uris, HistogramInterval interval,
+                                boolean unique);
+
+    void stream(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                Consumer<ViewStatsDto> consumer);
 }
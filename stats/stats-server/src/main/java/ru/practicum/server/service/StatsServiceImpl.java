@@ -1,41 +1,322 @@
 package ru.practicum.server.service;
 
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.EntityViewsDto;
+import ru.practicum.dto.EntityViewsRequestDto;
+import ru.practicum.dto.StatsHistogramDto;
+import ru.practicum.dto.UriSinceDto;
 import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.server.bitmap.IpBitmapStatsReader;
+import ru.practicum.server.cache.StatsQueryCache;
+import ru.practicum.server.columnar.HotHitStore;
+import ru.practicum.server.counter.CounterStore;
 import ru.practicum.server.exception.DataException;
+import ru.practicum.server.histogram.Histogram;
+import ru.practicum.server.histogram.HistogramInterval;
+import ru.practicum.server.histogram.HistogramReader;
+import ru.practicum.server.ingest.DuplicateFilter;
+import ru.practicum.server.ingest.HitWriter;
+import ru.practicum.server.ingest.SamplingPolicy;
+import ru.practicum.server.ingest.WriteBehindIngestor;
 import ru.practicum.server.mapper.EndpointHitMapper;
+import ru.practicum.server.mapper.EntityViewsMapper;
 import ru.practicum.server.mapper.ViewStatsMapper;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
 import ru.practicum.server.repository.StatsRepository;
+import ru.practicum.server.rollup.RollupStatsReader;
+import ru.practicum.server.sketch.HllStatsReader;
+import ru.practicum.server.storage.SegmentLogHitStorage;
+import ru.practicum.server.top.HeavyHitterStore;
+import ru.practicum.server.uri.UriIndex;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class StatsServiceImpl implements StatsService {
     private final StatsRepository repository;
+    private final HitWriter hitWriter;
+    private final RollupStatsReader rollupStatsReader;
+    private final HllStatsReader hllStatsReader;
+    private final IpBitmapStatsReader ipBitmapStatsReader;
+    private final HistogramReader histogramReader;
+    private final WriteBehindIngestor writeBehindIngestor;
+    private final CounterStore counterStore;
+    private final SegmentLogHitStorage segmentLog;
+    private final HotHitStore hotHitStore;
+    private final HeavyHitterStore heavyHitterStore;
+    private final StatsQueryCache queryCache;
+    private final UriIndex uriIndex;
+    private final SamplingPolicy samplingPolicy;
+    private final DuplicateFilter duplicateFilter;
+    private final Duration topExactWindow;
+    private final int histogramMaxBuckets;
+
+    public StatsServiceImpl(StatsRepository repository,
+                            HitWriter hitWriter,
+                            RollupStatsReader rollupStatsReader,
+                            HllStatsReader hllStatsReader,
+                            IpBitmapStatsReader ipBitmapStatsReader,
+                            HistogramReader histogramReader,
+                            ObjectProvider<WriteBehindIngestor> writeBehindIngestor,
+                            ObjectProvider<CounterStore> counterStore,
+                            ObjectProvider<SegmentLogHitStorage> segmentLog,
+                            ObjectProvider<HotHitStore> hotHitStore,
+                            ObjectProvider<HeavyHitterStore> heavyHitterStore,
+                            ObjectProvider<StatsQueryCache> queryCache,
+                            UriIndex uriIndex,
+                            ObjectProvider<SamplingPolicy> samplingPolicy,
+                            ObjectProvider<DuplicateFilter> duplicateFilter,
+                            @Value("${stats.top.exact-window-minutes:15}") long topExactWindowMinutes,
+                            @Value("${stats.histogram.max-buckets:10000}") int histogramMaxBuckets) {
+        this.repository = repository;
+        this.hitWriter = hitWriter;
+        this.rollupStatsReader = rollupStatsReader;
+        this.hllStatsReader = hllStatsReader;
+        this.ipBitmapStatsReader = ipBitmapStatsReader;
+        this.histogramReader = histogramReader;
+        this.writeBehindIngestor = writeBehindIngestor.getIfAvailable();
+        this.counterStore = counterStore.getIfAvailable();
+        this.segmentLog = segmentLog.getIfAvailable();
+        this.hotHitStore = hotHitStore.getIfAvailable();
+        this.heavyHitterStore = heavyHitterStore.getIfAvailable();
+        this.queryCache = queryCache.getIfAvailable();
+        this.uriIndex = uriIndex;
+        this.samplingPolicy = samplingPolicy.getIfAvailable();
+        this.duplicateFilter = duplicateFilter.getIfAvailable();
+        this.topExactWindow = Duration.ofMinutes(topExactWindowMinutes);
+        this.histogramMaxBuckets = histogramMaxBuckets;
+    }
 
     @Override
     @Transactional
     public EndpointHitDto create(EndpointHitDto endpointHitDto) {
-        return EndpointHitMapper.toEndpointHitDto(repository.save(EndpointHitMapper.toEndpointHit(endpointHitDto)));
+        EndpointHit endpointHit = EndpointHitMapper.toEndpointHit(endpointHitDto);
+        List<EndpointHit> admitted = admit(List.of(endpointHit));
+        if (admitted.isEmpty()) {
+            return endpointHitDto;
+        }
+        try {
+            if (writeBehindIngestor != null) {
+                writeBehindIngestor.accept(admitted);
+                return EndpointHitMapper.toEndpointHitDto(endpointHit);
+            }
+            return EndpointHitMapper.toEndpointHitDto(hitWriter.save(endpointHit));
+        } catch (RuntimeException e) {
+            release(admitted);
+            throw e;
+        }
+    }
+
+    @Override
+    public void createAll(List<EndpointHitDto> endpointHitDtos) {
+        List<EndpointHit> hits = admit(EndpointHitMapper.listToEndpointHit(endpointHitDtos));
+        try {
+            if (writeBehindIngestor != null) {
+                writeBehindIngestor.accept(hits);
+            } else {
+                hitWriter.write(hits);
+            }
+        } catch (RuntimeException e) {
+            release(hits);
+            throw e;
+        }
+    }
+
+    /**
+     * Sampling goes first, so the duplicate filter only reserves keys of hits that are going to be written; a write
+     * that fails gives them back, so the client can send the hits again.
+     */
+    private List<EndpointHit> admit(List<EndpointHit> hits) {
+        if (samplingPolicy != null) {
+            hits = samplingPolicy.sample(hits);
+        }
+        if (duplicateFilter != null) {
+            hits = duplicateFilter.filter(hits);
+        }
+        return hits;
+    }
+
+    private void release(List<EndpointHit> hits) {
+        if (duplicateFilter != null) {
+            duplicateFilter.release(hits);
+        }
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<ViewStatsDto> get(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
-        if (start.isAfter(end)) {
-            throw new DataException("Начало мероприятия не может быть позже окончания мероприятия.");
+    public List<ViewStatsDto> get(LocalDateTime start, LocalDateTime end, List<String> filter, boolean unique,
+                                  boolean approximate) {
+        checkRange(start, end);
+        List<String> uris = uriIndex.expand(filter);
+        if (uris != null && uris.isEmpty()) {
+            return List.of();
+        }
+        return ViewStatsMapper.listToDto(query(start, end, uris, unique, approximate));
+    }
+
+    /**
+     * Every uri is only scanned from its own {@code since} instead of from the earliest start of the whole list. A
+     * single {@code since} goes through the regular readers; otherwise the in-memory stores are asked once per
+     * {@code since}, and postgres answers all the pairs in one query. A uri listed more than once is counted from its
+     * earliest {@code since}.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewStatsDto> getSince(List<UriSinceDto> uris, LocalDateTime end, boolean unique,
+                                       boolean approximate) {
+        Map<String, LocalDateTime> since = new LinkedHashMap<>();
+        for (UriSinceDto uri : uris) {
+            checkRange(uri.getSince(), end);
+            for (String expanded : uriIndex.expand(List.of(uri.getUri()))) {
+                since.merge(expanded, uri.getSince(), (a, b) -> a.isBefore(b) ? a : b);
+            }
+        }
+        if (since.isEmpty()) {
+            return List.of();
+        }
+        Map<LocalDateTime, List<String>> bySince = new LinkedHashMap<>();
+        since.forEach((uri, start) -> bySince.computeIfAbsent(start, key -> new ArrayList<>()).add(uri));
+        if (bySince.size() == 1) {
+            Map.Entry<LocalDateTime, List<String>> only = bySince.entrySet().iterator().next();
+            return ViewStatsMapper.listToDto(query(only.getKey(), end, only.getValue(), unique, approximate));
+        }
+        LocalDateTime earliest = Collections.min(bySince.keySet());
+        boolean inMemory = segmentLog != null
+                || samplingPolicy == null && hotHitStore != null && hotHitStore.covers(earliest);
+        if (!inMemory) {
+            return ViewStatsMapper.listToDto(repository.getStatsSince(since, end, unique));
+        }
+        List<ViewStats> result = new ArrayList<>();
+        bySince.forEach((start, group) -> result.addAll(compute(start, end, group, unique, approximate)));
+        result.sort(Comparator.comparing(ViewStats::getHits, Comparator.reverseOrder()));
+        return ViewStatsMapper.listToDto(result);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EntityViewsDto getEntityViews(String type, EntityViewsRequestDto request) {
+        if (request.getIds().length == 0) {
+            return new EntityViewsDto(new long[0], new long[0]);
+        }
+        if (request.getSince() != null) {
+            return EntityViewsMapper.toDto(type, getSince(EntityViewsMapper.toUrisSince(type, request),
+                    request.getEnd(), request.isUnique(), request.isApproximate()));
+        }
+        if (request.getStart() == null) {
+            throw new DataException("Не задано начало периода.");
         }
-        if (unique) {
-            return ViewStatsMapper.listToDto(repository.getAllUniqueEndpointHitByUriIn(start, end, uris));
+        return EntityViewsMapper.toDto(type, get(request.getStart(), request.getEnd(),
+                EntityViewsMapper.toUris(type, request.getIds()), request.isUnique(), request.isApproximate()));
+    }
+
+    private List<ViewStats> query(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                  boolean approximate) {
+        if (queryCache != null) {
+            return queryCache.get(start, end, uris, unique, approximate,
+                    () -> compute(start, end, uris, unique, approximate));
+        }
+        return compute(start, end, uris, unique, approximate);
+    }
+
+    /**
+     * With sampling on, only the weighted postgres readers are used: the counters, the hot store and the HLL sketches
+     * count stored hits as is.
+     */
+    private List<ViewStats> compute(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                    boolean approximate) {
+        boolean sampled = samplingPolicy != null;
+        if (!sampled && uris != null && counterStore != null && counterStore.covers(start, end)) {
+            return counterStore.get(uris, unique);
+        }
+        if (!sampled && hotHitStore != null && hotHitStore.covers(start)) {
+            return hotHitStore.get(start, end, uris, unique);
+        }
+        if (segmentLog != null) {
+            return segmentLog.getStats(start, end, uris, unique);
+        }
+        if (unique && approximate && !sampled) {
+            return hllStatsReader.getUniqueHits(start, end, uris);
+        } else if (unique) {
+            return ipBitmapStatsReader.getUniqueHits(start, end, uris);
         } else {
-            return ViewStatsMapper.listToDto(repository.getAllEndpointHitsByUriIn(start, end, uris));
+            return rollupStatsReader.getHits(start, end, uris);
         }
     }
-}
 
+    /**
+     * Small windows and limits beyond the summary capacity are answered exactly, everything else from the
+     * heavy-hitter summaries.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewStatsDto> top(LocalDateTime start, LocalDateTime end, String app, int limit) {
+        checkRange(start, end);
+        if (heavyHitterStore != null && limit <= heavyHitterStore.getCapacity()
+                && Duration.between(start, end).compareTo(topExactWindow) > 0 && heavyHitterStore.covers(start, end)) {
+            return ViewStatsMapper.listToDto(heavyHitterStore.top(start, end, app, limit));
+        }
+        if (segmentLog != null) {
+            return ViewStatsMapper.listToDto(segmentLog.getStats(start, end, null, false).stream()
+                    .filter(viewStats -> app == null || app.equals(viewStats.getApp()))
+                    .limit(limit)
+                    .collect(Collectors.toList()));
+        }
+        return ViewStatsMapper.listToDto(repository.topHits(start, end, app, limit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public StatsHistogramDto histogram(LocalDateTime start, LocalDateTime end, List<String> filter,
+                                       HistogramInterval interval, boolean unique) {
+        checkRange(start, end);
+        if (interval.getUnit().between(interval.floor(start), interval.floor(end)) >= histogramMaxBuckets) {
+            throw new DataException("Слишком много интервалов гистограммы, максимум " + histogramMaxBuckets + ".");
+        }
+        List<String> uris = uriIndex.expand(filter);
+        if (uris != null && uris.isEmpty()) {
+            return new Histogram(start, end, interval).toDto();
+        }
+        if (segmentLog != null) {
+            return histogramReader.scan(segmentLog, start, end, uris, interval, unique);
+        }
+        return histogramReader.get(start, end, uris, interval, unique);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void stream(LocalDateTime start, LocalDateTime end, List<String> filter, boolean unique,
+                       Consumer<ViewStatsDto> consumer) {
+        checkRange(start, end);
+        List<String> uris = uriIndex.expand(filter);
+        if (uris != null && uris.isEmpty()) {
+            return;
+        }
+        if (segmentLog != null) {
+            segmentLog.getStats(start, end, uris, unique)
+                    .forEach(viewStats -> consumer.accept(ViewStatsMapper.toViewStatsDto(viewStats)));
+            return;
+        }
+        repository.streamStats(start, end, uris, unique,
+                viewStats -> consumer.accept(ViewStatsMapper.toViewStatsDto(viewStats)));
+    }
 
+    private void checkRange(LocalDateTime start, LocalDateTime end) {
+        if (start.isAfter(end)) {
+            throw new DataException("Начало мероприятия не может быть позже окончания мероприятия.");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ru.practicum.server.sketch;
+
+import java.nio.charset.StandardCharsets;
+
+public final class Hashing {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    public static long hash64(String value) {
+        long hash = FNV_OFFSET;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    public static long hash64(String first, String second) {
+        return mix(hash64(first) * 31 + hash64(second));
+    }
+
+    public static long hash64(String first, String second, String third) {
+        return mix(hash64(first, second) * 31 + hash64(third));
+    }
+
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
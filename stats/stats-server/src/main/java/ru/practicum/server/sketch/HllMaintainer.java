@@ -0,0 +1,167 @@
+package ru.practicum.server.sketch;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.server.cache.StatsQueryCache;
+import ru.practicum.server.ingest.DirtyHours;
+import ru.practicum.server.ingest.HitListener;
+import ru.practicum.server.ingest.PendingIncrements;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.repository.DirtyHourRepository;
+import ru.practicum.server.repository.HllRepository;
+import ru.practicum.server.rollup.RollupGranularity;
+import ru.practicum.server.rollup.RollupKey;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Collects hourly sketch increments in memory once the ingest transaction commits and merges them into the stored
+ * sketches on a schedule, so ingestion never waits on sketch row locks. Increments not yet flushed are not visible
+ * to readers; the hours they belong to are kept in {@link DirtyHours}, and sketches of those hours are rebuilt from
+ * raw hits on startup if the process died before flushing them.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.storage", havingValue = "postgres", matchIfMissing = true)
+public class HllMaintainer implements HitListener, SmartLifecycle {
+    private final HllRepository hllRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final DirtyHours dirtyHours;
+    private final StatsQueryCache queryCache;
+    private final PendingIncrements<RollupKey, HyperLogLog> pending = new PendingIncrements<>((sketch, other) -> {
+        sketch.merge(other);
+        return sketch;
+    });
+
+    private volatile boolean running;
+
+    public HllMaintainer(HllRepository hllRepository, TransactionTemplate transactionTemplate,
+                         DirtyHourRepository dirtyHourRepository, ObjectProvider<StatsQueryCache> queryCache,
+                         MeterRegistry meterRegistry) {
+        this.hllRepository = hllRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.dirtyHours = new DirtyHours(dirtyHourRepository, "hll");
+        this.queryCache = queryCache.getIfAvailable();
+        Gauge.builder("stats.uniques.pending", pending, PendingIncrements::size)
+                .tag("index", "hll")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        Map<RollupKey, HyperLogLog> increments = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            if (hit.getTimestamp() == null || hit.getIp() == null) {
+                continue;
+            }
+            RollupKey key = new RollupKey(hit.getApp(), hit.getUri(), RollupGranularity.HOUR.floor(hit.getTimestamp()));
+            increments.computeIfAbsent(key, k -> new HyperLogLog()).add(hit.getIp());
+        }
+        if (!increments.isEmpty()) {
+            dirtyHours.record(buckets(increments.keySet()), () -> pending.add(increments));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.uniques.flush-ms:1000}")
+    public void flush() {
+        Map<RollupKey, HyperLogLog> increments = pending.drain();
+        if (increments.isEmpty()) {
+            dirtyHours.flushed(() -> buckets(pending.keys()));
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> merge(increments));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сохранить {} HLL-скетчей, повтор при следующем сбросе", increments.size(), e);
+            // merging is idempotent, so sketches already merged with stored ones can be retried as is
+            pending.add(increments);
+            return;
+        }
+        dirtyHours.flushed(() -> buckets(pending.keys()));
+        if (queryCache != null) {
+            queryCache.uniquesFlushed(buckets(increments.keySet()));
+        }
+    }
+
+    /**
+     * Rebuilds the sketches of hours whose increments a previous process committed but never flushed.
+     */
+    private void rebuildUnflushed() {
+        List<LocalDateTime> hours = dirtyHours.unflushed();
+        for (LocalDateTime hour : hours) {
+            Map<RollupKey, HyperLogLog> sketches = new HashMap<>();
+            hllRepository.forEachDistinctIp(hour, hour.plusHours(1), null, (key, ip) -> {
+                if (ip != null) {
+                    sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(ip);
+                }
+            });
+            if (!sketches.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> merge(sketches));
+            }
+        }
+        dirtyHours.rebuilt(hours);
+        if (!hours.isEmpty()) {
+            log.info("HLL-скетчи пересобраны по сырым хитам за {} несброшенных часов", hours.size());
+        }
+    }
+
+    private static Set<LocalDateTime> buckets(Set<RollupKey> keys) {
+        return keys.stream().map(RollupKey::getBucket).collect(Collectors.toSet());
+    }
+
+    private void merge(Map<RollupKey, HyperLogLog> increments) {
+        Map<RollupKey, HyperLogLog> stored = hllRepository.lockSketches(new ArrayList<>(increments.keySet()));
+        increments.forEach((key, sketch) -> {
+            HyperLogLog current = stored.get(key);
+            if (current != null) {
+                sketch.merge(current);
+            }
+        });
+        hllRepository.saveSketches(increments);
+    }
+
+    /**
+     * Runs before ingestion starts, so nothing is in flight while unflushed hours are rebuilt.
+     */
+    @Override
+    public void start() {
+        try {
+            rebuildUnflushed();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось пересобрать несброшенные HLL-скетчи, повтор при следующем запуске", e);
+        }
+        running = true;
+    }
+
+    /**
+     * Runs after the write-behind buffer and the TCP listener have drained into the listeners.
+     */
+    @Override
+    public void stop() {
+        flush();
+        running = false;
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 6144;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,53 @@
+package ru.practicum.server.sketch;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.repository.HllRepository;
+import ru.practicum.server.rollup.RollupGranularity;
+import ru.practicum.server.rollup.TimeRange;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate unique counts: hourly sketches inside the window are merged, and the distinct ips of the ragged
+ * edges are added to the merged sketch straight from raw hits.
+ */
+@Component
+@RequiredArgsConstructor
+public class HllStatsReader {
+    private final HllRepository hllRepository;
+
+    public List<ViewStats> getUniqueHits(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        LocalDateTime endExclusive = TimeRange.exclusiveEnd(end);
+        LocalDateTime alignedFrom = RollupGranularity.HOUR.ceil(start);
+        LocalDateTime alignedTo = RollupGranularity.HOUR.floor(endExclusive);
+        Map<List<String>, HyperLogLog> sketches = new HashMap<>();
+        if (alignedFrom.isBefore(alignedTo)) {
+            hllRepository.forEachSketch(alignedFrom, alignedTo, uris, (key, sketch) ->
+                    sketches.computeIfAbsent(List.of(key.getApp(), key.getUri()), k -> new HyperLogLog()).merge(sketch));
+            addEdge(sketches, start, alignedFrom, uris);
+            addEdge(sketches, alignedTo, endExclusive, uris);
+        } else {
+            addEdge(sketches, start, endExclusive, uris);
+        }
+        List<ViewStats> result = new ArrayList<>(sketches.size());
+        sketches.forEach((key, sketch) -> result.add(new ViewStats(key.get(0), key.get(1), sketch.estimate())));
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    private void addEdge(Map<List<String>, HyperLogLog> sketches, LocalDateTime from, LocalDateTime to,
+                         List<String> uris) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        hllRepository.forEachDistinctIp(from, to, uris, (key, ip) ->
+                sketches.computeIfAbsent(List.of(key.getApp(), key.getUri()), k -> new HyperLogLog()).add(ip));
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.server.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HyperLogLog sketch with 2^14 registers (about 0.8% standard error). Sketches are serialized sparsely while only a
+ * few registers are set, so buckets with little traffic stay small.
+ */
+public class HyperLogLog {
+    private static final int PRECISION = 14;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    private static final byte SPARSE = 1;
+    private static final byte DENSE = 2;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTERS];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public void add(String value) {
+        addHash(Hashing.hash64(value));
+    }
+
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toBytes() {
+        int used = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                used++;
+            }
+        }
+        if (used * 3 >= REGISTERS) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 + REGISTERS);
+            return buffer.put(DENSE).put(registers).array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + used * 3);
+        buffer.put(SPARSE);
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] != 0) {
+                buffer.putShort((short) i).put(registers[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return new HyperLogLog();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte format = buffer.get();
+        byte[] registers = new byte[REGISTERS];
+        if (format == DENSE) {
+            buffer.get(registers);
+        } else {
+            while (buffer.remaining() >= 3) {
+                registers[buffer.getShort() & 0xffff] = buffer.get();
+            }
+        }
+        return new HyperLogLog(registers);
+    }
+}
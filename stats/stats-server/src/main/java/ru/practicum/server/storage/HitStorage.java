@@ -0,0 +1,19 @@
+package ru.practicum.server.storage;
+
+import ru.practicum.server.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface HitStorage {
+    EndpointHit save(EndpointHit hit);
+
+    void saveAll(List<EndpointHit> hits);
+
+    void scanAll(Consumer<EndpointHit> consumer);
+
+    void scanSince(LocalDateTime from, Consumer<EndpointHit> consumer);
+
+    void forEachUri(Consumer<String> consumer);
+}
@@ -0,0 +1,66 @@
+package ru.practicum.server.storage;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.repository.StatsRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Component
+@ConditionalOnProperty(name = "stats.storage", havingValue = "postgres", matchIfMissing = true)
+public class PostgresHitStorage implements HitStorage {
+    private final StatsRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate cursor;
+
+    public PostgresHitStorage(StatsRepository repository,
+                              JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.cursor.setFetchSize(10_000);
+    }
+
+    @Override
+    public EndpointHit save(EndpointHit hit) {
+        return repository.saveHit(hit);
+    }
+
+    @Override
+    public void saveAll(List<EndpointHit> hits) {
+        repository.saveAllBatch(hits);
+    }
+
+    @Override
+    public void scanAll(Consumer<EndpointHit> consumer) {
+        scanSince(LocalDateTime.of(1, 1, 1, 0, 0), consumer);
+    }
+
+    @Override
+    public void scanSince(LocalDateTime from, Consumer<EndpointHit> consumer) {
+        transactionTemplate.executeWithoutResult(status ->
+                cursor.query("SELECT id, app, uri, ip, timestamp FROM stats_hits WHERE timestamp >= ?", rs -> {
+                    consumer.accept(EndpointHit.builder()
+                            .id(rs.getLong("id"))
+                            .app(rs.getString("app"))
+                            .uri(rs.getString("uri"))
+                            .ip(rs.getString("ip"))
+                            .timestamp(rs.getTimestamp("timestamp").toLocalDateTime())
+                            .build());
+                }, Timestamp.valueOf(from)));
+    }
+
+    @Override
+    public void forEachUri(Consumer<String> consumer) {
+        cursor.query("SELECT uri FROM stats_uris", rs -> {
+            consumer.accept(rs.getString("uri"));
+        });
+    }
+}
@@ -0,0 +1,220 @@
+package ru.practicum.server.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped segment of fixed-size hit records. A record only counts once its trailing marker is written,
+ * so a torn tail is ignored on replay. Records are grouped in blocks whose min and max timestamps form the time
+ * index; a sealed segment stores that index next to it and reopens without a scan.
+ */
+public class Segment implements AutoCloseable {
+    private static final int RECORD_SIZE = 32;
+    private static final int BLOCK_RECORDS = 4096;
+    private static final int MARKER = 0x48495453;
+
+    private final Path path;
+    private final long baseSequence;
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long[] blockMin;
+    private final long[] blockMax;
+    private final boolean sealed;
+    private volatile int count;
+
+    public Segment(Path path, long baseSequence, int capacity) throws IOException {
+        this.path = path;
+        this.baseSequence = baseSequence;
+        this.capacity = capacity;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        int blocks = (capacity + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        this.blockMin = new long[blocks];
+        this.blockMax = new long[blocks];
+        this.sealed = loadIndex();
+        if (!sealed) {
+            replay();
+        }
+    }
+
+    public boolean append(long epochSecond, int app, int uri, long ip) {
+        int index = count;
+        if (index == capacity) {
+            return false;
+        }
+        int offset = index * RECORD_SIZE;
+        buffer.putLong(offset, epochSecond);
+        buffer.putInt(offset + 8, app);
+        buffer.putInt(offset + 12, uri);
+        buffer.putLong(offset + 16, ip);
+        buffer.putInt(offset + 28, MARKER);
+        index(index, epochSecond);
+        count = index + 1;
+        return true;
+    }
+
+    public void scan(long fromSecond, long toSecond, RecordVisitor visitor) {
+        int limit = count;
+        for (int block = 0; block * BLOCK_RECORDS < limit; block++) {
+            if (blockMax[block] < fromSecond || blockMin[block] > toSecond) {
+                continue;
+            }
+            int end = Math.min(limit, (block + 1) * BLOCK_RECORDS);
+            for (int index = block * BLOCK_RECORDS; index < end; index++) {
+                int offset = index * RECORD_SIZE;
+                long epochSecond = buffer.getLong(offset);
+                if (epochSecond >= fromSecond && epochSecond <= toSecond) {
+                    visitor.visit(baseSequence + index, epochSecond, buffer.getInt(offset + 8),
+                            buffer.getInt(offset + 12), buffer.getLong(offset + 16));
+                }
+            }
+        }
+    }
+
+    public long minTimestamp() {
+        long min = Long.MAX_VALUE;
+        for (int block = 0; block * BLOCK_RECORDS < count; block++) {
+            min = Math.min(min, blockMin[block]);
+        }
+        return min;
+    }
+
+    public long maxTimestamp() {
+        long max = Long.MIN_VALUE;
+        for (int block = 0; block * BLOCK_RECORDS < count; block++) {
+            max = Math.max(max, blockMax[block]);
+        }
+        return max;
+    }
+
+    /**
+     * Drops the records from the first one {@code valid} rejects on, clearing their markers so the next replay does
+     * not bring them back; returns how many records were dropped.
+     */
+    public int truncate(RecordFilter valid) {
+        int limit = count;
+        for (int index = 0; index < limit; index++) {
+            int offset = index * RECORD_SIZE;
+            if (!valid.accept(buffer.getInt(offset + 8), buffer.getInt(offset + 12), buffer.getLong(offset + 16))) {
+                for (int dropped = index; dropped < limit; dropped++) {
+                    buffer.putInt(dropped * RECORD_SIZE + 28, 0);
+                }
+                count = index;
+                for (int kept = index - index % BLOCK_RECORDS; kept < index; kept++) {
+                    index(kept, buffer.getLong(kept * RECORD_SIZE));
+                }
+                force();
+                return limit - index;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Whether the segment was reopened from its stored index rather than replayed.
+     */
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    public boolean isFull() {
+        return count == capacity;
+    }
+
+    public long nextSequence() {
+        return baseSequence + count;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void force() {
+        buffer.force();
+    }
+
+    public void seal() throws IOException {
+        force();
+        int blocks = (count + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        ByteBuffer index = ByteBuffer.allocate(Integer.BYTES * 2 + blocks * Long.BYTES * 2);
+        index.putInt(count).putInt(blocks);
+        for (int block = 0; block < blocks; block++) {
+            index.putLong(blockMin[block]).putLong(blockMax[block]);
+        }
+        Path indexPath = indexPath();
+        Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        Files.write(tmp, index.array());
+        Files.move(tmp, indexPath, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(indexPath());
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void index(int index, long epochSecond) {
+        int block = index / BLOCK_RECORDS;
+        if (index % BLOCK_RECORDS == 0) {
+            blockMin[block] = epochSecond;
+            blockMax[block] = epochSecond;
+        } else {
+            blockMin[block] = Math.min(blockMin[block], epochSecond);
+            blockMax[block] = Math.max(blockMax[block], epochSecond);
+        }
+    }
+
+    private void replay() {
+        int index = 0;
+        while (index < capacity && buffer.getInt(index * RECORD_SIZE + 28) == MARKER) {
+            index(index, buffer.getLong(index * RECORD_SIZE));
+            index++;
+        }
+        count = index;
+    }
+
+    private boolean loadIndex() throws IOException {
+        Path indexPath = indexPath();
+        if (!Files.exists(indexPath)) {
+            return false;
+        }
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+        int records = index.getInt();
+        int blocks = index.getInt();
+        if (records > capacity || blocks != (records + BLOCK_RECORDS - 1) / BLOCK_RECORDS
+                || index.remaining() != blocks * Long.BYTES * 2) {
+            return false;
+        }
+        for (int block = 0; block < blocks; block++) {
+            blockMin[block] = index.getLong();
+            blockMax[block] = index.getLong();
+        }
+        count = records;
+        return true;
+    }
+
+    private Path indexPath() {
+        return path.resolveSibling(path.getFileName() + ".idx");
+    }
+
+    public interface RecordVisitor {
+        void visit(long sequence, long epochSecond, int app, int uri, long ip);
+    }
+
+    public interface RecordFilter {
+        boolean accept(int app, int uri, long ip);
+    }
+}
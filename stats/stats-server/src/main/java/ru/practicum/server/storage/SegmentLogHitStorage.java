@@ -0,0 +1,315 @@
+package ru.practicum.server.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Raw hit storage in append-only memory-mapped segment files. The active segment is fsynced periodically, rolled
+ * when full, and every segment is replayed on startup.
+ * <p>
+ * Strings are kept in a dictionary file that is forced before the segments, but the OS may write a mapped segment
+ * back earlier, so after a crash a replayed segment can hold records whose ids the dictionary lost. Such a segment
+ * is truncated at the first of them, as the ids would otherwise be given to other strings.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.storage", havingValue = "segment-log")
+public class SegmentLogHitStorage implements HitStorage, SmartLifecycle {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final long IPV4_TAG = 1L << 32;
+    private static final long NO_IP = -1L;
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final int retentionDays;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+    private StringDictionary dictionary;
+    private Segment active;
+    private volatile boolean running;
+
+    public SegmentLogHitStorage(@Value("${stats.segment-log.dir:stats-data/segments}") Path directory,
+                                @Value("${stats.segment-log.segment-records:2097152}") int segmentRecords,
+                                @Value("${stats.segment-log.retention-days:0}") int retentionDays) {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.retentionDays = retentionDays;
+    }
+
+    @Override
+    public synchronized EndpointHit save(EndpointHit hit) {
+        hit.setId(append(hit));
+        return hit;
+    }
+
+    @Override
+    public synchronized void saveAll(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            append(hit);
+        }
+    }
+
+    @Override
+    public void scanAll(Consumer<EndpointHit> consumer) {
+        scan(Long.MIN_VALUE, consumer);
+    }
+
+    @Override
+    public void scanSince(LocalDateTime from, Consumer<EndpointHit> consumer) {
+        scan(from.toEpochSecond(ZoneOffset.UTC), consumer);
+    }
+
+    @Override
+    public void forEachUri(Consumer<String> consumer) {
+        Set<Integer> uriIds = new HashSet<>();
+        for (Segment segment : segments) {
+            segment.scan(Long.MIN_VALUE, Long.MAX_VALUE, (sequence, epochSecond, app, uri, ip) -> uriIds.add(uri));
+        }
+        uriIds.forEach(uri -> consumer.accept(dictionary.value(uri)));
+    }
+
+    private void scan(long fromSecond, Consumer<EndpointHit> consumer) {
+        for (Segment segment : segments) {
+            segment.scan(fromSecond, Long.MAX_VALUE, (sequence, epochSecond, app, uri, ip) ->
+                    consumer.accept(EndpointHit.builder()
+                            .id(sequence)
+                            .app(dictionary.value(app))
+                            .uri(dictionary.value(uri))
+                            .ip(decodeIp(ip))
+                            .timestamp(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC))
+                            .build()));
+        }
+    }
+
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        Set<Integer> uriIds = null;
+        if (uris != null) {
+            uriIds = uris.stream()
+                    .map(dictionary::find)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            if (uriIds.isEmpty()) {
+                return List.of();
+            }
+        }
+        Set<Integer> filter = uriIds;
+        Map<Long, long[]> hits = new HashMap<>();
+        Map<Long, Set<Long>> ips = new HashMap<>();
+        long from = start.toEpochSecond(ZoneOffset.UTC);
+        long to = end.toEpochSecond(ZoneOffset.UTC);
+        for (Segment segment : segments) {
+            segment.scan(from, to, (sequence, epochSecond, app, uri, ip) -> {
+                if (filter != null && !filter.contains(uri)) {
+                    return;
+                }
+                long key = ((long) app << 32) | (uri & 0xffffffffL);
+                if (unique) {
+                    Set<Long> seen = ips.computeIfAbsent(key, k -> new HashSet<>());
+                    if (ip != NO_IP) {
+                        seen.add(ip);
+                    }
+                } else {
+                    hits.computeIfAbsent(key, k -> new long[1])[0]++;
+                }
+            });
+        }
+        List<ViewStats> result = new ArrayList<>();
+        if (unique) {
+            ips.forEach((key, set) -> result.add(toViewStats(key, set.size())));
+        } else {
+            hits.forEach((key, count) -> result.add(toViewStats(key, count[0])));
+        }
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.segment-log.fsync-ms:1000}")
+    public synchronized void fsync() {
+        if (!running) {
+            return;
+        }
+        try {
+            dictionary.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        active.force();
+    }
+
+    @Scheduled(cron = "${stats.segment-log.retention-cron:0 15 * * * *}")
+    public synchronized void retire() {
+        if (!running || retentionDays <= 0) {
+            return;
+        }
+        long threshold = LocalDateTime.now().minusDays(retentionDays).toEpochSecond(ZoneOffset.UTC);
+        for (Segment segment : segments) {
+            if (segment != active && segment.maxTimestamp() < threshold) {
+                try {
+                    segment.delete();
+                    segments.remove(segment);
+                    log.info("Сегмент {} удалён по сроку хранения", segment.getPath());
+                } catch (IOException e) {
+                    log.warn("Не удалось удалить сегмент {}", segment.getPath(), e);
+                }
+            }
+        }
+    }
+
+    private long append(EndpointHit hit) {
+        try {
+            if (active.isFull()) {
+                roll();
+            }
+            long sequence = active.nextSequence();
+            LocalDateTime timestamp = hit.getTimestamp() == null ? LocalDateTime.now() : hit.getTimestamp();
+            active.append(timestamp.toEpochSecond(ZoneOffset.UTC), dictionary.idOf(hit.getApp()),
+                    dictionary.idOf(hit.getUri()), encodeIp(hit.getIp()));
+            return sequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void roll() throws IOException {
+        dictionary.force();
+        active.seal();
+        active = openSegment(active.nextSequence());
+        segments.add(active);
+    }
+
+    private Segment openSegment(long baseSequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, baseSequence, SEGMENT_SUFFIX));
+        return new Segment(path, baseSequence, segmentRecords);
+    }
+
+    private long encodeIp(String ip) throws IOException {
+        if (ip == null) {
+            return NO_IP;
+        }
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length == 4) {
+            long value = 0;
+            for (String part : parts) {
+                if (part.isEmpty() || part.length() > 3 || !part.chars().allMatch(Character::isDigit)
+                        || (part.length() > 1 && part.charAt(0) == '0') || Integer.parseInt(part) > 255) {
+                    return dictionary.idOf(ip);
+                }
+                value = (value << 8) | Integer.parseInt(part);
+            }
+            return IPV4_TAG | value;
+        }
+        return dictionary.idOf(ip);
+    }
+
+    private String decodeIp(long ip) {
+        if (ip == NO_IP) {
+            return null;
+        }
+        if ((ip & IPV4_TAG) == 0) {
+            return dictionary.value((int) ip);
+        }
+        return ((ip >> 24) & 0xff) + "." + ((ip >> 16) & 0xff) + "." + ((ip >> 8) & 0xff) + "." + (ip & 0xff);
+    }
+
+    private ViewStats toViewStats(long key, long hits) {
+        return new ViewStats(dictionary.value((int) (key >>> 32)), dictionary.value((int) key), hits);
+    }
+
+    @Override
+    public synchronized void start() {
+        try {
+            Files.createDirectories(directory);
+            dictionary = new StringDictionary(directory.resolve("dictionary.dat"));
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                                && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long baseSequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length()));
+                Segment segment = new Segment(file, baseSequence, segmentRecords);
+                if (!segment.isSealed()) {
+                    dropUnknownIds(segment);
+                }
+                segments.add(segment);
+            }
+            if (segments.isEmpty()) {
+                segments.add(openSegment(1));
+            }
+            active = segments.get(segments.size() - 1);
+            log.info("Журнал хитов {}: восстановлено {} сегментов, следующий номер {}",
+                    directory, segments.size(), active.nextSequence());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        running = true;
+    }
+
+    private void dropUnknownIds(Segment segment) {
+        int known = dictionary.size();
+        int dropped = segment.truncate((app, uri, ip) -> app >= 0 && app < known && uri >= 0 && uri < known
+                && (ip == NO_IP || (ip & IPV4_TAG) != 0 || (ip >= 0 && ip < known)));
+        if (dropped > 0) {
+            log.warn("Сегмент {} обрезан на {} записей: они ссылаются на строки, которых нет в словаре",
+                    segment.getPath(), dropped);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        fsync();
+        running = false;
+        for (Segment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Не удалось закрыть сегмент {}", segment.getPath(), e);
+            }
+        }
+        try {
+            dictionary.close();
+        } catch (IOException e) {
+            log.warn("Не удалось закрыть словарь журнала хитов", e);
+        }
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 16384;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
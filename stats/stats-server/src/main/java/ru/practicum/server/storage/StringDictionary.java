@@ -0,0 +1,86 @@
+package ru.practicum.server.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only file of length-prefixed strings; the id of a string is its position in the file.
+ */
+public class StringDictionary implements AutoCloseable {
+    private final FileChannel channel;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    public StringDictionary(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        replay();
+    }
+
+    public synchronized int idOf(String value) throws IOException {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+        entry.putInt(bytes.length).put(bytes).flip();
+        while (entry.hasRemaining()) {
+            channel.write(entry, channel.size());
+        }
+        id = values.size();
+        values.add(value);
+        ids.put(value, id);
+        return id;
+    }
+
+    public synchronized Integer find(String value) {
+        return ids.get(value);
+    }
+
+    public synchronized String value(int id) {
+        return id < values.size() ? values.get(id) : null;
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void replay() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        while (position + Integer.BYTES <= size) {
+            length.clear();
+            channel.read(length, position);
+            int bytes = length.flip().getInt();
+            if (bytes < 0 || position + Integer.BYTES + bytes > size) {
+                break;
+            }
+            ByteBuffer value = ByteBuffer.allocate(bytes);
+            channel.read(value, position + Integer.BYTES);
+            String string = new String(value.array(), StandardCharsets.UTF_8);
+            ids.put(string, values.size());
+            values.add(string);
+            position += Integer.BYTES + bytes;
+        }
+        channel.truncate(position);
+    }
+}
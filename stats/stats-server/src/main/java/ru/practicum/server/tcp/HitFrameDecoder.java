@@ -0,0 +1,92 @@
+package ru.practicum.server.tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.HitWireFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+public class HitFrameDecoder extends MessageToMessageDecoder<ByteBuf> {
+    private final List<String> strings = new ArrayList<>();
+    private final int maxStrings;
+    private long lastEpochSecond;
+
+    public HitFrameDecoder(int maxStrings) {
+        this.maxStrings = maxStrings;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf frame, List<Object> out) {
+        byte type = frame.readByte();
+        switch (type) {
+            case HitWireFormat.FRAME_STRING:
+                defineString(frame);
+                break;
+            case HitWireFormat.FRAME_HITS:
+                out.add(readHits(frame));
+                break;
+            default:
+                throw new CorruptedFrameException("Unknown frame type " + type);
+        }
+    }
+
+    private void defineString(ByteBuf frame) {
+        int id = (int) HitWireFormat.readVarint(frame);
+        if (id != strings.size() || id >= maxStrings) {
+            throw new CorruptedFrameException("Unexpected string id " + id);
+        }
+        strings.add(readText(frame));
+    }
+
+    private List<EndpointHitDto> readHits(ByteBuf frame) {
+        long count = HitWireFormat.readVarint(frame);
+        if (count > frame.readableBytes()) {
+            throw new CorruptedFrameException("Too many hits in a frame: " + count);
+        }
+        List<EndpointHitDto> hits = new ArrayList<>((int) count);
+        for (int i = 0; i < count; i++) {
+            String app = string(HitWireFormat.readVarint(frame));
+            String uri = string(HitWireFormat.readVarint(frame));
+            String ip = readIp(frame);
+            lastEpochSecond += HitWireFormat.unzigzag(HitWireFormat.readVarint(frame));
+            hits.add(EndpointHitDto.builder()
+                    .app(app)
+                    .uri(uri)
+                    .ip(ip)
+                    .timestamp(LocalDateTime.ofEpochSecond(lastEpochSecond, 0, ZoneOffset.UTC))
+                    .build());
+        }
+        return hits;
+    }
+
+    private String readIp(ByteBuf frame) {
+        byte kind = frame.readByte();
+        if (kind == HitWireFormat.IP_V4) {
+            return frame.readUnsignedByte() + "." + frame.readUnsignedByte() + "." +
+                    frame.readUnsignedByte() + "." + frame.readUnsignedByte();
+        }
+        return readText(frame);
+    }
+
+    private String readText(ByteBuf frame) {
+        long length = HitWireFormat.readVarint(frame);
+        if (length > HitWireFormat.MAX_TEXT_BYTES || length > frame.readableBytes()) {
+            throw new CorruptedFrameException("Text of " + length + " bytes");
+        }
+        return frame.readCharSequence((int) length, StandardCharsets.UTF_8).toString();
+    }
+
+    private String string(long id) {
+        if (id < 0 || id >= strings.size()) {
+            throw new CorruptedFrameException("Unknown string id " + id);
+        }
+        return strings.get((int) id);
+    }
+}
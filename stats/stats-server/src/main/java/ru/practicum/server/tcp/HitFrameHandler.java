@@ -0,0 +1,58 @@
+package ru.practicum.server.tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.HitWireFormat;
+import ru.practicum.server.exception.IngestOverloadedException;
+import ru.practicum.server.ingest.HitValidator;
+import ru.practicum.server.isolation.Workload;
+import ru.practicum.server.service.StatsService;
+
+import java.util.List;
+
+/**
+ * Stores the hits of a frame and answers it. Hits failing the same validation as the HTTP endpoints are dropped and
+ * reported in the ACK; a frame whose valid hits could not be stored is answered with a NACK so the client resends it.
+ */
+@Slf4j
+public class HitFrameHandler extends SimpleChannelInboundHandler<List<EndpointHitDto>> {
+    private final StatsService service;
+    private final HitValidator validator;
+
+    public HitFrameHandler(StatsService service, HitValidator validator) {
+        this.service = service;
+        this.validator = validator;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, List<EndpointHitDto> hits) {
+        List<EndpointHitDto> valid = validator.valid(hits, ctx.channel().remoteAddress());
+        int rejected = hits.size() - valid.size();
+        ByteBuf reply = ctx.alloc().buffer(11);
+        try {
+            if (!valid.isEmpty()) {
+                Workload.INGEST.wrap(() -> service.createAll(valid)).run();
+            }
+            reply.writeByte(HitWireFormat.FRAME_ACK);
+            HitWireFormat.writeVarint(reply, valid.size());
+            HitWireFormat.writeVarint(reply, rejected);
+        } catch (IngestOverloadedException e) {
+            reply.writeByte(HitWireFormat.FRAME_NACK);
+            HitWireFormat.writeVarint(reply, hits.size());
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить {} хитов от {}", valid.size(), ctx.channel().remoteAddress(), e);
+            reply.writeByte(HitWireFormat.FRAME_NACK);
+            HitWireFormat.writeVarint(reply, hits.size());
+        }
+        ctx.writeAndFlush(reply);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.warn("Закрытие TCP-соединения {}: {}", ctx.channel().remoteAddress(), cause.getMessage());
+        ctx.close();
+    }
+}
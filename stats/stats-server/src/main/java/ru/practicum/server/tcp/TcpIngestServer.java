@@ -0,0 +1,101 @@
+package ru.practicum.server.tcp;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.HitWireFormat;
+import ru.practicum.server.ingest.HitValidator;
+import ru.practicum.server.service.StatsService;
+
+
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.tcp.enabled", havingValue = "true")
+public class TcpIngestServer implements SmartLifecycle {
+    private final StatsService service;
+    private final HitValidator validator;
+    private final int port;
+    private final int ioThreads;
+    private final int writerThreads;
+    private final int maxStrings;
+    private final int maxFrameLength;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private EventExecutorGroup writerGroup;
+    private Channel serverChannel;
+
+    public TcpIngestServer(StatsService service,
+                           HitValidator validator,
+                           @Value("${stats.tcp.port:9191}") int port,
+                           @Value("${stats.tcp.io-threads:2}") int ioThreads,
+                           @Value("${stats.tcp.writer-threads:4}") int writerThreads,
+                           @Value("${stats.tcp.max-strings:1048576}") int maxStrings,
+                           @Value("${stats.tcp.max-frame-bytes:1048576}") int maxFrameLength) {
+        this.service = service;
+        this.validator = validator;
+        this.port = port;
+        this.ioThreads = ioThreads;
+        this.writerThreads = writerThreads;
+        this.maxStrings = maxStrings;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public void start() {
+        bossGroup = new NioEventLoopGroup(1);
+        workerGroup = new NioEventLoopGroup(ioThreads);
+        writerGroup = new DefaultEventExecutorGroup(writerThreads);
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline()
+                                .addLast(new LengthFieldBasedFrameDecoder(maxFrameLength, 0,
+                                        HitWireFormat.LENGTH_FIELD_BYTES, 0, HitWireFormat.LENGTH_FIELD_BYTES))
+                                .addLast(new LengthFieldPrepender(HitWireFormat.LENGTH_FIELD_BYTES))
+                                .addLast(new HitFrameDecoder(maxStrings))
+                                .addLast(writerGroup, new HitFrameHandler(service, validator));
+                    }
+                });
+        serverChannel = bootstrap.bind(port).syncUninterruptibly().channel();
+        log.info("TCP-приём статистики слушает порт {}", port);
+    }
+
+    @Override
+    public void stop() {
+        serverChannel.close().syncUninterruptibly();
+        workerGroup.shutdownGracefully().syncUninterruptibly();
+        writerGroup.shutdownGracefully().syncUninterruptibly();
+        bossGroup.shutdownGracefully().syncUninterruptibly();
+        serverChannel = null;
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 2048;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return serverChannel != null;
+    }
+}
@@ -0,0 +1,210 @@
+package ru.practicum.server.top;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.server.ingest.HitListener;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.partition.RetentionListener;
+import ru.practicum.server.rollup.RollupGranularity;
+import ru.practicum.server.rollup.TimeRange;
+import ru.practicum.server.storage.HitStorage;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Heavy hitters per app kept in Space-Saving summaries for every minute and every hour bucket. A top-N query merges
+ * whole hours plus the minutes of the ragged edges, so its cost depends on the summary capacity and the number of
+ * buckets, not on how many distinct uris were hit. The window is resolved to whole minutes.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.top.enabled", havingValue = "true", matchIfMissing = true)
+public class HeavyHitterStore implements HitListener, RetentionListener, SmartLifecycle {
+    private final HitStorage hitStorage;
+    private final int capacity;
+    private final int minuteRetentionHours;
+    private final int retentionDays;
+    private final NavigableMap<LocalDateTime, Map<String, SpaceSaving>> minutes = new TreeMap<>();
+    private final NavigableMap<LocalDateTime, Map<String, SpaceSaving>> hours = new TreeMap<>();
+
+    private LocalDateTime minutesFrom = LocalDateTime.MAX;
+    private LocalDateTime hoursFrom = LocalDateTime.MAX;
+    private volatile boolean running;
+
+    public HeavyHitterStore(HitStorage hitStorage,
+                            @Value("${stats.top.capacity:512}") int capacity,
+                            @Value("${stats.top.minute-retention-hours:24}") int minuteRetentionHours,
+                            @Value("${stats.top.retention-days:7}") int retentionDays) {
+        this.hitStorage = hitStorage;
+        this.capacity = capacity;
+        this.minuteRetentionHours = minuteRetentionHours;
+        this.retentionDays = retentionDays;
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offerAll(hits);
+                }
+            });
+        } else {
+            offerAll(hits);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized boolean covers(LocalDateTime start, LocalDateTime end) {
+        if (!running) {
+            return false;
+        }
+        LocalDateTime from = RollupGranularity.MINUTE.floor(start);
+        LocalDateTime to = RollupGranularity.MINUTE.ceil(TimeRange.exclusiveEnd(end));
+        boolean alignedFrom = from.equals(RollupGranularity.HOUR.floor(from));
+        boolean alignedTo = to.equals(RollupGranularity.HOUR.floor(to));
+        return !from.isBefore(hoursFrom)
+                && (alignedFrom || !from.isBefore(minutesFrom))
+                && (alignedTo || !RollupGranularity.HOUR.floor(to).isBefore(minutesFrom));
+    }
+
+    public synchronized List<ViewStats> top(LocalDateTime start, LocalDateTime end, String app, int limit) {
+        LocalDateTime from = RollupGranularity.MINUTE.floor(start);
+        LocalDateTime to = RollupGranularity.MINUTE.ceil(TimeRange.exclusiveEnd(end));
+        LocalDateTime alignedFrom = RollupGranularity.HOUR.ceil(from);
+        LocalDateTime alignedTo = RollupGranularity.HOUR.floor(to);
+        Map<String, Map<String, Long>> totals = new HashMap<>();
+        if (alignedFrom.isBefore(alignedTo)) {
+            merge(totals, hours.subMap(alignedFrom, alignedTo), app);
+            merge(totals, minutes.subMap(from, alignedFrom), app);
+            merge(totals, minutes.subMap(alignedTo, to), app);
+        } else {
+            merge(totals, minutes.subMap(from, to), app);
+        }
+        PriorityQueue<ViewStats> best = new PriorityQueue<>(limit + 1, Comparator.comparing(ViewStats::getHits));
+        totals.forEach((appName, uris) -> uris.forEach((uri, hits) -> {
+            if (best.size() < limit || best.peek().getHits() < hits) {
+                best.add(new ViewStats(appName, uri, hits));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }));
+        List<ViewStats> result = new ArrayList<>(best);
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.top.evict-ms:60000}")
+    public synchronized void evict() {
+        if (!running) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        minutesFrom = max(minutesFrom, RollupGranularity.HOUR.floor(now.minusHours(minuteRetentionHours)));
+        hoursFrom = max(hoursFrom, RollupGranularity.HOUR.floor(now.minusDays(retentionDays)));
+        minutes.headMap(minutesFrom).clear();
+        hours.headMap(hoursFrom).clear();
+    }
+
+    @Override
+    public synchronized void retired(LocalDateTime threshold) {
+        LocalDateTime from = RollupGranularity.HOUR.ceil(threshold);
+        minutesFrom = max(minutesFrom, from);
+        hoursFrom = max(hoursFrom, from);
+        minutes.headMap(minutesFrom).clear();
+        hours.headMap(hoursFrom).clear();
+    }
+
+    private void merge(Map<String, Map<String, Long>> totals,
+                       SortedMap<LocalDateTime, Map<String, SpaceSaving>> buckets, String app) {
+        for (Map<String, SpaceSaving> bucket : buckets.values()) {
+            bucket.forEach((appName, summary) -> {
+                if (app == null || app.equals(appName)) {
+                    Map<String, Long> uris = totals.computeIfAbsent(appName, k -> new HashMap<>());
+                    summary.forEach((uri, hits) -> uris.merge(uri, hits, Long::sum));
+                }
+            });
+        }
+    }
+
+    private synchronized void offerAll(List<EndpointHit> hits) {
+        if (!running) {
+            return;
+        }
+        for (EndpointHit hit : hits) {
+            offer(hit);
+        }
+    }
+
+    private void offer(EndpointHit hit) {
+        if (hit.getTimestamp() == null) {
+            return;
+        }
+        LocalDateTime minute = RollupGranularity.MINUTE.floor(hit.getTimestamp());
+        LocalDateTime hour = RollupGranularity.HOUR.floor(minute);
+        if (!minute.isBefore(minutesFrom)) {
+            summary(minutes, minute, hit.getApp()).offer(hit.getUri(), hit.getWeight());
+        }
+        if (!hour.isBefore(hoursFrom)) {
+            summary(hours, hour, hit.getApp()).offer(hit.getUri(), hit.getWeight());
+        }
+    }
+
+    private SpaceSaving summary(NavigableMap<LocalDateTime, Map<String, SpaceSaving>> buckets,
+                                LocalDateTime bucket, String app) {
+        return buckets.computeIfAbsent(bucket, k -> new HashMap<>())
+                .computeIfAbsent(app, k -> new SpaceSaving(capacity));
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    @Override
+    public void start() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (this) {
+            minutesFrom = RollupGranularity.HOUR.floor(now.minusHours(minuteRetentionHours));
+            hoursFrom = RollupGranularity.HOUR.floor(now.minusDays(retentionDays));
+            running = true;
+            hitStorage.scanSince(hoursFrom, this::offer);
+        }
+        log.info("Сводки популярных uri загружены: {} часовых и {} минутных корзин", hours.size(), minutes.size());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 8192;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
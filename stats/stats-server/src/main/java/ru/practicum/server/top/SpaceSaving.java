@@ -0,0 +1,88 @@
+package ru.practicum.server.top;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Space-Saving summary of at most {@code capacity} keys. Counters live in an indexed min-heap, so both an increment
+ * and the eviction of the smallest counter cost O(log capacity). Reported counts are upper bounds.
+ */
+class SpaceSaving {
+    private final String[] keys;
+    private final long[] counts;
+    private final Map<String, Integer> positions;
+    private int size;
+
+    SpaceSaving(int capacity) {
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    void offer(String key, long increment) {
+        Integer index = positions.get(key);
+        if (index != null) {
+            counts[index] += increment;
+            siftDown(index);
+        } else if (size < keys.length) {
+            keys[size] = key;
+            counts[size] = increment;
+            positions.put(key, size);
+            siftUp(size++);
+        } else {
+            positions.remove(keys[0]);
+            keys[0] = key;
+            counts[0] += increment;
+            positions.put(key, 0);
+            siftDown(0);
+        }
+    }
+
+    void forEach(ObjLongConsumer<String> consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(keys[i], counts[i]);
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (counts[parent] <= counts[index]) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        long count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+}
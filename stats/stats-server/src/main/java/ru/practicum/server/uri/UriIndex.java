@@ -0,0 +1,88 @@
+package ru.practicum.server.uri;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.server.ingest.HitListener;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.storage.HitStorage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sorted set of every known uri, used to expand wildcard filters: all uris with a given prefix form one contiguous
+ * range, so a pattern costs a logarithmic seek plus the number of matches. Uris are added as hits are written and
+ * never removed, a uri without hits in the requested range simply yields nothing.
+ */
+@Component
+@Slf4j
+public class UriIndex implements HitListener, SmartLifecycle {
+    private final HitStorage hitStorage;
+    private final ConcurrentSkipListSet<String> uris = new ConcurrentSkipListSet<>();
+    private volatile boolean running;
+
+    public UriIndex(HitStorage hitStorage) {
+        this.hitStorage = hitStorage;
+    }
+
+    /**
+     * Replaces wildcard patterns with the matching known uris; plain uris and a {@code null} list are kept as is.
+     */
+    public List<String> expand(List<String> filter) {
+        if (filter == null || filter.stream().noneMatch(UriPattern::isPattern)) {
+            return filter;
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (String uri : filter) {
+            if (!UriPattern.isPattern(uri)) {
+                result.add(uri);
+                continue;
+            }
+            UriPattern pattern = UriPattern.of(uri);
+            for (String candidate : uris.tailSet(pattern.getPrefix())) {
+                if (!candidate.startsWith(pattern.getPrefix())) {
+                    break;
+                }
+                if (pattern.matches(candidate)) {
+                    result.add(candidate);
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            if (hit.getUri() != null) {
+                uris.add(hit.getUri());
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        hitStorage.forEachUri(uris::add);
+        running = true;
+        log.info("Индекс uri загружен: {} uri", uris.size());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 8192;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.practicum.server.uri;
+
+import java.util.regex.Pattern;
+
+/**
+ * Uri filter with {@code *} wildcards, for example {@code /events/*}. The part before the first wildcard is a literal
+ * prefix used to narrow the candidates through an ordered index; the rest is checked against the whole pattern.
+ */
+public final class UriPattern {
+    private static final char WILDCARD = '*';
+
+    private final String prefix;
+    private final Pattern regex;
+
+    private UriPattern(String pattern) {
+        int wildcard = pattern.indexOf(WILDCARD);
+        this.prefix = pattern.substring(0, wildcard);
+        this.regex = wildcard == pattern.length() - 1 ? null : toRegex(pattern);
+    }
+
+    public static boolean isPattern(String uri) {
+        return uri != null && uri.indexOf(WILDCARD) >= 0;
+    }
+
+    public static UriPattern of(String pattern) {
+        return new UriPattern(pattern);
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Whether a uri that already starts with the prefix matches the pattern.
+     */
+    public boolean matches(String uri) {
+        return regex == null || regex.matcher(uri).matches();
+    }
+
+    private static Pattern toRegex(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        int from = 0;
+        int wildcard;
+        while ((wildcard = pattern.indexOf(WILDCARD, from)) >= 0) {
+            regex.append(Pattern.quote(pattern.substring(from, wildcard))).append(".*");
+            from = wildcard + 1;
+        }
+        return Pattern.compile(regex.append(Pattern.quote(pattern.substring(from))).toString(), Pattern.DOTALL);
+    }
+}
@@ -1,5 +1,3 @@
-DROP TABLE IF EXISTS stats;
-
 CREATE TABLE IF NOT EXISTS stats(
     id        BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
     app       VARCHAR(40),
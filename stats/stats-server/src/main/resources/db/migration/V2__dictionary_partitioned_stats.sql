@@ -0,0 +1,200 @@
+-- A stats table that still stores app, uri and ip as text, plain or range-partitioned, is renamed together with its
+-- partitions, indexes and identity sequence, so the current schema can be created next to it and filled from it.
+DO $$
+DECLARE
+    rel RECORD;
+    seq TEXT;
+BEGIN
+    IF to_regclass('stats') IS NULL OR EXISTS(SELECT 1 FROM information_schema.columns
+                                              WHERE table_schema = current_schema()
+                                                AND table_name = 'stats' AND column_name = 'app_id') THEN
+        RETURN;
+    END IF;
+    seq := pg_get_serial_sequence('stats', 'id');
+    IF seq IS NOT NULL THEN
+        EXECUTE format('ALTER SEQUENCE %s RENAME TO stats_legacy_id_seq', seq);
+    END IF;
+    FOR rel IN SELECT c.relname FROM pg_index x
+                   JOIN pg_class c ON c.oid = x.indexrelid
+               WHERE x.indrelid = 'stats'::regclass
+                  OR x.indrelid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = 'stats'::regclass) LOOP
+        EXECUTE format('ALTER INDEX %I RENAME TO %I', rel.relname, 'legacy_' || rel.relname);
+    END LOOP;
+    FOR rel IN SELECT c.relname FROM pg_inherits i
+                   JOIN pg_class c ON c.oid = i.inhrelid
+               WHERE i.inhparent = 'stats'::regclass LOOP
+        EXECUTE format('ALTER TABLE %I RENAME TO %I', rel.relname, 'legacy_' || rel.relname);
+    END LOOP;
+    ALTER TABLE stats RENAME TO stats_legacy;
+END $$;
+
+CREATE TABLE IF NOT EXISTS stats_apps(
+    id   SERIAL PRIMARY KEY,
+    name VARCHAR(40) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS stats_uris(
+    id  SERIAL PRIMARY KEY,
+    uri VARCHAR(40) NOT NULL UNIQUE
+);
+
+CREATE INDEX IF NOT EXISTS stats_uris_uri_pattern_idx ON stats_uris (uri varchar_pattern_ops);
+
+CREATE TABLE IF NOT EXISTS stats_ips(
+    id SERIAL PRIMARY KEY,
+    ip INET NOT NULL UNIQUE
+);
+
+CREATE SEQUENCE IF NOT EXISTS stats_id_seq;
+
+CREATE TABLE IF NOT EXISTS stats(
+    id        BIGINT NOT NULL DEFAULT nextval('stats_id_seq'),
+    app_id    INTEGER,
+    uri_id    INTEGER,
+    ip_id     INTEGER,
+    timestamp TIMESTAMP WITHOUT TIME ZONE,
+    weight    INTEGER NOT NULL DEFAULT 1,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+ALTER TABLE stats ADD COLUMN IF NOT EXISTS weight INTEGER NOT NULL DEFAULT 1;
+
+CREATE TABLE IF NOT EXISTS stats_default PARTITION OF stats DEFAULT;
+
+CREATE INDEX IF NOT EXISTS stats_timestamp_idx ON stats (timestamp);
+CREATE INDEX IF NOT EXISTS stats_uri_timestamp_idx ON stats (uri_id, timestamp);
+
+DROP VIEW IF EXISTS stats_hits;
+
+CREATE VIEW stats_hits AS
+SELECT s.id, a.name AS app, u.uri, host(i.ip) AS ip, s.timestamp, s.weight
+FROM stats s
+         JOIN stats_apps a ON a.id = s.app_id
+         JOIN stats_uris u ON u.id = s.uri_id
+         LEFT JOIN stats_ips i ON i.id = s.ip_id;
+
+CREATE TABLE IF NOT EXISTS stats_rollup_minute(
+    app     VARCHAR(40),
+    uri     VARCHAR(40),
+    bucket  TIMESTAMP WITHOUT TIME ZONE,
+    hits    BIGINT NOT NULL,
+    samples BIGINT NOT NULL,
+    PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS stats_rollup_minute_bucket_idx ON stats_rollup_minute (bucket);
+
+CREATE TABLE IF NOT EXISTS stats_rollup_hour(
+    app     VARCHAR(40),
+    uri     VARCHAR(40),
+    bucket  TIMESTAMP WITHOUT TIME ZONE,
+    hits    BIGINT NOT NULL,
+    samples BIGINT NOT NULL,
+    PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS stats_rollup_hour_bucket_idx ON stats_rollup_hour (bucket);
+
+-- rollups written before sampling counted every stored hit once
+ALTER TABLE stats_rollup_minute ADD COLUMN IF NOT EXISTS samples BIGINT;
+UPDATE stats_rollup_minute SET samples = hits WHERE samples IS NULL;
+ALTER TABLE stats_rollup_minute ALTER COLUMN samples SET NOT NULL;
+ALTER TABLE stats_rollup_hour ADD COLUMN IF NOT EXISTS samples BIGINT;
+UPDATE stats_rollup_hour SET samples = hits WHERE samples IS NULL;
+ALTER TABLE stats_rollup_hour ALTER COLUMN samples SET NOT NULL;
+
+CREATE TABLE IF NOT EXISTS stats_hll_hour(
+    app    VARCHAR(40),
+    uri    VARCHAR(40),
+    bucket TIMESTAMP WITHOUT TIME ZONE,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS stats_hll_hour_bucket_idx ON stats_hll_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS stats_ip_bitmap_hour(
+    app_id INTEGER,
+    uri_id INTEGER,
+    bucket TIMESTAMP WITHOUT TIME ZONE,
+    weight INTEGER NOT NULL DEFAULT 1,
+    bitmap BYTEA NOT NULL,
+    PRIMARY KEY (app_id, uri_id, bucket, weight)
+);
+
+CREATE INDEX IF NOT EXISTS stats_ip_bitmap_hour_bucket_idx ON stats_ip_bitmap_hour (bucket);
+
+DO $$
+BEGIN
+    IF EXISTS(SELECT 1 FROM information_schema.columns
+              WHERE table_schema = current_schema() AND table_name = 'stats_ip_bitmap_hour'
+                AND column_name = 'weight') THEN
+        RETURN;
+    END IF;
+    ALTER TABLE stats_ip_bitmap_hour ADD COLUMN weight INTEGER NOT NULL DEFAULT 1;
+    ALTER TABLE stats_ip_bitmap_hour DROP CONSTRAINT stats_ip_bitmap_hour_pkey;
+    ALTER TABLE stats_ip_bitmap_hour ADD PRIMARY KEY (app_id, uri_id, bucket, weight);
+END $$;
+
+-- ips that do not parse as INET are kept as hits without an ip, like hits sent without one
+CREATE FUNCTION pg_temp.stats_try_inet(value TEXT) RETURNS INET AS $$
+BEGIN
+    RETURN value::INET;
+EXCEPTION
+    WHEN invalid_text_representation THEN
+        RETURN NULL;
+END $$ LANGUAGE plpgsql IMMUTABLE;
+
+DO $$
+DECLARE
+    skipped BIGINT;
+BEGIN
+    IF to_regclass('stats_legacy') IS NULL THEN
+        RETURN;
+    END IF;
+    -- rows without app, uri or timestamp cannot be stored in the current schema, so they are set aside
+    CREATE TABLE stats_legacy_rejected (LIKE stats_legacy);
+    INSERT INTO stats_legacy_rejected
+    SELECT * FROM stats_legacy WHERE app IS NULL OR uri IS NULL OR timestamp IS NULL;
+    GET DIAGNOSTICS skipped = ROW_COUNT;
+    IF skipped = 0 THEN
+        DROP TABLE stats_legacy_rejected;
+    ELSE
+        RAISE WARNING 'Не перенесено хитов без app, uri или timestamp: %, они сохранены в stats_legacy_rejected',
+            skipped;
+    END IF;
+    INSERT INTO stats_apps (name)
+    SELECT DISTINCT app FROM stats_legacy WHERE app IS NOT NULL
+    ON CONFLICT (name) DO NOTHING;
+    INSERT INTO stats_uris (uri)
+    SELECT DISTINCT uri FROM stats_legacy WHERE uri IS NOT NULL
+    ON CONFLICT (uri) DO NOTHING;
+    INSERT INTO stats_ips (ip)
+    SELECT DISTINCT pg_temp.stats_try_inet(ip) FROM stats_legacy WHERE pg_temp.stats_try_inet(ip) IS NOT NULL
+    ON CONFLICT (ip) DO NOTHING;
+
+    INSERT INTO stats (id, app_id, uri_id, ip_id, timestamp)
+    SELECT l.id, a.id, u.id, i.id, l.timestamp
+    FROM stats_legacy l
+             JOIN stats_apps a ON a.name = l.app
+             JOIN stats_uris u ON u.uri = l.uri
+             LEFT JOIN stats_ips i ON i.ip = pg_temp.stats_try_inet(l.ip)
+    WHERE l.timestamp IS NOT NULL;
+    PERFORM setval('stats_id_seq', GREATEST((SELECT max(id) FROM stats), 1));
+
+    -- the baseline schema kept no rollups, later ones kept them complete for every bucket they have
+    INSERT INTO stats_rollup_minute (app, uri, bucket, hits, samples)
+    SELECT app, uri, date_trunc('minute', timestamp), count(*), count(*)
+    FROM stats_legacy
+    WHERE app IS NOT NULL AND uri IS NOT NULL AND timestamp IS NOT NULL
+    GROUP BY app, uri, date_trunc('minute', timestamp)
+    ON CONFLICT (app, uri, bucket) DO NOTHING;
+    INSERT INTO stats_rollup_hour (app, uri, bucket, hits, samples)
+    SELECT app, uri, date_trunc('hour', timestamp), count(*), count(*)
+    FROM stats_legacy
+    WHERE app IS NOT NULL AND uri IS NOT NULL AND timestamp IS NOT NULL
+    GROUP BY app, uri, date_trunc('hour', timestamp)
+    ON CONFLICT (app, uri, bucket) DO NOTHING;
+
+    DROP TABLE stats_legacy CASCADE;
+END $$;
@@ -0,0 +1,6 @@
+-- hours whose HLL sketch or ip bitmap increments were committed with the raw hits but may not be flushed yet
+CREATE TABLE IF NOT EXISTS stats_uniques_dirty(
+    kind   VARCHAR(16),
+    bucket TIMESTAMP WITHOUT TIME ZONE,
+    PRIMARY KEY (kind, bucket)
+);
@@ -0,0 +1,39 @@
+package ru.practicum.server.bulk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitCsvTest {
+    @Test
+    void unquotedEmptyFieldIsNullAndQuotedOneIsEmpty() {
+        assertThat(HitCsv.parse("app,,\"\",2024-01-01 10:00:00"))
+                .containsExactly("app", null, "", "2024-01-01 10:00:00");
+        assertThat(HitCsv.parse(",")).containsExactly(null, null);
+    }
+
+    @Test
+    void parsesQuotedSeparatorsAndDoubledQuotes() {
+        assertThat(HitCsv.parse("\"a,b\",\"say \"\"hi\"\"\",c"))
+                .containsExactly("a,b", "say \"hi\"", "c");
+    }
+
+    @Test
+    void quotesOnlyWhatNeedsQuoting() {
+        StringBuilder line = new StringBuilder();
+        HitCsv.append(line, "app", null, "", "a,b", "say \"hi\"");
+
+        assertThat(line).hasToString("app,,\"\",\"a,b\",\"say \"\"hi\"\"\"\n");
+    }
+
+    @Test
+    void appendedLineParsesBackToSameFields() {
+        String[] fields = {"ewm-main-service", "/events/1?from=0,size=10", null, "", "\"", "2001:db8::1"};
+        StringBuilder line = new StringBuilder();
+        HitCsv.append(line, fields);
+
+        assertThat(HitCsv.parse(line.substring(0, line.length() - 1))).containsExactlyElementsOf(Arrays.asList(fields));
+    }
+}
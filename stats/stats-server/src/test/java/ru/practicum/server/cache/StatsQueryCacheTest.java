@@ -0,0 +1,132 @@
+package ru.practicum.server.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class StatsQueryCacheTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 1, 11, 0);
+
+    private final StatsQueryCache cache = new StatsQueryCache(new SimpleMeterRegistry(), 100);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void answersRepeatedQueryFromCache() {
+        get(false);
+        List<ViewStats> cached = get(false);
+
+        assertThat(loads).hasValue(1);
+        assertThat(cached).extracting(ViewStats::getUri, ViewStats::getHits).containsExactly(tuple("/events/1", 5L));
+    }
+
+    @Test
+    void openWindowCountsCommittedHitsOnBothEndsOnly() {
+        get(false);
+
+        cache.onHits(List.of(hit("/events/1", START.minusSeconds(1)), hit("/events/1", START),
+                hit("/events/1", END), hit("/events/2", END)));
+
+        assertThat(get(false)).extracting(ViewStats::getHits).containsExactly(7L);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void lateHitIsAddedToWindowThatEndedBeforeNewerHits() {
+        get(false);
+        cache.onHits(List.of(hit("/events/1", END.plusDays(1))));
+
+        cache.onHits(List.of(hit("/events/1", END)));
+
+        assertThat(get(false)).extracting(ViewStats::getHits).containsExactly(6L);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void queryWithoutUriFilterReceivesHitsForEveryUri() {
+        cache.get(START, END, null, false, false, () -> {
+            loads.incrementAndGet();
+            return List.of(new ViewStats("ewm-main-service", "/events/1", 5L));
+        });
+
+        cache.onHits(List.of(hit("/events/1", START), hit("/events/2", START)));
+
+        assertThat(cache.get(START, END, null, false, false, List::of))
+                .extracting(ViewStats::getUri, ViewStats::getHits)
+                .containsExactly(tuple("/events/1", 6L), tuple("/events/2", 1L));
+    }
+
+    @Test
+    void matchingHitDropsCachedUniqueCount() {
+        get(true);
+        cache.onHits(List.of(hit("/events/2", START)));
+        get(true);
+        assertThat(loads).hasValue(1);
+
+        cache.onHits(List.of(hit("/events/1", START)));
+        get(true);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void resultComputedDuringCommitIsNotCached() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.onHits(List.of(hit("/events/1", START)));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(sync -> sync.beforeCommit(false));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        get(false);
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        get(false);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void retentionDropsWindowsStartingBeforeThreshold() {
+        get(false);
+        cache.retired(START.plusMinutes(1));
+        get(false);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private List<ViewStats> get(boolean unique) {
+        Supplier<List<ViewStats>> loader = () -> {
+            loads.incrementAndGet();
+            return List.of(new ViewStats("ewm-main-service", "/events/1", 5L));
+        };
+        return cache.get(START, END, List.of("/events/1"), unique, false, loader);
+    }
+
+    private static EndpointHit hit(String uri, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(timestamp)
+                .weight(1)
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.server.columnar;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.storage.HitStorage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class HotHitStoreTest {
+    private final LocalDateTime start = LocalDateTime.now().withNano(0).minusHours(2);
+    private final LocalDateTime end = start.plusHours(1);
+    private final HitStorage hitStorage = mock(HitStorage.class);
+    private final HotHitStore store = new HotHitStore(hitStorage, 7, 4, 2);
+
+    @AfterEach
+    void tearDown() {
+        if (store.isRunning()) {
+            store.stop();
+        }
+    }
+
+    @Test
+    void countsHitsOnBothEndsOfRangeAcrossChunks() {
+        store.start();
+        store.onHits(List.of(hit("/events/1", "10.0.0.1", start.minusSeconds(1)),
+                hit("/events/1", "10.0.0.1", start),
+                hit("/events/2", "10.0.0.1", start.plusMinutes(1)),
+                hit("/events/1", "10.0.0.2", start.plusMinutes(2)),
+                hit("/events/1", "10.0.0.3", start.plusMinutes(3)),
+                hit("/events/1", "10.0.0.4", end),
+                hit("/events/1", "10.0.0.5", end.plusSeconds(1))));
+
+        assertThat(store.get(start, end, null, false))
+                .extracting(ViewStats::getUri, ViewStats::getHits)
+                .containsExactly(tuple("/events/1", 4L), tuple("/events/2", 1L));
+        assertThat(store.get(start, end, List.of("/events/2", "/unknown"), false))
+                .extracting(ViewStats::getUri)
+                .containsExactly("/events/2");
+    }
+
+    @Test
+    void countsUniqueIpsSkippingHitsWithoutIp() {
+        store.start();
+        store.onHits(List.of(hit("/events/1", "10.0.0.1", start),
+                hit("/events/1", "10.0.0.1", start.plusMinutes(1)),
+                hit("/events/1", "2001:db8::1", start.plusMinutes(2)),
+                hit("/events/1", "2001:db8::1", start.plusMinutes(3)),
+                hit("/events/1", null, start.plusMinutes(4))));
+
+        assertThat(store.get(start, end, null, true))
+                .extracting(ViewStats::getHits)
+                .containsExactly(2L);
+        assertThat(store.get(start, end, null, false))
+                .extracting(ViewStats::getHits)
+                .containsExactly(5L);
+    }
+
+    @Test
+    void loadsWindowFromStorageAndCoversOnlyFromItsStart() {
+        doAnswer(invocation -> {
+            Consumer<EndpointHit> consumer = invocation.getArgument(1);
+            consumer.accept(hit("/events/1", "10.0.0.1", start));
+            return null;
+        }).when(hitStorage).scanSince(any(), any());
+        assertThat(store.covers(start)).isFalse();
+
+        store.start();
+
+        assertThat(store.get(start, end, null, false)).extracting(ViewStats::getHits).containsExactly(1L);
+        assertThat(store.covers(start)).isTrue();
+        assertThat(store.covers(LocalDateTime.now().minusDays(8))).isFalse();
+
+        store.retired(start.plusMinutes(1));
+
+        assertThat(store.covers(start)).isFalse();
+        assertThat(store.covers(start.plusMinutes(1))).isTrue();
+    }
+
+    private static EndpointHit hit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
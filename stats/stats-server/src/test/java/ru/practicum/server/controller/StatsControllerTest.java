@@ -0,0 +1,151 @@
+package ru.practicum.server.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.server.exception.ErrorHandler;
+import ru.practicum.server.exception.IngestOverloadedException;
+import ru.practicum.server.ingest.BatchLedger;
+import ru.practicum.server.ingest.HitValidator;
+import ru.practicum.server.service.StatsService;
+
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class StatsControllerTest {
+    private static final String HIT = "{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"ip\":\"%s\"," +
+            "\"timestamp\":\"2024-01-01 10:15:00\"}";
+
+    private final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+    private final StatsService service = mock(StatsService.class);
+    private final ConcurrentTaskExecutor executor = new ConcurrentTaskExecutor(Runnable::run);
+    private final MockMvc mvc = MockMvcBuilders
+            .standaloneSetup(new StatsController(service, new HitValidator(validatorFactory.getValidator()),
+                    new BatchLedger(new SimpleMeterRegistry(), 600, 1000), new ObjectMapper(), executor, executor))
+            .setControllerAdvice(new ErrorHandler())
+            .build();
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchStoresValidHitsAndSkipsInvalidOnes() throws Exception {
+        MvcResult result = mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + String.format(HIT, "10.0.0.1") + "," + String.format(HIT, "not-an-ip") + ","
+                                + String.format(HIT, "2001:db8::1") + "]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result)).andExpect(status().isCreated());
+
+        ArgumentCaptor<List<EndpointHitDto>> hits = ArgumentCaptor.forClass(List.class);
+        verify(service).createAll(hits.capture());
+        assertThat(hits.getValue()).extracting(EndpointHitDto::getIp).containsExactly("10.0.0.1", "2001:db8::1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void hitWithoutTimestampIsDroppedFromBatch() throws Exception {
+        MvcResult result = mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + String.format(HIT, "10.0.0.1") + ","
+                                + "{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"ip\":\"10.0.0.2\"}]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result)).andExpect(status().isCreated());
+
+        ArgumentCaptor<List<EndpointHitDto>> hits = ArgumentCaptor.forClass(List.class);
+        verify(service).createAll(hits.capture());
+        assertThat(hits.getValue()).extracting(EndpointHitDto::getIp).containsExactly("10.0.0.1");
+    }
+
+    @Test
+    void overloadedIngestAnswersTooManyRequests() throws Exception {
+        doThrow(new IngestOverloadedException("Очередь записи статистики переполнена"))
+                .when(service).createAll(anyList());
+
+        MvcResult result = mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + String.format(HIT, "10.0.0.1") + "]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result)).andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void repeatedBatchIdIsStoredOnce() throws Exception {
+        postBatch("batch-1").andExpect(status().isCreated());
+        postBatch("batch-1").andExpect(status().isCreated());
+        postBatch("batch-2").andExpect(status().isCreated());
+
+        verify(service, times(2)).createAll(anyList());
+    }
+
+    @Test
+    void failedBatchCanBeSentAgain() throws Exception {
+        doThrow(new IngestOverloadedException("Очередь записи статистики переполнена"))
+                .doNothing()
+                .when(service).createAll(anyList());
+
+        postBatch("batch-1").andExpect(status().isTooManyRequests());
+        postBatch("batch-1").andExpect(status().isCreated());
+
+        verify(service, times(2)).createAll(anyList());
+    }
+
+    @Test
+    void singleHitWithInvalidIpIsRejected() throws Exception {
+        mvc.perform(post("/hit")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format(HIT, "not-an-ip")))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void malformedBatchIsRejected() throws Exception {
+        mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{" + String.format(HIT, "10.0.0.1")))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(service);
+    }
+
+    private ResultActions postBatch(String batchId) throws Exception {
+        MvcResult result = mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("X-Batch-Id", batchId)
+                        .content("[" + String.format(HIT, "10.0.0.1") + "]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,134 @@
+package ru.practicum.server.counter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.storage.HitStorage;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class CounterStoreTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 1, 10, 0);
+    private static final LocalDateTime FROM = TIME.minusDays(1);
+    private static final LocalDateTime TO = TIME.plusDays(1);
+
+    @TempDir
+    Path dir;
+
+    private final HitStorage hitStorage = mock(HitStorage.class);
+    private CounterStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null && store.isRunning()) {
+            store.stop();
+        }
+    }
+
+    @Test
+    void rebuildsInBackgroundAndReplaysHitsCommittedDuringScan() throws InterruptedException {
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            Consumer<EndpointHit> consumer = invocation.getArgument(0);
+            consumer.accept(hit("10.0.0.1"));
+            scanning.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            consumer.accept(hit("10.0.0.2"));
+            return null;
+        }).when(hitStorage).scanAll(any());
+        store = new CounterStore(hitStorage, dir.resolve("counters.bin"), 16, 64);
+
+        store.start();
+        assertThat(scanning.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(store.covers(FROM, TO)).isFalse();
+
+        store.onHits(List.of(hit("10.0.0.3"), hit("10.0.0.1")));
+        release.countDown();
+
+        awaitReady();
+        assertThat(hits(false)).isEqualTo(4);
+        assertThat(hits(true)).isEqualTo(3);
+    }
+
+    @Test
+    void growsInsteadOfGoingOffline() throws InterruptedException {
+        store = new CounterStore(hitStorage, dir.resolve("counters.bin"), 16, 16);
+        store.start();
+        awaitReady();
+
+        for (int i = 0; i < 200; i++) {
+            store.onHits(List.of(hit("10.0.1." + i)));
+        }
+
+        assertThat(store.covers(FROM, TO)).isTrue();
+        assertThat(hits(true)).isEqualTo(200);
+    }
+
+    @Test
+    void cleanFileIsServedWithoutRebuild() throws InterruptedException {
+        Path path = dir.resolve("counters.bin");
+        store = new CounterStore(hitStorage, path, 16, 64);
+        store.start();
+        awaitReady();
+        store.onHits(List.of(hit("10.0.0.1")));
+        store.stop();
+
+        HitStorage unused = mock(HitStorage.class);
+        doAnswer(invocation -> {
+            throw new AssertionError("clean file must not be rebuilt");
+        }).when(unused).scanAll(any());
+        store = new CounterStore(unused, path, 16, 64);
+        store.start();
+        assertThat(store.covers(FROM, TO)).isTrue();
+        assertThat(hits(false)).isEqualTo(1);
+    }
+
+    @Test
+    void hitWithoutIpCountsAsViewButNotAsUnique() throws InterruptedException {
+        doAnswer(invocation -> {
+            Consumer<EndpointHit> consumer = invocation.getArgument(0);
+            consumer.accept(hit(null));
+            consumer.accept(hit("10.0.0.1"));
+            return null;
+        }).when(hitStorage).scanAll(any());
+        store = new CounterStore(hitStorage, dir.resolve("counters.bin"), 16, 64);
+        store.start();
+        awaitReady();
+
+        store.onHits(List.of(hit(null)));
+
+        assertThat(hits(false)).isEqualTo(3);
+        assertThat(hits(true)).isEqualTo(1);
+    }
+
+    private void awaitReady() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!store.covers(FROM, TO)) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private long hits(boolean unique) {
+        return store.get(List.of("/events"), unique).stream()
+                .mapToLong(ViewStats::getHits)
+                .sum();
+    }
+
+    private static EndpointHit hit(String ip) {
+        return EndpointHit.builder().app("ewm").uri("/events").ip(ip).timestamp(TIME).build();
+    }
+}
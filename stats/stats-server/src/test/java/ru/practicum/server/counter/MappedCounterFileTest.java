@@ -0,0 +1,69 @@
+package ru.practicum.server.counter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedCounterFileTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void countsHitsAndDistinctIps() throws IOException {
+        try (MappedCounterFile file = new MappedCounterFile(dir.resolve("counters.bin"), 16, 64)) {
+            file.clear();
+            file.record("ewm", "/events", "10.0.0.1", 100);
+            file.record("ewm", "/events", "10.0.0.1", 50);
+            file.record("ewm", "/events", "10.0.0.2", 200);
+
+            assertThat(file.hits("ewm", "/events", false)).isEqualTo(3);
+            assertThat(file.hits("ewm", "/events", true)).isEqualTo(2);
+            assertThat(file.minTimestamp()).isEqualTo(50);
+            assertThat(file.maxTimestamp()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void growKeepsCountsAndIsReopenedAtGrownSize() throws IOException {
+        Path path = dir.resolve("counters.bin");
+        MappedCounterFile file = new MappedCounterFile(path, 16, 16);
+        file.clear();
+        int ips = 0;
+        while (ips < 100) {
+            if (file.isFull()) {
+                file = file.grow(path);
+            }
+            assertThat(file.record("ewm", "/events", "10.0.0." + ips, ips)).isTrue();
+            ips++;
+        }
+        assertThat(file.fingerprintSlots()).isGreaterThanOrEqualTo(128);
+        assertThat(file.hits("ewm", "/events", true)).isEqualTo(100);
+        file.checkpoint();
+        file.close();
+
+        try (MappedCounterFile reopened = new MappedCounterFile(path, 16, 16)) {
+            assertThat(reopened.isValid()).isTrue();
+            assertThat(reopened.fingerprintSlots()).isGreaterThanOrEqualTo(128);
+            assertThat(reopened.hits("ewm", "/events", false)).isEqualTo(100);
+            assertThat(reopened.hits("ewm", "/events", true)).isEqualTo(100);
+            assertThat(reopened.record("ewm", "/events", "10.0.0.1", 0)).isTrue();
+            assertThat(reopened.hits("ewm", "/events", true)).isEqualTo(100);
+        }
+    }
+
+    @Test
+    void fullTableRefusesRecordsUntilGrown() throws IOException {
+        try (MappedCounterFile file = new MappedCounterFile(dir.resolve("counters.bin"), 16, 16)) {
+            file.clear();
+            for (int i = 0; i < 12; i++) {
+                file.record("ewm", "/events", "10.0.0." + i, i);
+            }
+            assertThat(file.isFull()).isTrue();
+            assertThat(file.record("ewm", "/events", "10.0.1.1", 0)).isFalse();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum.server.histogram;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.HistogramSeriesDto;
+import ru.practicum.dto.StatsHistogramDto;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.storage.HitStorage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class HistogramReaderTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 17, 30);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 1, 12, 5, 10);
+
+    private final HistogramReader reader = new HistogramReader(null, null, null);
+
+    @Test
+    void bucketsStartAtFlooredStartAndIncludeEnd() {
+        Histogram histogram = new Histogram(START, END, HistogramInterval.HOUR);
+
+        assertThat(histogram.size()).isEqualTo(3);
+        assertThat(histogram.index(START)).isZero();
+        assertThat(histogram.index(END)).isEqualTo(2);
+        assertThat(histogram.toDto().getStart()).isEqualTo(LocalDateTime.of(2024, 1, 1, 10, 0));
+    }
+
+    @Test
+    void hitsOutsideBucketsAreIgnored() {
+        Histogram histogram = new Histogram(START, END, HistogramInterval.HOUR);
+        histogram.add("app", "/events/1", START.minusHours(1), 1);
+        histogram.add("app", "/events/1", END.plusHours(1), 1);
+
+        assertThat(histogram.toDto().getSeries()).isEmpty();
+    }
+
+    @Test
+    void scanCountsHitsOnBothEndsOfRange() {
+        HitStorage storage = storage(hit("10.0.0.1", START),
+                hit("10.0.0.2", START.plusMinutes(50)),
+                hit("10.0.0.3", END),
+                hit("10.0.0.4", END.plusSeconds(1)));
+
+        StatsHistogramDto histogram = reader.scan(storage, START, END, null, HistogramInterval.HOUR, false);
+
+        assertThat(histogram.getSeries()).extracting(HistogramSeriesDto::getHits)
+                .containsExactly(new long[]{1, 1, 1});
+    }
+
+    @Test
+    void scanCountsUniqueIpsPerBucket() {
+        HitStorage storage = storage(hit("10.0.0.1", START),
+                hit("10.0.0.1", START.plusMinutes(1)),
+                hit("10.0.0.2", START.plusMinutes(2)),
+                hit("10.0.0.1", START.plusHours(1)));
+
+        StatsHistogramDto histogram = reader.scan(storage, START, END, List.of("/events/1"), HistogramInterval.HOUR,
+                true);
+
+        assertThat(histogram.getSeries()).extracting(HistogramSeriesDto::getHits)
+                .containsExactly(new long[]{2, 1, 0});
+    }
+
+    private static HitStorage storage(EndpointHit... hits) {
+        HitStorage storage = mock(HitStorage.class);
+        doAnswer(invocation -> {
+            LocalDateTime from = invocation.getArgument(0);
+            Consumer<EndpointHit> consumer = invocation.getArgument(1);
+            for (EndpointHit hit : hits) {
+                if (!hit.getTimestamp().isBefore(from)) {
+                    consumer.accept(hit);
+                }
+            }
+            return null;
+        }).when(storage).scanSince(any(), any());
+        return storage;
+    }
+
+    private static EndpointHit hit(String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
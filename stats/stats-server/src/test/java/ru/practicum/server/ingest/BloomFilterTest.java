@@ -0,0 +1,54 @@
+package ru.practicum.server.ingest;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.server.sketch.Hashing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+    private static final int KEYS = 100_000;
+
+    @Test
+    void neverForgetsAddedKeys() {
+        BloomFilter filter = new BloomFilter(KEYS, 0.01);
+        int reportedPresent = 0;
+        for (int i = 0; i < KEYS; i++) {
+            if (filter.put(key(i))) {
+                reportedPresent++;
+            }
+        }
+        assertThat(reportedPresent).isLessThan(KEYS / 100);
+        for (int i = 0; i < KEYS; i++) {
+            assertThat(filter.contains(key(i))).isTrue();
+            assertThat(filter.put(key(i))).isTrue();
+        }
+    }
+
+    @Test
+    void keepsFalsePositiveRateNearConfigured() {
+        BloomFilter filter = new BloomFilter(KEYS, 0.01);
+        for (int i = 0; i < KEYS; i++) {
+            filter.put(key(i));
+        }
+        int falsePositives = 0;
+        for (int i = KEYS; i < 2 * KEYS; i++) {
+            if (filter.contains(key(i))) {
+                falsePositives++;
+            }
+        }
+        assertThat((double) falsePositives / KEYS).isLessThan(0.015);
+    }
+
+    @Test
+    void containsDoesNotAdd() {
+        BloomFilter filter = new BloomFilter(1000, 0.001);
+
+        assertThat(filter.contains(key(1))).isFalse();
+        assertThat(filter.contains(key(1))).isFalse();
+        assertThat(filter.put(key(1))).isFalse();
+    }
+
+    private static long key(int i) {
+        return Hashing.hash64("ewm-main-service", "/events/" + i, "10.0.0.1");
+    }
+}
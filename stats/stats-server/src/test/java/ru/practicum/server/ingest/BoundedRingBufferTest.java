@@ -0,0 +1,105 @@
+package ru.practicum.server.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedRingBufferTest {
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        assertThat(new BoundedRingBuffer<>(1).capacity()).isEqualTo(2);
+        assertThat(new BoundedRingBuffer<>(8).capacity()).isEqualTo(8);
+        assertThat(new BoundedRingBuffer<>(9).capacity()).isEqualTo(16);
+    }
+
+    @Test
+    void rejectsOffersWhenFullAndAcceptsAgainAfterPoll() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+
+        assertThat(buffer.offer(4)).isFalse();
+        assertThat(buffer.size()).isEqualTo(4);
+        assertThat(buffer.poll()).isEqualTo(0);
+        assertThat(buffer.offer(4)).isTrue();
+    }
+
+    @Test
+    void batchIsAddedWholeOrNotAtAll() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+        assertThat(buffer.offerAll(List.of(0, 1, 2))).isTrue();
+
+        assertThat(buffer.offerAll(List.of(3, 4))).isFalse();
+        assertThat(buffer.size()).isEqualTo(3);
+        assertThat(buffer.offerAll(List.of(0, 1, 2, 3, 4))).isFalse();
+
+        assertThat(buffer.poll()).isEqualTo(0);
+        assertThat(buffer.offerAll(List.of(3, 4))).isTrue();
+        List<Integer> polled = new ArrayList<>();
+        buffer.drainTo(polled, Integer.MAX_VALUE);
+        assertThat(polled).containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void keepsOrderAcrossWrapAround() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+        List<Integer> polled = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+            if (buffer.size() == buffer.capacity()) {
+                buffer.drainTo(polled, 3);
+            }
+        }
+        buffer.drainTo(polled, Integer.MAX_VALUE);
+
+        assertThat(polled).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(buffer.poll()).isNull();
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    void concurrentProducersLoseNothing() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 20_000;
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        List<Integer> batch = new ArrayList<>();
+        while (seen.size() < producers * perProducer) {
+            batch.clear();
+            if (buffer.drainTo(batch, 256) == 0 && done.getCount() == 0 && buffer.size() == 0) {
+                break;
+            }
+            for (Integer value : batch) {
+                assertThat(seen.add(value)).isTrue();
+            }
+        }
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(seen).hasSize(producers * perProducer);
+    }
+}
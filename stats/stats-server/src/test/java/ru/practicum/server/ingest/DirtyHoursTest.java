@@ -0,0 +1,92 @@
+package ru.practicum.server.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.server.repository.DirtyHourRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class DirtyHoursTest {
+    private static final LocalDateTime HOUR = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private final DirtyHourRepository repository = mock(DirtyHourRepository.class);
+    private final DirtyHours dirtyHours = new DirtyHours(repository, "hll");
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void hourIsMarkedOnceAndUnmarkedAfterFlush() {
+        AtomicInteger applied = new AtomicInteger();
+        dirtyHours.record(Set.of(HOUR), applied::incrementAndGet);
+        dirtyHours.record(Set.of(HOUR), applied::incrementAndGet);
+
+        dirtyHours.flushed(Set::of);
+
+        assertThat(applied).hasValue(2);
+        verify(repository, times(1)).mark("hll", Set.of(HOUR));
+        verify(repository).unmark("hll", List.of(HOUR));
+    }
+
+    @Test
+    void hourWithPendingIncrementsStaysMarked() {
+        dirtyHours.record(Set.of(HOUR), () -> {
+        });
+
+        dirtyHours.flushed(() -> Set.of(HOUR));
+
+        verify(repository, never()).unmark(anyString(), any());
+    }
+
+    @Test
+    void hourOfTransactionInFlightStaysMarkedUntilItCompletes() {
+        dirtyHours.record(Set.of(HOUR), () -> {
+        });
+        TransactionSynchronizationManager.initSynchronization();
+        AtomicInteger applied = new AtomicInteger();
+        dirtyHours.record(Set.of(HOUR), applied::incrementAndGet);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        dirtyHours.flushed(Set::of);
+        verify(repository, never()).unmark(anyString(), any());
+
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        dirtyHours.flushed(Set::of);
+
+        assertThat(applied).hasValue(1);
+        verify(repository).unmark("hll", List.of(HOUR));
+    }
+
+    @Test
+    void rolledBackTransactionLeavesNothingToUnmark() {
+        TransactionSynchronizationManager.initSynchronization();
+        AtomicInteger applied = new AtomicInteger();
+        dirtyHours.record(Set.of(HOUR), applied::incrementAndGet);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        dirtyHours.flushed(Set::of);
+
+        assertThat(applied).hasValue(0);
+        verify(repository, never()).unmark(anyString(), any());
+    }
+}
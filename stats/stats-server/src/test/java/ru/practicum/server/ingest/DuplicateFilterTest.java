@@ -0,0 +1,88 @@
+package ru.practicum.server.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.server.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DuplicateFilterTest {
+    private final LocalDateTime now = LocalDateTime.now().withSecond(30);
+    private final DuplicateFilter filter = new DuplicateFilter(new SimpleMeterRegistry(), 60, 2, 10_000, 0.001, 300);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void suppressesRepeatsOfCommittedHits() {
+        List<EndpointHit> passed = filter.filter(List.of(hit("10.0.0.1", now), hit("10.0.0.1", now.plusSeconds(1)),
+                hit("10.0.0.2", now)));
+        filter.onHits(passed);
+
+        assertThat(passed).extracting(EndpointHit::getIp).containsExactly("10.0.0.1", "10.0.0.2");
+        assertThat(filter.filter(List.of(hit("10.0.0.1", now.plusSeconds(2))))).isEmpty();
+        assertThat(filter.filter(List.of(hit("10.0.0.1", now.plusMinutes(1))))).hasSize(1);
+    }
+
+    @Test
+    void releasedKeysPassAgain() {
+        List<EndpointHit> passed = filter.filter(List.of(hit("10.0.0.1", now)));
+        assertThat(filter.filter(List.of(hit("10.0.0.1", now)))).isEmpty();
+
+        filter.release(passed);
+
+        assertThat(filter.filter(List.of(hit("10.0.0.1", now)))).hasSize(1);
+    }
+
+    @Test
+    void rolledBackHitsAreNotRemembered() {
+        TransactionSynchronizationManager.initSynchronization();
+        List<EndpointHit> passed = filter.filter(List.of(hit("10.0.0.1", now)));
+        filter.onHits(passed);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThat(filter.filter(List.of(hit("10.0.0.1", now)))).hasSize(1);
+    }
+
+    @Test
+    void farFutureHitsDoNotEvictCurrentWindows() {
+        filter.onHits(filter.filter(List.of(hit("10.0.0.1", now))));
+
+        List<EndpointHit> future = List.of(hit("10.0.0.9", now.plusYears(1)), hit("10.0.0.9", now.plusYears(1)));
+        assertThat(filter.filter(future)).hasSize(2);
+        filter.onHits(future);
+        assertThat(filter.filter(List.of(hit("10.0.0.9", now.plusYears(1).plusMinutes(1))))).hasSize(1);
+
+        assertThat(filter.filter(List.of(hit("10.0.0.1", now)))).isEmpty();
+    }
+
+    @Test
+    void hitsOlderThanKeptWindowsAreStored() {
+        filter.onHits(filter.filter(List.of(hit("10.0.0.1", now), hit("10.0.0.1", now.minusMinutes(1)))));
+
+        List<EndpointHit> late = List.of(hit("10.0.0.1", now.minusMinutes(5)), hit("10.0.0.1", now.minusMinutes(5)));
+
+        assertThat(filter.filter(late)).hasSize(2);
+    }
+
+    private static EndpointHit hit(String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
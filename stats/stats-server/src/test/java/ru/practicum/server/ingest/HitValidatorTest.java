@@ -0,0 +1,68 @@
+package ru.practicum.server.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.IpAddresses;
+import ru.practicum.server.mapper.EndpointHitMapper;
+
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitValidatorTest {
+    private final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+    private final HitValidator validator = new HitValidator(validatorFactory.getValidator());
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void dropsOnlyInvalidHits() {
+        List<EndpointHitDto> valid = validator.valid(List.of(hit("10.0.0.1"), hit("not-an-ip"), hit(null),
+                hit("2001:db8::1"), hit("10.0.0.1/24")), "test");
+
+        assertThat(valid).extracting(EndpointHitDto::getIp).containsExactly("10.0.0.1", "2001:db8::1");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "010.0.0.1, 10.0.0.1",
+            "0:0:0:0:0:0:0:1, ::1",
+            "2001:DB8:0:0:1:0:0:1, 2001:db8::1:0:0:1",
+            "2001:0:0:1:0:0:0:1, 2001:0:0:1::1",
+            "1:2:3:4:5:6:7::, 1:2:3:4:5:6:7:0",
+            "::ffff:0:1, ::ffff:0.0.0.1",
+            "::1:2, ::0.1.0.2",
+            "::2, ::2",
+            "1:2:3:4:5:6:1.2.3.4, 1:2:3:4:5:6:102:304"
+    })
+    void normalizesLikePostgres(String ip, String normalized) {
+        assertThat(IpAddresses.normalize(ip)).isEqualTo(normalized);
+        assertThat(EndpointHitMapper.toEndpointHit(hit(ip)).getIp()).isEqualTo(normalized);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", " 1.2.3.4", "1.2.3", "1.2.3.4.5", "256.0.0.1", "1:::2", "1:2:3:4:5:6:7:8:9",
+            "1:2:3:4:5:6:7::8", "[::1]", "fe80::1%eth0", "12345::", "::ffff:256.1.1.1", "localhost"})
+    void rejectsWhatIsNotAnIpLiteral(String ip) {
+        assertThat(IpAddresses.normalize(ip)).isNull();
+    }
+
+    private static EndpointHitDto hit(String ip) {
+        return EndpointHitDto.builder()
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip(ip)
+                .timestamp(LocalDateTime.of(2024, 1, 1, 10, 15))
+                .build();
+    }
+}
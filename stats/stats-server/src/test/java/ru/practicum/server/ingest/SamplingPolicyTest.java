@@ -0,0 +1,102 @@
+package ru.practicum.server.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import ru.practicum.server.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SamplingPolicyTest {
+    private static final int HITS = 20_000;
+
+    @Test
+    void keepsAboutOneInRateWithRateAsWeight() {
+        SamplingPolicy policy = policy(null, 5, List.of(), false);
+
+        List<EndpointHit> kept = policy.sample(hits("ewm-main-service"));
+
+        assertThat(kept).allSatisfy(hit -> assertThat(hit.getWeight()).isEqualTo(8));
+        assertThat(kept.size()).isBetween(HITS / 8 * 8 / 10, HITS / 8 * 12 / 10);
+    }
+
+    @Test
+    void ipsKeptAtHigherRateAreSubsetOfLowerRate() {
+        Set<String> atFour = ips(policy(null, 4, List.of(), false).sample(hits("app")));
+        Set<String> atSixteen = ips(policy(null, 16, List.of(), false).sample(hits("app")));
+
+        assertThat(atFour).containsAll(atSixteen);
+        assertThat(atSixteen).isNotEmpty();
+    }
+
+    @Test
+    void appRateOverridesDefaultRate() {
+        SamplingPolicy policy = policy(null, 1, List.of("sampled-app:4", ""), false);
+
+        assertThat(policy.sample(hits("other-app"))).hasSize(HITS)
+                .allSatisfy(hit -> assertThat(hit.getWeight()).isEqualTo(1));
+        assertThat(policy.sample(hits("sampled-app")))
+                .allSatisfy(hit -> assertThat(hit.getWeight()).isEqualTo(4));
+    }
+
+    @Test
+    void adaptiveRateGrowsWithBufferFillUpToMaxRate() {
+        WriteBehindIngestor ingestor = mock(WriteBehindIngestor.class);
+        SamplingPolicy policy = policy(ingestor, 2, List.of(), true);
+
+        when(ingestor.fillRatio()).thenReturn(0.4);
+        assertThat(policy.sample(List.of(hit("app", "10.0.0.1"))))
+                .allSatisfy(hit -> assertThat(hit.getWeight()).isEqualTo(2));
+
+        when(ingestor.fillRatio()).thenReturn(1.0);
+        assertThat(weights(policy.sample(hits("app")))).containsOnly(64);
+    }
+
+    @Test
+    void rejectsRatesBelowOneAndMalformedAppRates() {
+        assertThatThrownBy(() -> policy(null, 0, List.of(), false)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> policy(null, 1, List.of("app"), false)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SamplingPolicy policy(WriteBehindIngestor ingestor, int defaultRate, List<String> appRates,
+                                         boolean adaptive) {
+        ObjectProvider<WriteBehindIngestor> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(ingestor);
+        return new SamplingPolicy(provider, new SimpleMeterRegistry(), "postgres", defaultRate, appRates, 64,
+                adaptive, 0.5);
+    }
+
+    private static List<EndpointHit> hits(String app) {
+        List<EndpointHit> hits = new ArrayList<>(HITS);
+        for (int i = 0; i < HITS; i++) {
+            hits.add(hit(app, "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff)));
+        }
+        return hits;
+    }
+
+    private static EndpointHit hit(String app, String ip) {
+        return EndpointHit.builder()
+                .app(app)
+                .uri("/events/1")
+                .ip(ip)
+                .weight(1)
+                .build();
+    }
+
+    private static Set<String> ips(List<EndpointHit> hits) {
+        return hits.stream().map(EndpointHit::getIp).collect(Collectors.toSet());
+    }
+
+    private static Set<Integer> weights(List<EndpointHit> hits) {
+        return hits.stream().map(EndpointHit::getWeight).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,65 @@
+package ru.practicum.server.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.server.exception.IngestOverloadedException;
+import ru.practicum.server.model.EndpointHit;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class WriteBehindIngestorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HitWriter hitWriter = mock(HitWriter.class);
+    private final List<String> written = new CopyOnWriteArrayList<>();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private WriteBehindIngestor ingestor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (ingestor != null && ingestor.isRunning()) {
+            ingestor.stop();
+        }
+    }
+
+    @Test
+    void batchOverflowingBufferIsRejectedWhole() throws InterruptedException {
+        doAnswer(invocation -> {
+            List<EndpointHit> batch = invocation.getArgument(0);
+            batch.forEach(hit -> written.add(hit.getUri()));
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(hitWriter).write(anyList());
+        ingestor = new WriteBehindIngestor(hitWriter, meterRegistry, 4, BackpressurePolicy.REJECT, 1, 0, 0);
+        ingestor.start();
+        ingestor.accept(List.of(hit("/events/0")));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        ingestor.accept(List.of(hit("/events/1"), hit("/events/2"), hit("/events/3")));
+        assertThatThrownBy(() -> ingestor.accept(List.of(hit("/events/4"), hit("/events/5"))))
+                .isInstanceOf(IngestOverloadedException.class);
+        assertThat(ingestor.fillRatio()).isEqualTo(0.75);
+
+        release.countDown();
+        ingestor.stop();
+
+        assertThat(written).containsExactly("/events/0", "/events/1", "/events/2", "/events/3");
+        assertThat(meterRegistry.counter("stats.ingest.dropped", "reason", "rejected").count()).isEqualTo(2);
+    }
+
+    private static EndpointHit hit(String uri) {
+        return EndpointHit.builder().app("ewm").uri(uri).ip("10.0.0.1").build();
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practicum.server.isolation;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WorkloadRoutingDataSourceTest {
+    private final DataSource ingest = mock(DataSource.class);
+    private final DataSource query = mock(DataSource.class);
+    private final Connection ingestConnection = mock(Connection.class);
+    private final Connection queryConnection = mock(Connection.class);
+
+    @Test
+    void onlyThreadsMarkedAsIngestUseIngestPool() throws SQLException {
+        when(ingest.getConnection()).thenReturn(ingestConnection);
+        when(query.getConnection()).thenReturn(queryConnection);
+        WorkloadRoutingDataSource dataSource = new WorkloadRoutingDataSource(ingest, query);
+        dataSource.afterPropertiesSet();
+
+        AtomicReference<Connection> marked = new AtomicReference<>();
+        Workload.INGEST.wrap(() -> {
+            try {
+                marked.set(dataSource.getConnection());
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }).run();
+
+        assertThat(marked.get()).isSameAs(ingestConnection);
+        assertThat(dataSource.getConnection()).isSameAs(queryConnection);
+    }
+}
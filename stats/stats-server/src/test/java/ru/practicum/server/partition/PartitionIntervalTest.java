@@ -0,0 +1,32 @@
+package ru.practicum.server.partition;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionIntervalTest {
+    private static final LocalDate DATE = LocalDate.of(2024, 2, 29);
+
+    @Test
+    void monthlyPartitionStartsOnFirstDayOfMonth() {
+        LocalDate from = PartitionInterval.MONTH.floor(DATE);
+
+        assertThat(from).isEqualTo(LocalDate.of(2024, 2, 1));
+        assertThat(PartitionInterval.MONTH.partitionName(from)).isEqualTo("stats_p202402");
+        assertThat(PartitionInterval.DAY.floor(DATE)).isEqualTo(DATE);
+    }
+
+    @Test
+    void partitionNameRoundTripsToIntervalAndStart() {
+        String daily = PartitionInterval.DAY.partitionName(DATE);
+        String monthly = PartitionInterval.MONTH.partitionName(PartitionInterval.MONTH.floor(DATE));
+
+        assertThat(daily).isEqualTo("stats_p20240229");
+        assertThat(PartitionInterval.ofPartition(daily)).isEqualTo(PartitionInterval.DAY);
+        assertThat(PartitionInterval.partitionStart(daily)).isEqualTo(DATE);
+        assertThat(PartitionInterval.ofPartition(monthly)).isEqualTo(PartitionInterval.MONTH);
+        assertThat(PartitionInterval.partitionStart(monthly)).isEqualTo(LocalDate.of(2024, 2, 1));
+    }
+}
@@ -0,0 +1,56 @@
+package ru.practicum.server.partition;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PartitionManagerTest {
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final RetentionListener listener = mock(RetentionListener.class);
+
+    @Test
+    void derivedDataIsCutAtStartOfFirstKeptPartition() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of("stats_p202401", "stats_p202402", "stats_p202403"));
+
+        manager(PartitionInterval.MONTH).retire(LocalDate.of(2024, 2, 15));
+
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.of(2024, 2, 1, 0, 0));
+        verify(jdbcTemplate).execute("ALTER TABLE stats DETACH PARTITION stats_p202401");
+        verify(jdbcTemplate, never()).execute("ALTER TABLE stats DETACH PARTITION stats_p202402");
+        verify(jdbcTemplate).update("DELETE FROM stats_default WHERE timestamp < ?", cutoff);
+        verify(jdbcTemplate).update("DELETE FROM stats_rollup_hour WHERE bucket < ?", cutoff);
+        verify(jdbcTemplate).update("DELETE FROM stats_ip_bitmap_hour WHERE bucket < ?", cutoff);
+        verify(listener).retired(cutoff.toLocalDateTime());
+    }
+
+    @Test
+    void thresholdIsUsedAsIsWhenItFallsOnPartitionBoundary() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of("stats_p20240214", "stats_p20240215"));
+
+        manager(PartitionInterval.DAY).retire(LocalDate.of(2024, 2, 15));
+
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.of(2024, 2, 15, 0, 0));
+        verify(jdbcTemplate).execute("ALTER TABLE stats DETACH PARTITION stats_p20240214");
+        verify(jdbcTemplate).update("DELETE FROM stats_hll_hour WHERE bucket < ?", cutoff);
+        verify(listener).retired(cutoff.toLocalDateTime());
+    }
+
+    private PartitionManager manager(PartitionInterval interval) {
+        return new PartitionManager(jdbcTemplate, mock(TransactionTemplate.class), List.of(listener), interval, 0,
+                30, RetentionAction.DETACH);
+    }
+}
@@ -0,0 +1,150 @@
+package ru.practicum.server.rollup;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.server.model.ViewStats;
+import ru.practicum.server.repository.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollupStatsReaderTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 17, 30);
+
+    private final FakeRollupRepository repository = new FakeRollupRepository();
+    private final RollupStatsReader reader = new RollupStatsReader(repository);
+
+    @Test
+    void countsHitAtExactlyEndInsideMinute() {
+        LocalDateTime end = LocalDateTime.of(2024, 1, 1, 12, 0, 30);
+        repository.hit("/events/1", end);
+        repository.hit("/events/1", end.plus(1, ChronoUnit.MICROS));
+
+        assertThat(hits(reader.getHits(START, end, null))).isEqualTo(1);
+    }
+
+    @Test
+    void countsHitAtExactlyEndOnHourBoundary() {
+        LocalDateTime end = LocalDateTime.of(2024, 1, 1, 13, 0, 0);
+        repository.hit("/events/1", end);
+        repository.hit("/events/1", end.plus(1, ChronoUnit.MICROS));
+
+        assertThat(hits(reader.getHits(START, end, null))).isEqualTo(1);
+    }
+
+    @Test
+    void countsHitAtExactlyStartButNotBefore() {
+        repository.hit("/events/1", START);
+        repository.hit("/events/1", START.minus(1, ChronoUnit.MICROS));
+
+        assertThat(hits(reader.getHits(START, START.plusHours(5), null))).isEqualTo(1);
+    }
+
+    @Test
+    void matchesRawCountAcrossHoursMinutesAndEdges() {
+        LocalDateTime end = LocalDateTime.of(2024, 1, 1, 15, 42, 10);
+        LocalDateTime time = START.minusMinutes(30);
+        while (time.isBefore(end.plusMinutes(30))) {
+            repository.hit(time.getSecond() % 2 == 0 ? "/events/1" : "/events/2", time);
+            time = time.plusSeconds(7);
+        }
+
+        List<ViewStats> stats = reader.getHits(START, end, List.of("/events/1"));
+
+        assertThat(stats).hasSize(1);
+        assertThat(stats.get(0).getHits()).isEqualTo(repository.count(hit -> hit.uri.equals("/events/1")
+                && !hit.timestamp.isBefore(START) && !hit.timestamp.isAfter(end)));
+    }
+
+    @Test
+    void splitsRangeIntoWholeHoursWholeMinutesAndRawEdges() {
+        reader.getHits(START, LocalDateTime.of(2024, 1, 1, 12, 5, 10), null);
+
+        assertThat(repository.queries).containsExactlyInAnyOrder(
+                "HOUR 2024-01-01T11:00 2024-01-01T12:00",
+                "MINUTE 2024-01-01T10:18 2024-01-01T11:00",
+                "RAW 2024-01-01T10:17:30 2024-01-01T10:18",
+                "MINUTE 2024-01-01T12:00 2024-01-01T12:05",
+                "RAW 2024-01-01T12:05 2024-01-01T12:05:10.000001");
+    }
+
+    @Test
+    void rangeInsideOneMinuteOnlyReadsRawHits() {
+        reader.getHits(START, START.plusSeconds(20), null);
+
+        assertThat(repository.queries).containsExactly("RAW 2024-01-01T10:17:30 2024-01-01T10:17:50.000001");
+    }
+
+    private static long hits(List<ViewStats> stats) {
+        return stats.stream().mapToLong(ViewStats::getHits).sum();
+    }
+
+    /**
+     * Rollups derived from raw hits; bound parameters are rounded to microseconds like pgjdbc does.
+     */
+    private static class FakeRollupRepository extends RollupRepository {
+        private final List<Hit> hits = new ArrayList<>();
+        private final List<String> queries = new ArrayList<>();
+
+        FakeRollupRepository() {
+            super(null);
+        }
+
+        void hit(String uri, LocalDateTime timestamp) {
+            hits.add(new Hit(uri, timestamp));
+        }
+
+        long count(Predicate<Hit> filter) {
+            return hits.stream().filter(filter).count();
+        }
+
+        @Override
+        public List<ViewStats> sumHits(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                                       List<String> uris) {
+            queries.add(granularity + " " + from + " " + to);
+            return select(uris, hit -> inRange(granularity.floor(hit.timestamp), from, to));
+        }
+
+        @Override
+        public List<ViewStats> countRawHits(LocalDateTime from, LocalDateTime to, List<String> uris) {
+            queries.add("RAW " + from + " " + to);
+            return select(uris, hit -> inRange(hit.timestamp, from, to));
+        }
+
+        private List<ViewStats> select(List<String> uris, Predicate<Hit> filter) {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            hits.stream()
+                    .filter(hit -> uris == null || uris.contains(hit.uri))
+                    .filter(filter)
+                    .forEach(hit -> counts.merge(hit.uri, 1L, Long::sum));
+            List<ViewStats> result = new ArrayList<>();
+            counts.forEach((uri, count) -> result.add(new ViewStats("app", uri, count, count)));
+            return result;
+        }
+
+        private static boolean inRange(LocalDateTime time, LocalDateTime from, LocalDateTime to) {
+            return !time.isBefore(bind(from)) && time.isBefore(bind(to));
+        }
+
+        private static LocalDateTime bind(LocalDateTime time) {
+            LocalDateTime micros = time.truncatedTo(ChronoUnit.MICROS);
+            return time.getNano() % 1000 > 499 ? micros.plus(1, ChronoUnit.MICROS) : micros;
+        }
+    }
+
+    private static class Hit {
+        private final String uri;
+        private final LocalDateTime timestamp;
+
+        Hit(String uri, LocalDateTime timestamp) {
+            this.uri = uri;
+            this.timestamp = timestamp;
+        }
+    }
+}
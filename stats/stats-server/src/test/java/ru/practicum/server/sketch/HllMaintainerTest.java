@@ -0,0 +1,141 @@
+package ru.practicum.server.sketch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.server.cache.StatsQueryCache;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.repository.DirtyHourRepository;
+import ru.practicum.server.repository.HllRepository;
+import ru.practicum.server.rollup.RollupKey;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class HllMaintainerTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 1, 10, 15);
+
+    private final HllRepository repository = mock(HllRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final DirtyHourRepository dirtyHourRepository = mock(DirtyHourRepository.class);
+    @SuppressWarnings("unchecked")
+    private final ObjectProvider<StatsQueryCache> cacheProvider = mock(ObjectProvider.class);
+    private HllMaintainer maintainer;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(repository.lockSketches(anyList())).thenReturn(Map.of());
+        maintainer = new HllMaintainer(repository, transactionTemplate, dirtyHourRepository, cacheProvider,
+                new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void ingestDoesNotTouchSketchRows() {
+        maintainer.onHits(List.of(hit("1.1.1.1"), hit("2.2.2.2")));
+
+        verifyNoInteractions(repository, transactionTemplate);
+    }
+
+    @Test
+    void flushMergesAccumulatedHitsInOneBatch() {
+        maintainer.onHits(List.of(hit("1.1.1.1")));
+        maintainer.onHits(List.of(hit("2.2.2.2"), hit("1.1.1.1")));
+
+        maintainer.flush();
+
+        Map<RollupKey, HyperLogLog> saved = savedSketches();
+        assertThat(saved).hasSize(1);
+        assertThat(saved.values().iterator().next().estimate()).isEqualTo(2);
+        maintainer.flush();
+        verify(repository, times(1)).saveSketches(any());
+    }
+
+    @Test
+    void hitsOfRolledBackTransactionAreNotCounted() {
+        TransactionSynchronizationManager.initSynchronization();
+        maintainer.onHits(List.of(hit("1.1.1.1")));
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        maintainer.flush();
+
+        verify(repository, never()).saveSketches(any());
+    }
+
+    @Test
+    void failedFlushIsRetried() {
+        maintainer.onHits(List.of(hit("1.1.1.1")));
+        when(repository.lockSketches(anyList())).thenThrow(new IllegalStateException("db down")).thenReturn(Map.of());
+
+        maintainer.flush();
+        verify(repository, never()).saveSketches(any());
+        maintainer.flush();
+
+        assertThat(savedSketches()).hasSize(1);
+    }
+
+    @Test
+    void unflushedHoursAreRebuiltFromRawHitsOnStart() {
+        LocalDateTime hour = TIME.truncatedTo(ChronoUnit.HOURS);
+        when(dirtyHourRepository.findMarked("hll")).thenReturn(List.of(hour));
+        doAnswer(invocation -> {
+            BiConsumer<RollupKey, String> consumer = invocation.getArgument(3);
+            RollupKey key = new RollupKey("ewm", "/events/1", hour);
+            consumer.accept(key, "1.1.1.1");
+            consumer.accept(key, "2.2.2.2");
+            consumer.accept(key, null);
+            return null;
+        }).when(repository).forEachDistinctIp(eq(hour), eq(hour.plusHours(1)), isNull(), any());
+
+        maintainer.start();
+
+        assertThat(savedSketches().values().iterator().next().estimate()).isEqualTo(2);
+        verify(dirtyHourRepository).unmark("hll", List.of(hour));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<RollupKey, HyperLogLog> savedSketches() {
+        ArgumentCaptor<Map<RollupKey, HyperLogLog>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(repository).saveSketches(captor.capture());
+        return captor.getValue();
+    }
+
+    private static EndpointHit hit(String ip) {
+        return EndpointHit.builder().app("ewm").uri("/events/1").ip(ip).timestamp(TIME).build();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.practicum.server.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+    @Test
+    void emptySketchEstimatesZero() {
+        assertThat(new HyperLogLog().estimate()).isZero();
+        assertThat(HyperLogLog.fromBytes(new byte[0]).estimate()).isZero();
+    }
+
+    @Test
+    void estimatesDistinctValuesWithinFewPercent() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add("10.0." + (i >> 8) + "." + (i & 0xff) + "-" + i);
+        }
+        assertThat((double) sketch.estimate()).isCloseTo(100_000, within(3_000.0));
+    }
+
+    @Test
+    void duplicatesDoNotChangeEstimate() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 1_000; i++) {
+            sketch.add("ip-" + i);
+        }
+        long estimate = sketch.estimate();
+        for (int i = 0; i < 1_000; i++) {
+            sketch.add("ip-" + i);
+        }
+        assertThat(sketch.estimate()).isEqualTo(estimate);
+    }
+
+    @Test
+    void mergeOfHalvesEqualsWhole() {
+        HyperLogLog whole = new HyperLogLog();
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        for (int i = 0; i < 20_000; i++) {
+            whole.add("ip-" + i);
+            (i % 2 == 0 ? left : right).add("ip-" + i);
+        }
+        left.merge(right);
+        assertThat(left.estimate()).isEqualTo(whole.estimate());
+    }
+
+    @Test
+    void roundTripsSparseAndDenseEncodings() {
+        HyperLogLog sparse = new HyperLogLog();
+        for (int i = 0; i < 10; i++) {
+            sparse.add("ip-" + i);
+        }
+        HyperLogLog dense = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) {
+            dense.add("ip-" + i);
+        }
+        assertThat(sparse.toBytes()).hasSize(1 + 10 * 3);
+        assertThat(HyperLogLog.fromBytes(sparse.toBytes()).estimate()).isEqualTo(sparse.estimate());
+        assertThat(HyperLogLog.fromBytes(dense.toBytes()).estimate()).isEqualTo(dense.estimate());
+    }
+}
@@ -0,0 +1,149 @@
+package ru.practicum.server.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.model.ViewStats;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class SegmentLogHitStorageTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 1, 1, 11, 0);
+
+    @TempDir
+    Path directory;
+
+    private SegmentLogHitStorage storage;
+
+    @AfterEach
+    void tearDown() {
+        if (storage != null && storage.isRunning()) {
+            storage.stop();
+        }
+    }
+
+    @Test
+    void countsHitsOnBothEndsOfRange() {
+        storage = start(1024);
+        storage.saveAll(List.of(hit("/events/1", "10.0.0.1", START.minusSeconds(1)),
+                hit("/events/1", "10.0.0.2", START),
+                hit("/events/1", "10.0.0.3", END),
+                hit("/events/1", "10.0.0.4", END.plusSeconds(1))));
+
+        assertThat(storage.getStats(START, END, null, false))
+                .extracting(ViewStats::getUri, ViewStats::getHits)
+                .containsExactly(tuple("/events/1", 2L));
+    }
+
+    @Test
+    void countsUniqueIpv4AndIpv6Addresses() {
+        storage = start(1024);
+        storage.saveAll(List.of(hit("/events/1", "10.0.0.1", START),
+                hit("/events/1", "10.0.0.1", START.plusMinutes(1)),
+                hit("/events/1", "2001:db8::1", START.plusMinutes(2)),
+                hit("/events/1", "2001:db8::1", START.plusMinutes(3)),
+                hit("/events/2", "10.0.0.1", START)));
+
+        List<ViewStats> stats = storage.getStats(START, END, List.of("/events/1", "/unknown"), true);
+
+        assertThat(stats).extracting(ViewStats::getUri).containsExactly("/events/1");
+        assertThat(stats.get(0).getHits()).isEqualTo(2);
+        assertThat(storage.getStats(START, END, List.of("/unknown"), true)).isEmpty();
+    }
+
+    @Test
+    void scanSinceIncludesHitsStampedAtItsStart() {
+        storage = start(1024);
+        storage.saveAll(List.of(hit("/events/1", "10.0.0.1", START.minusSeconds(1)),
+                hit("/events/1", "10.0.0.2", START)));
+
+        List<EndpointHit> scanned = new ArrayList<>();
+        storage.scanSince(START, scanned::add);
+
+        assertThat(scanned).extracting(EndpointHit::getIp).containsExactly("10.0.0.2");
+        assertThat(scanned.get(0).getTimestamp()).isEqualTo(START);
+    }
+
+    @Test
+    void rollsFullSegmentsAndReplaysThemAfterRestart() {
+        storage = start(3);
+        for (int i = 0; i < 7; i++) {
+            storage.save(hit("/events/" + (i % 2), "10.0.0." + i, START.plusMinutes(i)));
+        }
+        storage.stop();
+
+        storage = start(3);
+        List<EndpointHit> scanned = new ArrayList<>();
+        storage.scanAll(scanned::add);
+
+        assertThat(scanned).extracting(EndpointHit::getId).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        assertThat(scanned).extracting(EndpointHit::getUri).containsOnly("/events/0", "/events/1");
+        assertThat(storage.save(hit("/events/1", "10.0.0.9", START)).getId()).isEqualTo(8L);
+        assertThat(storage.getStats(START, END, null, false))
+                .extracting(ViewStats::getHits)
+                .containsExactly(4L, 4L);
+    }
+
+    @Test
+    void hitWithoutIpIsStoredButNotCountedAsUnique() {
+        storage = start(1024);
+        storage.saveAll(List.of(hit("/events/1", null, START), hit("/events/1", "10.0.0.1", START)));
+
+        List<EndpointHit> scanned = new ArrayList<>();
+        storage.scanAll(scanned::add);
+
+        assertThat(scanned).extracting(EndpointHit::getIp).containsExactly(null, "10.0.0.1");
+        assertThat(storage.getStats(START, END, null, false)).extracting(ViewStats::getHits).containsExactly(2L);
+        assertThat(storage.getStats(START, END, null, true)).extracting(ViewStats::getHits).containsExactly(1L);
+    }
+
+    @Test
+    void replayDropsRecordsWhoseStringsTheDictionaryLost() throws IOException {
+        storage = start(1024);
+        storage.saveAll(List.of(hit("/events/1", "10.0.0.1", START), hit("/events/1", "2001:db8::1", START)));
+        long dictionarySize = Files.size(directory.resolve("dictionary.dat"));
+        storage.saveAll(List.of(hit("/events/2", "10.0.0.2", START), hit("/events/1", "10.0.0.3", START)));
+        storage.stop();
+        try (FileChannel dictionary = FileChannel.open(directory.resolve("dictionary.dat"),
+                StandardOpenOption.WRITE)) {
+            dictionary.truncate(dictionarySize);
+        }
+
+        storage = start(1024);
+        storage.save(hit("/events/3", "10.0.0.4", START));
+        storage.stop();
+        storage = start(1024);
+
+        List<EndpointHit> scanned = new ArrayList<>();
+        storage.scanAll(scanned::add);
+        assertThat(scanned).extracting(EndpointHit::getUri, EndpointHit::getIp).containsExactly(
+                tuple("/events/1", "10.0.0.1"), tuple("/events/1", "2001:db8::1"), tuple("/events/3", "10.0.0.4"));
+    }
+
+    private SegmentLogHitStorage start(int segmentRecords) {
+        SegmentLogHitStorage started = new SegmentLogHitStorage(directory, segmentRecords, 0);
+        started.start();
+        return started;
+    }
+
+    private static EndpointHit hit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
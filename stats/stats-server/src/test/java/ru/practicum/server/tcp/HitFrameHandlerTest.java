@@ -0,0 +1,174 @@
+package ru.practicum.server.tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.HitWireFormat;
+import ru.practicum.server.exception.IngestOverloadedException;
+import ru.practicum.server.ingest.HitValidator;
+import ru.practicum.server.service.StatsService;
+
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class HitFrameHandlerTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 1, 10, 15, 30);
+    private static final int MAX_FRAME_LENGTH = 256;
+
+    private final StatsService service = mock(StatsService.class);
+    private final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+    private EmbeddedChannel channel;
+    private long lastEpochSecond;
+
+    @BeforeEach
+    void setUp() {
+        channel = new EmbeddedChannel(
+                new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, HitWireFormat.LENGTH_FIELD_BYTES, 0,
+                        HitWireFormat.LENGTH_FIELD_BYTES),
+                new HitFrameDecoder(16),
+                new HitFrameHandler(service, new HitValidator(validatorFactory.getValidator())));
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.finishAndReleaseAll();
+        validatorFactory.close();
+    }
+
+    @Test
+    void decodesInternedStringsAndTimestampDeltas() {
+        channel.writeInbound(string(0, "ewm-main-service"), string(1, "/events/1"),
+                hits(2, hit(0, 1, "10.0.0.1", TIME), hit(0, 1, "::1", TIME.plusSeconds(5))));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<EndpointHitDto>> stored = ArgumentCaptor.forClass(List.class);
+        verify(service).createAll(stored.capture());
+        assertThat(stored.getValue()).extracting(EndpointHitDto::getIp).containsExactly("10.0.0.1", "::1");
+        assertThat(stored.getValue()).extracting(EndpointHitDto::getTimestamp)
+                .containsExactly(TIME, TIME.plusSeconds(5));
+        assertThat(stored.getValue()).allSatisfy(hit -> {
+            assertThat(hit.getApp()).isEqualTo("ewm-main-service");
+            assertThat(hit.getUri()).isEqualTo("/events/1");
+        });
+        assertReply(HitWireFormat.FRAME_ACK, 2, 0);
+    }
+
+    @Test
+    void dropsInvalidHitsAndReportsThem() {
+        channel.writeInbound(string(0, "ewm-main-service"), string(1, "/events/1"), string(2, ""),
+                hits(3, hit(0, 1, "10.0.0.1", TIME), hit(0, 2, "10.0.0.2", TIME), hit(0, 1, "10.0.0.256", TIME)));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<EndpointHitDto>> stored = ArgumentCaptor.forClass(List.class);
+        verify(service).createAll(stored.capture());
+        assertThat(stored.getValue()).extracting(EndpointHitDto::getIp).containsExactly("10.0.0.1");
+        assertReply(HitWireFormat.FRAME_ACK, 1, 2);
+    }
+
+    @Test
+    void answersNackWhenHitsCannotBeStored() {
+        doThrow(new IngestOverloadedException("overloaded")).when(service).createAll(anyList());
+        channel.writeInbound(string(0, "ewm-main-service"), string(1, "/events/1"),
+                hits(1, hit(0, 1, "10.0.0.1", TIME)));
+        assertReply(HitWireFormat.FRAME_NACK, 1, -1);
+
+        doThrow(new IllegalStateException("broken")).when(service).createAll(anyList());
+        channel.writeInbound(hits(1, hit(0, 1, "10.0.0.1", TIME)));
+        assertReply(HitWireFormat.FRAME_NACK, 1, -1);
+    }
+
+    @Test
+    void closesConnectionOnFramesLongerThanTheLimit() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeInt(MAX_FRAME_LENGTH + 1);
+        frame.writeZero(MAX_FRAME_LENGTH + 1);
+
+        channel.writeInbound(frame);
+        assertThat(channel.isOpen()).isFalse();
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void closesConnectionOnHitCountsTheFrameCannotHold() {
+        ByteBuf body = Unpooled.buffer();
+        body.writeByte(HitWireFormat.FRAME_HITS);
+        HitWireFormat.writeVarint(body, 1_000_000_000);
+
+        channel.writeInbound(framed(body));
+        assertThat(channel.isOpen()).isFalse();
+        verifyNoInteractions(service);
+    }
+
+    private void assertReply(byte type, long count, long rejected) {
+        ByteBuf reply = channel.readOutbound();
+        try {
+            assertThat(reply.readByte()).isEqualTo(type);
+            assertThat(HitWireFormat.readVarint(reply)).isEqualTo(count);
+            if (rejected >= 0) {
+                assertThat(HitWireFormat.readVarint(reply)).isEqualTo(rejected);
+            }
+        } finally {
+            reply.release();
+        }
+    }
+
+    private static ByteBuf string(int id, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuf body = Unpooled.buffer();
+        body.writeByte(HitWireFormat.FRAME_STRING);
+        HitWireFormat.writeVarint(body, id);
+        HitWireFormat.writeVarint(body, bytes.length);
+        body.writeBytes(bytes);
+        return framed(body);
+    }
+
+    private ByteBuf hit(int app, int uri, String ip, LocalDateTime timestamp) {
+        ByteBuf body = Unpooled.buffer();
+        HitWireFormat.writeVarint(body, app);
+        HitWireFormat.writeVarint(body, uri);
+        byte[] bytes = ip.getBytes(StandardCharsets.UTF_8);
+        body.writeByte(HitWireFormat.IP_TEXT);
+        HitWireFormat.writeVarint(body, bytes.length);
+        body.writeBytes(bytes);
+        long epochSecond = timestamp.toEpochSecond(ZoneOffset.UTC);
+        HitWireFormat.writeVarint(body, HitWireFormat.zigzag(epochSecond - lastEpochSecond));
+        lastEpochSecond = epochSecond;
+        return body;
+    }
+
+    private static ByteBuf hits(int count, ByteBuf... hits) {
+        ByteBuf body = Unpooled.buffer();
+        body.writeByte(HitWireFormat.FRAME_HITS);
+        HitWireFormat.writeVarint(body, count);
+        for (ByteBuf hit : hits) {
+            body.writeBytes(hit);
+            hit.release();
+        }
+        return framed(body);
+    }
+
+    private static ByteBuf framed(ByteBuf body) {
+        ByteBuf frame = Unpooled.buffer(body.readableBytes() + HitWireFormat.LENGTH_FIELD_BYTES);
+        frame.writeInt(body.readableBytes());
+        frame.writeBytes(body);
+        body.release();
+        return frame;
+    }
+}
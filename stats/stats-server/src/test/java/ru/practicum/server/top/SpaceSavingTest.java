@@ -0,0 +1,64 @@
+package ru.practicum.server.top;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingTest {
+    @Test
+    void countsExactlyWhileKeysFit() {
+        SpaceSaving summary = new SpaceSaving(4);
+        summary.offer("/events/1", 3);
+        summary.offer("/events/2", 1);
+        summary.offer("/events/1", 2);
+        summary.offer("/events/3", 7);
+
+        assertThat(counts(summary)).containsOnly(Map.entry("/events/1", 5L), Map.entry("/events/2", 1L),
+                Map.entry("/events/3", 7L));
+    }
+
+    @Test
+    void newKeyReplacesSmallestCounterAndInheritsIt() {
+        SpaceSaving summary = new SpaceSaving(2);
+        summary.offer("/events/1", 5);
+        summary.offer("/events/2", 2);
+        summary.offer("/events/3", 1);
+
+        assertThat(counts(summary)).containsOnly(Map.entry("/events/1", 5L), Map.entry("/events/3", 3L));
+    }
+
+    @Test
+    void keepsHeavyHittersWithUpperBoundCounts() {
+        int capacity = 50;
+        SpaceSaving summary = new SpaceSaving(capacity);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        long total = 0;
+        for (int i = 0; i < 100_000; i++) {
+            String key = "/events/" + (int) Math.floor(Math.pow(1000, random.nextDouble()));
+            summary.offer(key, 1);
+            exact.merge(key, 1L, Long::sum);
+            total++;
+        }
+
+        Map<String, Long> reported = counts(summary);
+        assertThat(reported.values().stream().mapToLong(Long::longValue).sum()).isEqualTo(total);
+        long threshold = total / capacity;
+        exact.forEach((key, count) -> {
+            if (count > threshold) {
+                assertThat(reported).containsKey(key);
+            }
+        });
+        reported.forEach((key, count) -> assertThat(count).isGreaterThanOrEqualTo(exact.get(key)));
+    }
+
+    private static Map<String, Long> counts(SpaceSaving summary) {
+        Map<String, Long> counts = new HashMap<>();
+        summary.forEach(counts::put);
+        return counts;
+    }
+}
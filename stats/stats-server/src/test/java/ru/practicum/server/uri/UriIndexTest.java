@@ -0,0 +1,62 @@
+package ru.practicum.server.uri;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.server.model.EndpointHit;
+import ru.practicum.server.storage.HitStorage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class UriIndexTest {
+    private final HitStorage hitStorage = mock(HitStorage.class);
+    private final UriIndex index = new UriIndex(hitStorage);
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            Consumer<String> consumer = invocation.getArgument(0);
+            Arrays.asList("/events", "/events/1", "/events/12", "/events/2/comments", "/eventsx", "/users/1")
+                    .forEach(consumer);
+            return null;
+        }).when(hitStorage).forEachUri(any());
+        index.start();
+    }
+
+    @Test
+    void keepsPlainUrisAndNullFilterAsIs() {
+        assertThat(index.expand(null)).isNull();
+        assertThat(index.expand(List.of("/unknown"))).containsExactly("/unknown");
+    }
+
+    @Test
+    void expandsTrailingWildcardToEveryUriWithPrefix() {
+        assertThat(index.expand(List.of("/events/*")))
+                .containsExactly("/events/1", "/events/12", "/events/2/comments");
+    }
+
+    @Test
+    void innerWildcardsMatchTheWholeUri() {
+        assertThat(index.expand(List.of("/events/*/comments", "/*s/1"))).containsExactly("/events/2/comments",
+                "/events/1", "/users/1");
+    }
+
+    @Test
+    void regexCharactersInPatternAreLiteral() {
+        index.onHits(List.of(EndpointHit.builder().uri("/events/1?size=10").build(),
+                EndpointHit.builder().uri("/events/1xsize=10").build()));
+
+        assertThat(index.expand(List.of("/events/*?size=10"))).containsExactly("/events/1?size=10");
+    }
+
+    @Test
+    void patternWithoutMatchesExpandsToNothing() {
+        assertThat(index.expand(List.of("/compilations/*"))).isEmpty();
+    }
+}